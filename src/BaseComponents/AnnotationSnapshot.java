@@ -0,0 +1,184 @@
+package BaseComponents;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of what was parsed from a GTF file, stored next to it (e.g. annotation.gtf.cds.snapshot).
+ * The snapshot is keyed on path, size, modification time and a CRC32C of the GTF content;
+ * if any of them (or the format version) does not match, the snapshot is ignored and rewritten after parsing.
+ *
+ * Header: magic, format version, kind, gtf path, size, mtime, content hash; then the payload of the caller.
+ * Strings are stored once; repeated strings (chromosomes, protein ids...) are back-references.
+ */
+public class AnnotationSnapshot {
+    private static final int MAGIC = 0x47505453;  // "GPTS"
+    public static final int FORMAT_VERSION = 1;
+
+    public static final byte KIND_CDS = 1;   // genes, transcripts and CDS for ExonSkipping
+    public static final byte KIND_EXON = 2;  // transcripts and exons for ReadSimulator
+
+    private final String gtfPath;
+    private final Path snapshotPath;
+    private final byte kind;
+    private final long gtfSize;
+    private final long gtfModified;
+    private final long gtfHash;
+
+    public AnnotationSnapshot(String gtfPath, byte kind) throws IOException {
+        Path gtf = Path.of(gtfPath).toAbsolutePath();
+        this.gtfPath = gtf.toString();
+        this.kind = kind;
+        this.snapshotPath = Path.of(this.gtfPath + (kind == KIND_CDS ? ".cds.snapshot" : ".exon.snapshot"));
+        this.gtfSize = Files.size(gtf);
+        this.gtfModified = Files.getLastModifiedTime(gtf).toMillis();
+        this.gtfHash = contentHash(gtf);
+    }
+
+    /** @return reader positioned at the payload, or null if there is no valid snapshot for the current GTF */
+    public Reader open() {
+        if (!Files.isRegularFile(snapshotPath)) return null;
+
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            Reader reader = new Reader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (reader.readInt() != MAGIC || reader.readInt() != FORMAT_VERSION || reader.readByte() != kind) return null;
+            if (!reader.readString().equals(gtfPath) || reader.readLong() != gtfSize
+                    || reader.readLong() != gtfModified || reader.readLong() != gtfHash) return null;
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable snapshot " + snapshotPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Start a new snapshot; it replaces the old one when the writer is closed.
+     * @return writer with the header already written
+     */
+    public Writer create() throws IOException {
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        Writer writer = new Writer(temp, snapshotPath);
+        writer.writeInt(MAGIC);
+        writer.writeInt(FORMAT_VERSION);
+        writer.writeByte(kind);
+        writer.writeString(gtfPath);
+        writer.writeLong(gtfSize);
+        writer.writeLong(gtfModified);
+        writer.writeLong(gtfHash);
+        return writer;
+    }
+
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    private static long contentHash(Path gtf) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(gtf, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long window = 1L << 30;
+            for (long position = 0; position < size; position += window) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(window, size - position)));
+            }
+        }
+        return crc.getValue();
+    }
+
+
+    /** reads the memory-mapped snapshot */
+    public static class Reader {
+        private final MappedByteBuffer buffer;
+        private final ArrayList<String> strings;
+
+        private Reader(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            this.strings = new ArrayList<>();
+        }
+
+        public byte readByte() {
+            return buffer.get();
+        }
+
+        public int readInt() {
+            return buffer.getInt();
+        }
+
+        public long readLong() {
+            return buffer.getLong();
+        }
+
+        /** new string: -length and the UTF-8 bytes; known string: its index */
+        public String readString() {
+            int code = buffer.getInt();
+            if (code >= 0) return strings.get(code);
+
+            byte[] bytes = new byte[-code - 1];
+            buffer.get(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+    }
+
+
+    /** writes into a temporary file, which is moved over the snapshot on close */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final HashMap<String, Integer> stringIndex;
+        private final Path temp;
+        private final Path target;
+        private boolean complete;
+
+        private Writer(Path temp, Path target) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+            this.stringIndex = new HashMap<>();
+            this.temp = temp;
+            this.target = target;
+        }
+
+        public void writeByte(byte value) throws IOException {
+            out.writeByte(value);
+        }
+
+        public void writeInt(int value) throws IOException {
+            out.writeInt(value);
+        }
+
+        public void writeLong(long value) throws IOException {
+            out.writeLong(value);
+        }
+
+        public void writeString(String value) throws IOException {
+            Integer index = stringIndex.get(value);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(-bytes.length - 1);
+            out.write(bytes);
+            stringIndex.put(value, stringIndex.size());
+        }
+
+        /** has to be called after the whole payload is written, otherwise close discards the snapshot */
+        public void commit() {
+            this.complete = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            if (complete) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
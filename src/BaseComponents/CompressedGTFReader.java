@@ -0,0 +1,220 @@
+package BaseComponents;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Reads gzip-compressed GTF files (.gtf.gz) and hands every line as a GTFRecord to a handler, like MappedGTFReader.
+ *
+ * BGZF files (bgzip: a series of gzip blocks of at most 64 KB, each with its size in the header) are decompressed
+ * block by block in parallel. A reader thread cuts the blocks and submits them to the decompression threads;
+ * the decompressed blocks are parsed in file order on the calling thread, so decompression and parsing overlap.
+ * The queue between them is bounded, at most a few blocks per thread are held in memory.
+ * Plain gzip can only be decompressed sequentially; it runs on the reader thread, also overlapping with parsing.
+ */
+public abstract class CompressedGTFReader {
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int BLOCKS_PER_THREAD = 4;  // capacity of the pipeline
+
+    /** @return whether the file starts with the gzip magic bytes */
+    public static boolean isCompressed(String filePath) throws IOException {
+        byte[] header = readHeader(filePath, 2);
+        return header.length == 2 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B;
+    }
+
+    /** @return whether the first gzip block has the BGZF extra field "BC" with the block size */
+    public static boolean isBGZF(String filePath) throws IOException {
+        byte[] header = readHeader(filePath, 16);
+        return header.length == 16 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B
+                && (header[3] & 0x04) != 0 && header[12] == 'B' && header[13] == 'C' && header[14] == 2 && header[15] == 0;
+    }
+
+    /**
+     * @param threads number of threads decompressing BGZF blocks (the parsing runs on the calling thread)
+     */
+    public static void read(String filePath, int threads, Consumer<GTFRecord> handler) throws IOException {
+        boolean bgzf = isBGZF(filePath);
+        int decompressionThreads = bgzf ? Math.max(1, threads) : 1;
+
+        ExecutorService decompressors = Executors.newFixedThreadPool(decompressionThreads);
+        BlockingQueue<Future<byte[]>> blocks = new ArrayBlockingQueue<>(BLOCKS_PER_THREAD * decompressionThreads);
+        Thread reader = new Thread(() -> {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(Path.of(filePath)), CHUNK_SIZE)) {
+                if (bgzf) {
+                    cutBlocks(in, decompressors, blocks);
+                } else {
+                    inflateStream(in, blocks);
+                }
+                blocks.put(CompletableFuture.completedFuture(null));  // end of file
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                try {
+                    blocks.put(CompletableFuture.failedFuture(e));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "gtf-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        LineAssembler lines = new LineAssembler(handler);
+        try {
+            while (true) {
+                byte[] block = blocks.take().get();
+                if (block == null) break;
+                lines.feed(block);
+            }
+            lines.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Reading " + filePath + " was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error while decompressing " + filePath, e.getCause());
+        } finally {
+            reader.interrupt();
+            decompressors.shutdownNow();
+        }
+    }
+
+    /**
+     * Cut the BGZF blocks from the stream and submit their decompression; the futures are queued in file order
+     */
+    private static void cutBlocks(InputStream in, ExecutorService decompressors, BlockingQueue<Future<byte[]>> blocks)
+            throws IOException, InterruptedException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] header = new byte[12];
+
+        while (true) {
+            int first = data.read();
+            if (first < 0) return;
+            header[0] = (byte) first;
+            data.readFully(header, 1, header.length - 1);
+            if ((header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B || (header[3] & 0x04) == 0) {
+                throw new IOException("Invalid BGZF block header");
+            }
+
+            // extra subfields; BC holds the block size - 1
+            int extraLength = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+            byte[] extra = new byte[extraLength];
+            data.readFully(extra);
+            int blockSize = -1;
+            for (int p = 0; p + 4 <= extraLength; ) {
+                int subfieldLength = (extra[p + 2] & 0xFF) | (extra[p + 3] & 0xFF) << 8;
+                if (extra[p] == 'B' && extra[p + 1] == 'C' && subfieldLength == 2) {
+                    blockSize = ((extra[p + 4] & 0xFF) | (extra[p + 5] & 0xFF) << 8) + 1;
+                }
+                p += 4 + subfieldLength;
+            }
+            if (blockSize < 0) throw new IOException("BGZF block without block size");
+
+            // compressed data, CRC32 and uncompressed size
+            byte[] block = new byte[blockSize - header.length - extraLength];
+            data.readFully(block);
+            blocks.put(decompressors.submit(() -> inflateBlock(block)));
+        }
+    }
+
+    /** @param block raw deflate data, followed by CRC32 and uncompressed size (little endian) */
+    private static byte[] inflateBlock(byte[] block) throws IOException {
+        int dataLength = block.length - 8;
+        ByteBuffer trailer = ByteBuffer.wrap(block, dataLength, 8).order(ByteOrder.LITTLE_ENDIAN);
+        int expectedCRC = trailer.getInt();
+        int size = trailer.getInt();
+
+        byte[] uncompressed = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(block, 0, dataLength);
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                int inflated = inflater.inflate(uncompressed, length, size - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += inflated;
+            }
+            if (length != size) throw new IOException("Truncated BGZF block");
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt BGZF block", e);
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(uncompressed);
+        if ((int) crc.getValue() != expectedCRC) throw new IOException("CRC mismatch in BGZF block");
+        return uncompressed;
+    }
+
+    /** plain gzip (also with several members): sequential, chunk by chunk */
+    private static void inflateStream(InputStream in, BlockingQueue<Future<byte[]>> blocks) throws IOException, InterruptedException {
+        try (GZIPInputStream gzip = new GZIPInputStream(in, CHUNK_SIZE)) {
+            while (true) {
+                byte[] chunk = gzip.readNBytes(CHUNK_SIZE);
+                if (chunk.length == 0) return;
+                blocks.put(CompletableFuture.completedFuture(chunk));
+            }
+        }
+    }
+
+    private static byte[] readHeader(String filePath, int length) throws IOException {
+        try (InputStream in = Files.newInputStream(Path.of(filePath))) {
+            return in.readNBytes(length);
+        }
+    }
+
+
+    /** joins the decompressed blocks and cuts them into lines; a line can span several blocks */
+    private static class LineAssembler {
+        private final Consumer<GTFRecord> handler;
+        private final GTFRecord record;
+        private byte[] buffer;
+        private int length;
+        private long offset;  // position of buffer[0] in the uncompressed file
+
+        private LineAssembler(Consumer<GTFRecord> handler) {
+            this.handler = handler;
+            this.record = new GTFRecord();
+            this.buffer = new byte[2 * CHUNK_SIZE];
+        }
+
+        private void feed(byte[] block) {
+            if (length + block.length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, length + block.length));
+            }
+            int searchFrom = length;
+            System.arraycopy(block, 0, buffer, length, block.length);
+            length += block.length;
+
+            ByteBuffer view = ByteBuffer.wrap(buffer, 0, length);
+            int lineStart = 0;
+            for (int i = searchFrom; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    if (record.set(view, lineStart, i, offset + lineStart)) handler.accept(record);
+                    lineStart = i + 1;
+                }
+            }
+
+            // keep the incomplete last line for the next block
+            System.arraycopy(buffer, lineStart, buffer, 0, length - lineStart);
+            length -= lineStart;
+            offset += lineStart;
+        }
+
+        /** last line without newline */
+        private void finish() {
+            if (length > 0 && record.set(ByteBuffer.wrap(buffer, 0, length), 0, length, offset)) handler.accept(record);
+            length = 0;
+        }
+    }
+}
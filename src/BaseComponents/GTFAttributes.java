@@ -0,0 +1,107 @@
+package BaseComponents;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lazy view on the attribute column (9.) of a GTF line, e.g.
+ * gene_id "ENSG00000223972"; transcript_id "ENST00000456328"; gene_name "DDX11L1";
+ * Nothing is split or decoded up front: a requested key is searched in the raw bytes and only its value
+ * becomes a String. Keys which are never asked for cost nothing. Reusable for every line.
+ */
+public class GTFAttributes {
+    private ByteBuffer buffer;
+    private int start;
+    private int end;
+    private int valueEnd;  // end of the last value found by find
+
+    /** Point the view to the bytes [start, end) of the buffer */
+    public void set(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+    }
+
+    /** @return value without quotes and ';' or null if the key is not present */
+    public String get(String key) {
+        int valueStart = find(key);
+        if (valueStart < 0) return null;
+        return decode(valueStart, valueEnd);
+    }
+
+    public String get(String key, String defaultValue) {
+        String value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    public boolean contains(String key) {
+        return find(key) >= 0;
+    }
+
+    /** compares the value with an already known String, no allocation */
+    public boolean valueEquals(String key, String value) {
+        if (value == null) return false;
+        int valueStart = find(key);
+        return valueStart >= 0 && regionEquals(valueStart, valueEnd, value);
+    }
+
+    /** value of the first attribute - used as gene_id fallback, as the old split(" ")[2] did */
+    public String getFirstValue() {
+        int valueStart = find(null);
+        if (valueStart < 0) return "";
+        return decode(valueStart, valueEnd);
+    }
+
+    /**
+     * Walks the "key value;" pairs
+     * @param key attribute to look for, null := first attribute
+     * @return start of the value and sets valueEnd; -1 if not found
+     */
+    private int find(String key) {
+        int p = start;
+
+        while (p < end) {
+            // skip separators and the leading space some releases have
+            while (p < end && (buffer.get(p) == ' ' || buffer.get(p) == ';')) p++;
+            if (p >= end) break;
+
+            int keyStart = p;
+            while (p < end && buffer.get(p) != ' ') p++;
+            int keyEnd = p;
+            while (p < end && buffer.get(p) == ' ') p++;
+
+            int valueStart;
+            int currentValueEnd;
+            if (p < end && buffer.get(p) == '"') {
+                valueStart = ++p;
+                while (p < end && buffer.get(p) != '"') p++;
+                currentValueEnd = p;
+            } else {
+                valueStart = p;
+                while (p < end && buffer.get(p) != ';' && buffer.get(p) != ' ') p++;
+                currentValueEnd = p;
+            }
+            while (p < end && buffer.get(p) != ';') p++;
+
+            if (key == null || regionEquals(keyStart, keyEnd, key)) {
+                this.valueEnd = currentValueEnd;
+                return valueStart;
+            }
+        }
+        return -1;
+    }
+
+    private boolean regionEquals(int from, int to, String value) {
+        if (to - from != value.length()) return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer.get(from + i) != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private String decode(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,347 @@
+package BaseComponents;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Sidecar index of a GTF file (annotation.gtf.gix), built once by a full scan, similar to a tabix index:
+ * for every gene its chromosome, its span over all of its lines and the byte ranges of its lines, and per chromosome
+ * a linear index of 16 kb bins pointing to the first gene (in start order) which can overlap the bin.
+ * A region or a list of gene ids is resolved to byte ranges and only these ranges of the GTF are read.
+ *
+ * The lines of a gene do not have to follow each other, but in a coordinate-sorted GTF every gene is one range.
+ * The index is rebuilt when the size or modification time of the GTF changes.
+ * Compressed GTFs can not be read from an offset: the genes are selected with the index as well,
+ * but the whole file is decompressed and the lines of the other genes are skipped.
+ */
+public class GTFIndex {
+    private static final int MAGIC = 0x47495831;  // "GIX1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int BIN_SHIFT = 14;  // 16 kb bins
+
+    private final boolean seekable;  // false := offsets of a compressed file
+    private final ArrayList<String> chromosomes;
+    private final ArrayList<GeneEntry> genes;  // in the order of their first line
+    private final HashMap<String, Integer> id2gene;
+    private final HashMap<String, int[]> genesByStart;  // chromosome -> gene ordinals sorted by start
+    private final HashMap<String, int[]> bins;  // chromosome -> bin -> first position in genesByStart
+
+    private GTFIndex(boolean seekable, ArrayList<String> chromosomes, ArrayList<GeneEntry> genes) {
+        this.seekable = seekable;
+        this.chromosomes = chromosomes;
+        this.genes = genes;
+        this.id2gene = new HashMap<>();
+        this.genesByStart = new HashMap<>();
+        this.bins = new HashMap<>();
+
+        for (int g = 0; g < genes.size(); g++) {
+            id2gene.putIfAbsent(genes.get(g).id, g);
+        }
+        buildLinearIndex();
+    }
+
+    /** @return the index next to the GTF; it is built (and saved) if it is missing or outdated */
+    public static GTFIndex load(String gtfPath) throws IOException {
+        Path gtf = Path.of(gtfPath);
+        Path indexPath = Path.of(gtfPath + ".gix");
+        long size = Files.size(gtf);
+        long modified = Files.getLastModifiedTime(gtf).toMillis();
+
+        if (Files.isRegularFile(indexPath)) {
+            try {
+                GTFIndex index = read(indexPath, size, modified);
+                if (index != null) return index;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Ignoring unreadable index " + indexPath + ": " + e.getMessage());
+            }
+        }
+
+        GTFIndex index = build(gtfPath);
+        try {
+            index.write(indexPath, size, modified);
+        } catch (IOException e) {
+            System.err.println("Could not write index " + indexPath + ": " + e.getMessage());
+        }
+        return index;
+    }
+
+    /** scan the whole GTF once */
+    public static GTFIndex build(String gtfPath) throws IOException {
+        Builder builder = new Builder();
+        MappedGTFReader.read(gtfPath, builder);
+        builder.finish();
+        return new GTFIndex(!CompressedGTFReader.isCompressed(gtfPath), builder.chromosomes, builder.genes);
+    }
+
+    /**
+     * Read the lines of the selected genes, in file order
+     * @param handler gets the lines as MappedGTFReader.read would, restricted to the selected genes
+     */
+    public static void read(String gtfPath, GeneSelection selection, Consumer<GTFRecord> handler) throws IOException {
+        GTFIndex index = load(gtfPath);
+        index.read(gtfPath, index.resolve(selection), handler);
+    }
+
+    /** @return ordinals of the genes overlapping the region or listed in the selection, in file order */
+    public int[] resolve(GeneSelection selection) {
+        TreeSet<Integer> selected = new TreeSet<>();
+
+        if (selection.hasRegion()) {
+            for (int g : genesOverlapping(selection.getChromosome(), selection.getStart(), selection.getEnd())) selected.add(g);
+        }
+        for (String id : selection.getGeneIDs()) {
+            Integer g = id2gene.get(id);
+            if (g == null) {
+                System.err.println("Gene " + id + " not found in the GTF");
+            } else {
+                selected.add(g);
+            }
+        }
+
+        return selected.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @param start 1-based, inclusive
+     * @param end inclusive
+     * @return ordinals of the genes whose span overlaps [start, end]; "chr1" and "1" are the same chromosome
+     */
+    public int[] genesOverlapping(String chromosome, int start, int end) {
+        int[] sorted = genesByStart.get(chromosome);
+        if (sorted == null) {
+            chromosome = chromosome.startsWith("chr") ? chromosome.substring(3) : "chr" + chromosome;
+            sorted = genesByStart.get(chromosome);
+        }
+        if (sorted == null) {
+            System.err.println("Chromosome " + chromosome + " not found in the GTF");
+            return new int[0];
+        }
+
+        int[] chromosomeBins = bins.get(chromosome);
+        int bin = Math.max(0, start) >> BIN_SHIFT;
+        if (bin >= chromosomeBins.length) return new int[0];
+
+        ArrayList<Integer> overlapping = new ArrayList<>();
+        for (int p = chromosomeBins[bin]; p < sorted.length && genes.get(sorted[p]).start <= end; p++) {
+            if (genes.get(sorted[p]).end >= start) overlapping.add(sorted[p]);
+        }
+        return overlapping.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** read only the byte ranges of the genes (merged, in file order), or skip the other genes if not seekable */
+    public void read(String gtfPath, int[] selectedGenes, Consumer<GTFRecord> handler) throws IOException {
+        if (selectedGenes.length == 0) return;
+
+        if (!seekable) {
+            HashSet<String> ids = new HashSet<>();
+            for (int g : selectedGenes) ids.add(genes.get(g).id);
+            MappedGTFReader.read(gtfPath, new GeneFilter(ids, handler));
+            return;
+        }
+
+        ArrayList<long[]> ranges = new ArrayList<>();
+        for (int g : selectedGenes) {
+            GeneEntry gene = genes.get(g);
+            for (int r = 0; r < gene.numRanges; r++) {
+                ranges.add(new long[]{gene.ranges[2 * r], gene.ranges[2 * r + 1]});
+            }
+        }
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+
+        long from = ranges.getFirst()[0];
+        long to = ranges.getFirst()[1];
+        for (long[] range : ranges) {
+            if (range[0] > to) {
+                MappedGTFReader.read(gtfPath, from, to, handler);
+                from = range[0];
+            }
+            to = Math.max(to, range[1]);
+        }
+        MappedGTFReader.read(gtfPath, from, to, handler);
+    }
+
+    /** per chromosome: genes sorted by start; bin b := first position whose gene overlaps bin b or starts after it */
+    private void buildLinearIndex() {
+        HashMap<String, ArrayList<Integer>> byChromosome = new HashMap<>();
+        for (int g = 0; g < genes.size(); g++) {
+            byChromosome.computeIfAbsent(chromosomes.get(genes.get(g).chromosome), c -> new ArrayList<>()).add(g);
+        }
+
+        for (Map.Entry<String, ArrayList<Integer>> entry : byChromosome.entrySet()) {
+            ArrayList<Integer> chromosomeGenes = entry.getValue();
+            chromosomeGenes.sort(Comparator.comparingInt(g -> genes.get(g).start));  // stable: file order for equal starts
+            int[] sorted = chromosomeGenes.stream().mapToInt(Integer::intValue).toArray();
+
+            int maxEnd = 0;
+            for (int g : sorted) maxEnd = Math.max(maxEnd, genes.get(g).end);
+            int[] chromosomeBins = new int[(maxEnd >> BIN_SHIFT) + 1];
+            Arrays.fill(chromosomeBins, sorted.length);
+
+            for (int p = 0; p < sorted.length; p++) {
+                GeneEntry gene = genes.get(sorted[p]);
+                for (int b = Math.max(0, gene.start) >> BIN_SHIFT; b <= gene.end >> BIN_SHIFT; b++) {
+                    chromosomeBins[b] = Math.min(chromosomeBins[b], p);
+                }
+            }
+            // empty bins: continue with the first gene of a later bin
+            for (int b = chromosomeBins.length - 2; b >= 0; b--) {
+                chromosomeBins[b] = Math.min(chromosomeBins[b], chromosomeBins[b + 1]);
+            }
+
+            genesByStart.put(entry.getKey(), sorted);
+            bins.put(entry.getKey(), chromosomeBins);
+        }
+    }
+
+    /** header: magic, version, size and mtime of the GTF, seekable; then chromosomes and genes */
+    private void write(Path indexPath, long gtfSize, long gtfModified) throws IOException {
+        Path temp = indexPath.resolveSibling(indexPath.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(gtfSize);
+            out.writeLong(gtfModified);
+            out.writeBoolean(seekable);
+
+            out.writeInt(chromosomes.size());
+            for (String chromosome : chromosomes) out.writeUTF(chromosome);
+
+            out.writeInt(genes.size());
+            for (GeneEntry gene : genes) {
+                out.writeUTF(gene.id);
+                out.writeInt(gene.chromosome);
+                out.writeInt(gene.start);
+                out.writeInt(gene.end);
+                out.writeInt(gene.numRanges);
+                for (int i = 0; i < 2 * gene.numRanges; i++) out.writeLong(gene.ranges[i]);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** @return null if the index belongs to another version of the GTF */
+    private static GTFIndex read(Path indexPath, long gtfSize, long gtfModified) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return null;
+            if (in.readLong() != gtfSize || in.readLong() != gtfModified) return null;
+            boolean seekable = in.readBoolean();
+
+            int numChromosomes = in.readInt();
+            ArrayList<String> chromosomes = new ArrayList<>(numChromosomes);
+            for (int c = 0; c < numChromosomes; c++) chromosomes.add(in.readUTF());
+
+            int numGenes = in.readInt();
+            ArrayList<GeneEntry> genes = new ArrayList<>(numGenes);
+            for (int g = 0; g < numGenes; g++) {
+                GeneEntry gene = new GeneEntry(in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+                gene.numRanges = in.readInt();
+                gene.ranges = new long[2 * gene.numRanges];
+                for (int i = 0; i < gene.ranges.length; i++) gene.ranges[i] = in.readLong();
+                genes.add(gene);
+            }
+            return new GTFIndex(seekable, chromosomes, genes);
+        }
+    }
+
+
+    /** chromosome, span and byte ranges [from, to) of the lines of one gene */
+    private static class GeneEntry {
+        private final String id;
+        private final int chromosome;
+        private int start;
+        private int end;
+        private long[] ranges;  // from0, to0, from1, to1...
+        private int numRanges;
+
+        private GeneEntry(String id, int chromosome, int start, int end) {
+            this.id = id;
+            this.chromosome = chromosome;
+            this.start = start;
+            this.end = end;
+            this.ranges = new long[2];
+        }
+
+        private void addRange(long from, long to) {
+            if (numRanges > 0 && ranges[2 * numRanges - 1] == from) {  // directly after the last range
+                ranges[2 * numRanges - 1] = to;
+                return;
+            }
+            if (2 * numRanges == ranges.length) ranges = Arrays.copyOf(ranges, 2 * ranges.length);
+            ranges[2 * numRanges] = from;
+            ranges[2 * numRanges + 1] = to;
+            numRanges++;
+        }
+    }
+
+
+    /** collects the genes while the GTF is scanned; a range ends where the next line of another gene starts */
+    private static class Builder implements Consumer<GTFRecord> {
+        private final ArrayList<String> chromosomes = new ArrayList<>();
+        private final HashMap<String, Integer> chromosomeIndex = new HashMap<>();
+        private final ArrayList<GeneEntry> genes = new ArrayList<>();
+        private final HashMap<String, GeneEntry> id2gene = new HashMap<>();
+
+        private GeneEntry current;
+        private long rangeStart;
+
+        @Override
+        public void accept(GTFRecord record) {
+            long offset = record.getOffset();
+            if (current == null || !record.attributeEquals("gene_id", current.id)) {
+                String id = record.getGeneID();
+                if (current == null || !id.equals(current.id)) {
+                    if (current != null) current.addRange(rangeStart, offset);
+                    current = id2gene.get(id);
+                    if (current == null) {
+                        int chromosome = chromosomeIndex.computeIfAbsent(record.getChromosome(), c -> {
+                            chromosomes.add(c);
+                            return chromosomes.size() - 1;
+                        });
+                        current = new GeneEntry(id, chromosome, record.getStart(), record.getEnd());
+                        genes.add(current);
+                        id2gene.put(id, current);
+                    }
+                    rangeStart = offset;
+                }
+            }
+
+            current.start = Math.min(current.start, record.getStart());
+            current.end = Math.max(current.end, record.getEnd());
+        }
+
+        /** the last range goes until the end of the file */
+        private void finish() {
+            if (current != null) current.addRange(rangeStart, Long.MAX_VALUE);
+        }
+    }
+
+
+    /** passes on only the lines of the selected genes */
+    private static class GeneFilter implements Consumer<GTFRecord> {
+        private final Set<String> ids;
+        private final Consumer<GTFRecord> handler;
+        private String lastID;
+        private boolean lastSelected;
+
+        private GeneFilter(Set<String> ids, Consumer<GTFRecord> handler) {
+            this.ids = ids;
+            this.handler = handler;
+        }
+
+        @Override
+        public void accept(GTFRecord record) {
+            if (lastID == null || !record.attributeEquals("gene_id", lastID)) {
+                lastID = record.getGeneID();
+                lastSelected = ids.contains(lastID);
+            }
+            if (lastSelected) handler.accept(record);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package BaseComponents;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable view on one GTF line inside a byte buffer (usually a memory-mapped part of the file).
+ * Only the tab positions are stored; values are decoded on request, so fields which are never asked for
+ * are never turned into Strings.
+ * 1. chromosome, 2. source, 3. feature, 4. start, 5. end, 6. score, 7. strand, 8. frame, 9. attributes
+ */
+public class GTFRecord {
+    public static final int CHROMOSOME = 0;
+    public static final int FEATURE = 2;
+    public static final int START = 3;
+    public static final int END = 4;
+    public static final int STRAND = 6;
+    public static final int ATTRIBUTES = 8;
+    private static final int NUM_COLUMNS = 9;
+
+    private ByteBuffer buffer;
+    private final int[] columnStart;
+    private final int[] columnEnd;
+    private long offset;
+    private final GTFAttributes attributes;
+
+    public GTFRecord() {
+        this.columnStart = new int[NUM_COLUMNS];
+        this.columnEnd = new int[NUM_COLUMNS];
+        this.attributes = new GTFAttributes();
+    }
+
+    /**
+     * Point the record to the line [lineStart, lineEnd) of the buffer
+     * @param offset position of the line in the file
+     * @return false if the line is a comment or has less than 9 columns
+     */
+    public boolean set(ByteBuffer buffer, int lineStart, int lineEnd, long offset) {
+        if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') lineEnd--;
+        if (lineStart >= lineEnd || buffer.get(lineStart) == '#') return false;
+
+        this.buffer = buffer;
+        this.offset = offset;
+
+        int column = 0;
+        columnStart[0] = lineStart;
+        for (int i = lineStart; i < lineEnd && column < NUM_COLUMNS - 1; i++) {
+            if (buffer.get(i) == '\t') {
+                columnEnd[column] = i;
+                column++;
+                columnStart[column] = i + 1;
+            }
+        }
+        if (column != NUM_COLUMNS - 1) return false;
+
+        columnEnd[ATTRIBUTES] = lineEnd;
+        attributes.set(buffer, columnStart[ATTRIBUTES], lineEnd);
+        return true;
+    }
+
+    /** same check as String.startsWith on the column, without creating the String */
+    public boolean columnStartsWith(int column, String prefix) {
+        int start = columnStart[column];
+        if (columnEnd[column] - start < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer.get(start + i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public boolean columnEquals(int column, String value) {
+        return regionEquals(columnStart[column], columnEnd[column], value);
+    }
+
+    public boolean featureStartsWith(String feature) {
+        return columnStartsWith(FEATURE, feature);
+    }
+
+    public String getColumn(int column) {
+        return decode(columnStart[column], columnEnd[column]);
+    }
+
+    public String getChromosome() {
+        return getColumn(CHROMOSOME);
+    }
+
+    public String getStrand() {
+        return getColumn(STRAND);
+    }
+
+    /** strand as a primitive, see SymbolTable.strand */
+    public char getStrandChar() {
+        return columnEnd[STRAND] > columnStart[STRAND] ? (char) buffer.get(columnStart[STRAND]) : '.';
+    }
+
+    public int getStart() {
+        return parseInt(columnStart[START], columnEnd[START]);
+    }
+
+    public int getEnd() {
+        return parseInt(columnStart[END], columnEnd[END]);
+    }
+
+    /** @return the position of the line in the file */
+    public long getOffset() {
+        return offset;
+    }
+
+    /** lazy view on column 9, valid until the record is set to the next line */
+    public GTFAttributes getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Scan column 9 for the key, e.g. gene_id "ENSG00000223972";
+     * @return value without quotes and ';' or null if the key is not present
+     */
+    public String getAttribute(String key) {
+        return attributes.get(key);
+    }
+
+    public String getAttribute(String key, String defaultValue) {
+        return attributes.get(key, defaultValue);
+    }
+
+    /** compares the attribute value with an already known String, no allocation */
+    public boolean attributeEquals(String key, String value) {
+        return attributes.valueEquals(key, value);
+    }
+
+    /** value of the first attribute - used as gene_id fallback, as the old split(" ")[2] did */
+    public String getFirstAttributeValue() {
+        return attributes.getFirstValue();
+    }
+
+    /** gene_id, or the value of the first attribute if there is none */
+    public String getGeneID() {
+        String geneID = attributes.get("gene_id", "");
+        return geneID.isEmpty() ? attributes.getFirstValue() : geneID;
+    }
+
+    private boolean regionEquals(int start, int end, String value) {
+        if (end - start != value.length()) return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer.get(start + i) != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private int parseInt(int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException("Invalid coordinate in GTF at byte " + (offset + i - columnStart[0]));
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
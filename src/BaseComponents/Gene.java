@@ -1,30 +1,31 @@
 package BaseComponents;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
 
 public class Gene {
-    private String ID;
+    private int ID;  // SymbolTable.GENE_IDS
     private String Name;
-    private String chromosome;
-    private String strandDirection;
+    private int chromosome;  // SymbolTable.CHROMOSOMES
+    private char strand;
     private final ArrayList<Transcript> allTranscripts;
-    private ArrayList<Intron> allIntrons;
-    private Map<Integer, ArrayList<Intron>> organizedIntrons;
+    private IntronTable intronTable;
     private int n_ports;
     private int n_trans;
 
     public Gene() {
+        this.ID = SymbolTable.NONE;
+        this.chromosome = SymbolTable.NONE;
         this.allTranscripts = new ArrayList<>();
-        this.allIntrons = new ArrayList<>();
-        this.organizedIntrons = new HashMap<>();
     }
 
     public Gene(String chromosome, String strand){
+        this(SymbolTable.CHROMOSOMES.intern(chromosome), SymbolTable.strand(strand));
+    }
+
+    public Gene(int chromosome, char strand){
         this();
         this.chromosome = chromosome;
-        this.strandDirection = strand;
+        this.strand = strand;
     }
 
 
@@ -36,11 +37,15 @@ public class Gene {
 
     // Getter and Setter
     public String getID() {
+        return SymbolTable.GENE_IDS.resolve(ID);
+    }
+
+    public int getIDSymbol() {
         return ID;
     }
 
     public void setID(String ID) {
-        this.ID = ID;
+        this.ID = SymbolTable.GENE_IDS.intern(ID);
     }
 
     public String getName() {
@@ -59,28 +64,37 @@ public class Gene {
         return allTranscripts;
     }
 
-    public ArrayList<Intron> getAllIntrons() {
-        return allIntrons;
+    /** smallest CDS start of all transcripts, used to sort genes along the chromosome */
+    public int getStartGenomic() {
+        int start = Integer.MAX_VALUE;
+        for (Transcript transcript : allTranscripts) {
+            if (transcript.getNumCDS() > 0) start = Math.min(start, transcript.getCDSStart(0));
+        }
+        return start;
     }
 
-    public void setAllIntrons(ArrayList<Intron> allIntrons) {
-        this.allIntrons = allIntrons;
+    public IntronTable getIntronTable() {
+        return intronTable;
     }
 
-    public void setOrganizedIntrons(Map<Integer, ArrayList<Intron>> organizedIntrons) {
-        this.organizedIntrons = organizedIntrons;
+    public void setIntronTable(IntronTable intronTable) {
+        this.intronTable = intronTable;
     }
 
-    public Map<Integer, ArrayList<Intron>> getOrganizedIntrons() {
-        return organizedIntrons;
+    public String getChromosome() {
+        return SymbolTable.CHROMOSOMES.resolve(chromosome);
     }
 
-    public String getChromosome() {
+    public int getChromosomeSymbol() {
         return chromosome;
     }
 
     public String getStrandDirection() {
-        return strandDirection;
+        return String.valueOf(strand);
+    }
+
+    public char getStrand() {
+        return strand;
     }
 
     public int getN_ports() {
@@ -0,0 +1,87 @@
+package BaseComponents;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Genes to process instead of the whole GTF: the genes overlapping a region (-region chr:start-end)
+ * and/or a list of gene ids (-genes file). Resolved to byte ranges of the GTF by GTFIndex.
+ */
+public class GeneSelection {
+    private String chromosome;  // null := no region
+    private int start;
+    private int end;
+    private final Set<String> geneIDs;
+
+    public GeneSelection() {
+        this.geneIDs = new LinkedHashSet<>();
+    }
+
+    /**
+     * @param region chr:start-end (1-based, inclusive, as in the GTF) or just chr for the whole chromosome;
+     *               thousands separators (1,000,000) are allowed
+     */
+    public void setRegion(String region) {
+        int colon = region.lastIndexOf(':');
+        if (colon < 0) {
+            setRegion(region, 1, Integer.MAX_VALUE);
+            return;
+        }
+
+        String[] coordinates = region.substring(colon + 1).replace(",", "").split("-");
+        if (coordinates.length != 2) throw new IllegalArgumentException("Region has to be chr:start-end: " + region);
+        try {
+            setRegion(region.substring(0, colon), Integer.parseInt(coordinates[0]), Integer.parseInt(coordinates[1]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid coordinates in region " + region);
+        }
+    }
+
+    public void setRegion(String chromosome, int start, int end) {
+        if (chromosome.isEmpty() || start > end) throw new IllegalArgumentException("Invalid region " + chromosome + ":" + start + "-" + end);
+        this.chromosome = chromosome;
+        this.start = start;
+        this.end = end;
+    }
+
+    /** one gene id per line (first column); empty lines and lines starting with '#' are skipped */
+    public void addGeneFile(String path) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                geneIDs.add(line.split("\\s+")[0]);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return chromosome == null && geneIDs.isEmpty();
+    }
+
+
+    // Getter and Setter
+    public boolean hasRegion() {
+        return chromosome != null;
+    }
+
+    public String getChromosome() {
+        return chromosome;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public Set<String> getGeneIDs() {
+        return geneIDs;
+    }
+}
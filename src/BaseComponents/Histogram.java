@@ -0,0 +1,168 @@
+package BaseComponents;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming histogram of non-negative integer values with a fixed number of bins, so the memory does not grow
+ * with the number of values (instead of keeping every value in a list for the plots).
+ * Fixed bins: [min + i*width, min + (i+1)*width); values outside of the range are counted in an under-/overflow bin.
+ * Log bins: binsPerDecade bins per power of ten of (value + 1), for values spanning several orders of magnitude.
+ * Count, sum, min and max are exact; quantiles are exact for fixed bins of width 1 and interpolated in the bin otherwise.
+ */
+public class Histogram {
+    private static final int MAX_DECADES = 19;  // Long.MAX_VALUE < 10^19
+
+    private final boolean logarithmic;
+    private final long min;
+    private final long binWidth;
+    private final int binsPerDecade;
+    private final long[] counts;
+    private long underflow;
+    private long overflow;
+
+    private long count;
+    private long sum;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue = Long.MIN_VALUE;
+
+    private Histogram(boolean logarithmic, long min, long binWidth, int binsPerDecade, int numBins) {
+        this.logarithmic = logarithmic;
+        this.min = min;
+        this.binWidth = binWidth;
+        this.binsPerDecade = binsPerDecade;
+        this.counts = new long[numBins];
+    }
+
+    /** numBins bins of the given width, starting at min */
+    public static Histogram fixed(long min, long binWidth, int numBins) {
+        if (binWidth <= 0 || numBins <= 0) throw new IllegalArgumentException("Bin width and number of bins have to be positive");
+        return new Histogram(false, min, binWidth, 0, numBins);
+    }
+
+    /** bins with the same width on a log10(value + 1) scale */
+    public static Histogram logarithmic(int binsPerDecade) {
+        if (binsPerDecade <= 0) throw new IllegalArgumentException("Number of bins per decade has to be positive");
+        return new Histogram(true, 0, 0, binsPerDecade, MAX_DECADES * binsPerDecade);
+    }
+
+    public void add(long value) {
+        add(value, 1);
+    }
+
+    public void add(long value, long times) {
+        int bin = binOf(value);
+        if (bin < 0) underflow += times;
+        else if (bin >= counts.length) overflow += times;
+        else counts[bin] += times;
+
+        count += times;
+        sum += value * times;
+        minValue = Math.min(minValue, value);
+        maxValue = Math.max(maxValue, value);
+    }
+
+    /** adds the counts of another histogram with the same bins (e.g. of another thread) */
+    public void merge(Histogram other) {
+        if (other.logarithmic != logarithmic || other.min != min || other.binWidth != binWidth
+                || other.binsPerDecade != binsPerDecade || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Histograms with different bins can not be merged");
+        }
+        for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+        underflow += other.underflow;
+        overflow += other.overflow;
+        count += other.count;
+        sum += other.sum;
+        minValue = Math.min(minValue, other.minValue);
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    private int binOf(long value) {
+        if (!logarithmic) {
+            if (value < min) return -1;
+            long bin = (value - min) / binWidth;
+            return bin >= counts.length ? counts.length : (int) bin;
+        }
+        if (value < 0) return -1;
+        return (int) Math.floor(Math.log10(value + 1.0) * binsPerDecade);
+    }
+
+    /** @return first value of the bin */
+    public long getBinStart(int bin) {
+        if (!logarithmic) return min + bin * binWidth;
+        return (long) Math.ceil(Math.pow(10, (double) bin / binsPerDecade) - 1);
+    }
+
+    /** @return first value of the next bin (exclusive end) */
+    public long getBinEnd(int bin) {
+        return getBinStart(bin + 1);
+    }
+
+    /**
+     * @param q between 0 and 1, e.g. 0.5 for the median
+     * @return linear interpolation between the closest ranks (as numpy.percentile)
+     */
+    public double quantile(double q) {
+        if (count == 0) return Double.NaN;
+        double rank = q * (count - 1);
+        long lower = (long) Math.floor(rank);
+        double lowerValue = valueAt(lower);
+        if (lower + 1 >= count) return lowerValue;
+        return lowerValue + (rank - lower) * (valueAt(lower + 1) - lowerValue);
+    }
+
+    /** @return the value with the given rank (0 := smallest); values are assumed to be spread evenly inside a bin */
+    private double valueAt(long rank) {
+        if (rank < underflow) return minValue;
+        long seen = underflow;
+        for (int bin = 0; bin < counts.length; bin++) {
+            if (rank < seen + counts[bin]) {
+                long start = Math.max(getBinStart(bin), minValue);
+                long end = Math.min(getBinEnd(bin), maxValue + 1);
+                return start + (double) (end - start - 1) * (rank - seen) / Math.max(1, counts[bin] - 1);
+            }
+            seen += counts[bin];
+        }
+        return maxValue;
+    }
+
+    /**
+     * Writes the non-empty bins as CSV rows: bin_start,bin_end,count (bin_end exclusive);
+     * under-/overflow are written as bins from min / up to max + 1
+     */
+    public void writeTable(Writer writer) throws IOException {
+        writeTable(null, writer);
+    }
+
+    /** as writeTable(writer), with the label as first column (e.g. the release) */
+    public void writeTable(String label, Writer writer) throws IOException {
+        String prefix = label == null ? "" : label + ",";
+        if (underflow > 0) writer.write(prefix + minValue + "," + getBinStart(0) + "," + underflow + "\n");
+        for (int bin = 0; bin < counts.length; bin++) {
+            if (counts[bin] > 0) writer.write(prefix + getBinStart(bin) + "," + getBinEnd(bin) + "," + counts[bin] + "\n");
+        }
+        if (overflow > 0) writer.write(prefix + getBinStart(counts.length) + "," + (maxValue + 1) + "," + overflow + "\n");
+    }
+
+
+    // Getter and Setter
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : (double) sum / count;
+    }
+
+    public long getMin() {
+        return minValue;
+    }
+
+    public long getMax() {
+        return maxValue;
+    }
+}
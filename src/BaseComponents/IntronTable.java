@@ -0,0 +1,263 @@
+package BaseComponents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * All introns of one gene in primitive arrays instead of Intron objects.
+ * Row r is the intron starts[r]:ends[r] (the bordering CDS positions) of the transcript transcriptOrdinals[r]
+ * (index in Gene.getAllTranscripts()), followed by the CDS cdsOrdinals[r] of that transcript.
+ * Rows are sorted by start; introns with the same start keep the order transcript by transcript.
+ */
+public class IntronTable {
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] transcriptOrdinals;
+    private final int[] cdsOrdinals;
+    private final BitSet checked;
+
+    // rows of transcript t in 5'->3' order: transcriptRows[transcriptOffsets[t]] ... transcriptRows[transcriptOffsets[t+1] - 1]
+    private final int[] transcriptRows;
+    private final int[] transcriptOffsets;
+    private final int[] intronOfRow;  // inverse of transcriptRows
+    private final Transcript[] transcripts;
+
+    // prefix sums in transcript order: cds3LengthPrefix[i] = sum of the 3' CDS lengths of the introns before index i
+    private final int[] cds3LengthPrefix;
+    // transcripts with nested CDS, their intron starts are not sorted => no binary search on them
+    // (the ends are the CDS starts and always sorted; overlapping CDS give introns with end < start)
+    private final BitSet unsortedTranscripts;
+
+    public IntronTable(ArrayList<Transcript> transcripts) {
+        int numTranscripts = transcripts.size();
+        this.transcripts = transcripts.toArray(new Transcript[0]);
+        this.transcriptOffsets = new int[numTranscripts + 1];
+
+        int numIntrons = 0;
+        for (int t = 0; t < numTranscripts; t++) {
+            numIntrons += this.transcripts[t].getNumIntrons();
+            transcriptOffsets[t + 1] = numIntrons;
+        }
+
+        // sort key: start in the upper, transcript order in the lower 32 bits => stable sort by start
+        long[] keys = new long[numIntrons];
+        int i = 0;
+        for (int t = 0; t < numTranscripts; t++) {
+            Transcript transcript = this.transcripts[t];
+            for (int c = 0; c < transcript.getNumIntrons(); c++, i++) {
+                keys[i] = ((long) transcript.getIntronStart(c) << 32) | i;
+            }
+        }
+        Arrays.sort(keys);
+
+        this.starts = new int[numIntrons];
+        this.ends = new int[numIntrons];
+        this.transcriptOrdinals = new int[numIntrons];
+        this.cdsOrdinals = new int[numIntrons];
+        this.transcriptRows = new int[numIntrons];
+        this.intronOfRow = new int[numIntrons];
+        this.checked = new BitSet(numIntrons);
+        this.cds3LengthPrefix = new int[numIntrons + 1];
+        this.unsortedTranscripts = new BitSet(numTranscripts);
+
+        int[] transcriptOfIntron = new int[numIntrons];
+        for (int t = 0; t < numTranscripts; t++) {
+            Arrays.fill(transcriptOfIntron, transcriptOffsets[t], transcriptOffsets[t + 1], t);
+        }
+
+        for (int row = 0; row < numIntrons; row++) {
+            int intron = (int) keys[row];
+            int t = transcriptOfIntron[intron];
+            int c = intron - transcriptOffsets[t] + 1;  // 3' CDS of the intron
+
+            starts[row] = this.transcripts[t].getIntronStart(c - 1);
+            ends[row] = this.transcripts[t].getIntronEnd(c - 1);
+            transcriptOrdinals[row] = t;
+            cdsOrdinals[row] = c;
+            transcriptRows[intron] = row;
+            intronOfRow[row] = intron;
+            cds3LengthPrefix[intron + 1] = this.transcripts[t].getCDSLength(c);
+        }
+
+        for (int t = 0; t < numTranscripts; t++) {
+            for (int intron = transcriptOffsets[t]; intron < transcriptOffsets[t + 1]; intron++) {
+                cds3LengthPrefix[intron + 1] += cds3LengthPrefix[intron];
+                if (intron > transcriptOffsets[t] && starts[transcriptRows[intron]] < starts[transcriptRows[intron - 1]]) {
+                    unsortedTranscripts.set(t);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    /** @return the row at index i, if the rows are ordered transcript by transcript (the order they were defined in) */
+    public int getRowInTranscriptOrder(int i) {
+        return transcriptRows[i];
+    }
+
+    /** @return index of the row if the rows are ordered transcript by transcript, inverse of getRowInTranscriptOrder */
+    public int getOrderInTranscript(int row) {
+        return intronOfRow[row];
+    }
+
+    /** @return the row of the next intron of the same transcript (by position), -1 for its last intron */
+    public int getNextInTranscript(int row) {
+        int next = intronOfRow[row] + 1;
+        return next < transcriptOffsets[transcriptOrdinals[row] + 1] ? transcriptRows[next] : -1;
+    }
+
+    /** @return first row with a start >= the given position (binary search) */
+    public int firstRowStartingAt(int start) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < start) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * WT path test of the ES detection: walks the transcript's introns by start, from the given start on, as long as
+     * they start before end (for equal starts only the first intron of the transcript counts).
+     * Overlapping CDS give introns with end < start, so an intron ending at end alone does not make a path.
+     * @return true if an intron ending at end is reached before one ending after end
+     */
+    public boolean hasPathEndingAt(int transcript, int start, int end) {
+        // transcripts with unsorted starts: the rows of the table are sorted by start
+        boolean unsorted = unsortedTranscripts.get(transcript);
+        int i = unsorted ? firstRowStartingAt(start) : firstStartingAt(transcript, start);
+        int to = unsorted ? starts.length : transcriptOffsets[transcript + 1];
+        int previousStart = Integer.MIN_VALUE;
+        for (; i < to; i++) {
+            int row = unsorted ? i : transcriptRows[i];
+            if (starts[row] >= end) break;
+            if (transcriptOrdinals[row] != transcript || starts[row] == previousStart) continue;
+            previousStart = starts[row];
+
+            if (ends[row] == end) return true;
+            if (ends[row] > end) return false;
+        }
+        return false;
+    }
+
+    /**
+     * @return rows of the transcript's introns with start <= intron start and intron end <= end, in 5'->3' order
+     *         (also introns with end < start, from overlapping CDS)
+     */
+    public int[] getRowsWithin(int transcript, int start, int end) {
+        int from = transcriptOffsets[transcript];
+        int to = transcriptOffsets[transcript + 1];
+        int[] rows = new int[to - from];
+        int numRows = 0;
+
+        if (unsortedTranscripts.get(transcript)) {
+            for (int i = from; i < to; i++) {
+                int row = transcriptRows[i];
+                if (starts[row] >= start && ends[row] <= end) rows[numRows++] = row;
+            }
+        } else {
+            // starts and ends are sorted => from the first intron starting at start to the last one ending at end
+            for (int i = firstStartingAt(transcript, start); i < to && ends[transcriptRows[i]] <= end; i++) {
+                rows[numRows++] = transcriptRows[i];
+            }
+        }
+        return Arrays.copyOf(rows, numRows);
+    }
+
+    /** @return number of the transcript's introns with start <= intron start and intron end <= end, O(log n) */
+    public int countWithin(int transcript, int start, int end) {
+        if (unsortedTranscripts.get(transcript)) return getRowsWithin(transcript, start, end).length;
+        return Math.max(0, firstEndingAfter(transcript, end) - firstStartingAt(transcript, start));
+    }
+
+    /** @return sum of the 3' CDS lengths of the transcript's introns within start and end, O(log n) */
+    public int cds3LengthWithin(int transcript, int start, int end) {
+        if (unsortedTranscripts.get(transcript)) {
+            int sum = 0;
+            for (int row : getRowsWithin(transcript, start, end)) sum += getCds3Length(row);
+            return sum;
+        }
+        int from = firstStartingAt(transcript, start);
+        int to = firstEndingAfter(transcript, end);
+        return from < to ? cds3LengthPrefix[to] - cds3LengthPrefix[from] : 0;
+    }
+
+    /** @return transcript order index of the first intron of the transcript with a start >= the given position */
+    private int firstStartingAt(int transcript, int start) {
+        int low = transcriptOffsets[transcript];
+        int high = transcriptOffsets[transcript + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[transcriptRows[mid]] < start) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /** @return transcript order index of the first intron of the transcript with an end > the given position */
+    private int firstEndingAfter(int transcript, int end) {
+        int low = transcriptOffsets[transcript];
+        int high = transcriptOffsets[transcript + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[transcriptRows[mid]] <= end) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    public int getStart(int row) {
+        return starts[row];
+    }
+
+    public int getEnd(int row) {
+        return ends[row];
+    }
+
+    public int getTranscript(int row) {
+        return transcriptOrdinals[row];
+    }
+
+    public int getNumTranscripts() {
+        return transcripts.length;
+    }
+
+    /** @return the transcript (index in Gene.getAllTranscripts()), its CDS are sorted by start */
+    public Transcript getTranscriptAt(int transcript) {
+        return transcripts[transcript];
+    }
+
+    /** @return start of the CDS preceding the intron (5' end) */
+    public int getCds5Start(int row) {
+        return transcripts[transcriptOrdinals[row]].getCDSStart(cdsOrdinals[row] - 1);
+    }
+
+    /** @return end of the CDS following the intron (3' end); its start is getEnd(row) */
+    public int getCds3Stop(int row) {
+        return transcripts[transcriptOrdinals[row]].getCDSEnd(cdsOrdinals[row]);
+    }
+
+    /** @return length of the CDS following the intron (3' end) */
+    public int getCds3Length(int row) {
+        return transcripts[transcriptOrdinals[row]].getCDSLength(cdsOrdinals[row]);
+    }
+
+    /** @return protein id of the CDS following the intron (3' end) */
+    public String getCds3Protein(int row) {
+        return transcripts[transcriptOrdinals[row]].getProteinID(cdsOrdinals[row]);
+    }
+
+    public boolean isChecked(int row) {
+        return checked.get(row);
+    }
+
+    public void setChecked(int row) {
+        checked.set(row);
+    }
+}
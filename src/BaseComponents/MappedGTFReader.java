@@ -0,0 +1,107 @@
+package BaseComponents;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Memory-maps a GTF file with NIO and hands every line as a GTFRecord to a handler.
+ * The record is reused for all lines, so the handler has to copy what it wants to keep.
+ * gzip/BGZF-compressed files are passed on to CompressedGTFReader.
+ */
+public abstract class MappedGTFReader {
+    // a mapping can hold at most Integer.MAX_VALUE bytes; bigger files are mapped window by window
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    public static void read(String filePath, Consumer<GTFRecord> handler) throws IOException {
+        if (CompressedGTFReader.isCompressed(filePath)) {
+            CompressedGTFReader.read(filePath, Runtime.getRuntime().availableProcessors(), handler);
+            return;
+        }
+        read(filePath, 0, Long.MAX_VALUE, handler);
+    }
+
+    /**
+     * @param from first byte, has to be the start of a line
+     * @param to end of the range (exclusive); a line starting before it is read completely
+     * @param handler gets each data line of the range
+     */
+    public static void read(String filePath, long from, long to, Consumer<GTFRecord> handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            GTFRecord record = new GTFRecord();
+
+            long windowStart = from;
+            while (windowStart < Math.min(to, size)) {
+                long windowLength = Math.min(WINDOW_SIZE, size - windowStart);
+                boolean lastWindow = windowStart + windowLength == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+                int limit = (int) windowLength;
+
+                int lineStart = 0;
+                while (lineStart < limit && windowStart + lineStart < to) {
+                    int lineEnd = indexOfNewline(buffer, lineStart, limit);
+                    if (lineEnd < 0) {
+                        if (!lastWindow) break;  // line continues in the next window
+                        lineEnd = limit;
+                    }
+                    if (record.set(buffer, lineStart, lineEnd, windowStart + lineStart)) handler.accept(record);
+                    lineStart = lineEnd + 1;
+                }
+
+                if (lineStart == 0) throw new IOException("GTF line longer than " + WINDOW_SIZE + " bytes in " + filePath);
+                windowStart += Math.min(lineStart, limit);
+            }
+        }
+    }
+
+    /**
+     * Split the file into byte ranges of about the same size, each starting at the beginning of a line
+     * @return boundaries of the ranges: range i is [boundaries[i], boundaries[i+1])
+     */
+    public static long[] splitAtLines(String filePath, int parts) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ArrayList<Long> boundaries = new ArrayList<>();
+            boundaries.add(0L);
+
+            ByteBuffer probe = ByteBuffer.allocate(64 * 1024);
+            for (int i = 1; i < parts; i++) {
+                long position = Math.max(size / parts * i, boundaries.getLast());
+                long lineStart = -1;
+
+                // move forward to the next newline
+                while (lineStart < 0 && position < size) {
+                    probe.clear();
+                    int read = channel.read(probe, position);
+                    if (read <= 0) break;
+                    for (int j = 0; j < read; j++) {
+                        if (probe.get(j) == '\n') {
+                            lineStart = position + j + 1;
+                            break;
+                        }
+                    }
+                    position += read;
+                }
+
+                if (lineStart < 0 || lineStart >= size) break;
+                if (lineStart > boundaries.getLast()) boundaries.add(lineStart);
+            }
+            boundaries.add(size);
+
+            return boundaries.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    private static int indexOfNewline(MappedByteBuffer buffer, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+}
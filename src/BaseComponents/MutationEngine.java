@@ -0,0 +1,79 @@
+package BaseComponents;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Substitutions in read sequences: every base is mutated independently with the probability mutationRate / 100.
+ * Instead of one random number per base, the number of unmutated bases before the next mutation is drawn from the
+ * geometric distribution (skip sampling), so the cost grows with the number of mutations, not with the read length.
+ * The rate may be fractional; a mutated A, C, G or T becomes one of the three other bases, any other character one of
+ * the four, uniformly.
+ * Not thread-safe (uses the random generator of its read).
+ */
+public class MutationEngine {
+    private static final byte[] BASES = {'A', 'C', 'G', 'T'};
+    private static final byte[][] SUBSTITUTES = new byte[128][];  // base -> the bases it can become
+
+    static {
+        for (byte base : BASES) {
+            byte[] substitutes = new byte[BASES.length - 1];
+            int i = 0;
+            for (byte other : BASES) {
+                if (other != base) substitutes[i++] = other;
+            }
+            SUBSTITUTES[base] = substitutes;
+        }
+    }
+
+    private final double mutationRate;
+    private final double probability;  // per base
+    private final double logNoMutation;  // log(1 - probability)
+    private final RandomGenerator random;
+
+    /** @param mutationRate percent of mutated bases, from 0 to 100 */
+    public MutationEngine(double mutationRate, RandomGenerator random) {
+        this.mutationRate = mutationRate;
+        this.probability = Math.min(1.0, Math.max(0.0, mutationRate / 100));
+        this.logNoMutation = Math.log1p(-probability);
+        this.random = random;
+    }
+
+    /**
+     * Mutate bases[0, length) in place.
+     * @param positions receives the mutated positions in ascending order, at least length long
+     * @return number of mutations
+     */
+    public int mutate(byte[] bases, int length, int[] positions) {
+        if (probability == 0.0) return 0;
+
+        int count = 0;
+        long position = nextGap();
+        while (position < length) {
+            int i = (int) position;
+            positions[count++] = i;
+            bases[i] = substitute(bases[i]);
+            position += 1 + nextGap();
+        }
+        return count;
+    }
+
+    /** @return number of unmutated bases before the next mutation, geometrically distributed */
+    private long nextGap() {
+        if (probability == 1.0) return 0;
+        // 1 - nextDouble() is in (0, 1] => the logarithm is finite
+        double gap = Math.log(1.0 - random.nextDouble()) / logNoMutation;
+        return (long) Math.min(gap, Integer.MAX_VALUE);
+    }
+
+    private byte substitute(byte base) {
+        byte[] substitutes = base >= 0 ? SUBSTITUTES[base] : null;
+        if (substitutes == null) return BASES[random.nextInt(BASES.length)];
+        return substitutes[random.nextInt(substitutes.length)];
+    }
+
+
+    // Getter and Setter
+    public double getMutationRate() {
+        return mutationRate;
+    }
+}
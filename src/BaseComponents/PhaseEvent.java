@@ -0,0 +1,39 @@
+package BaseComponents;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one timed phase (PhaseMetrics.Timer), e.g. recorded with
+ * java -XX:StartFlightRecording=filename=run.jfr ... and shown per phase in JDK Mission Control.
+ * Phases which are timed per transcript or gene give one event per item group.
+ */
+@Name("GenomeProcessingTools.Phase")
+@Label("Phase")
+@Category("GenomeProcessingTools")
+@Description("One timed phase of ExonSkipping or ReadSimulator")
+@StackTrace(false)
+class PhaseEvent extends Event {
+    @Label("Tool")
+    String tool;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Items")
+    long items;
+
+    @Label("CPU Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long cpuTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
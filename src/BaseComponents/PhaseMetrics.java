@@ -0,0 +1,290 @@
+package BaseComponents;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Wall time, CPU time, allocated bytes and item counts per phase of a run, e.g. GTF parse or ES-SE detection.
+ * A Timer measures the thread which starts and stops it (ThreadMXBean: CPU time and allocated bytes of the thread).
+ * A phase can be timed any number of times, also from several threads at once: phases which are done per gene or
+ * per transcript are timed per item and summed up, parallel phases are timed in the worker tasks.
+ * So for a phase
+ *   wall_ns    sum of the timed intervals (= elapsed time if it is timed once on one thread)
+ *   span_ns    from the first start to the last stop of the phase (elapsed time of a parallel phase)
+ *   cpu_ns, allocated_bytes, items, calls: sums over all timers of the phase
+ * Every timer is also recorded as a JFR event (PhaseEvent) if a flight recording is running.
+ * Counts which are no phase of their own (e.g. cache hits) are counters, kept apart from the phases.
+ * The phases and counters are written as JSON or in the Prometheus text format (write), in the order they were first
+ * started or counted.
+ */
+public class PhaseMetrics {
+    /** no measurements at all, for callers which do not ask for metrics */
+    public static final PhaseMetrics NONE = new PhaseMetrics("none", false);
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+    private static final Timer NO_TIMER = new Timer(null);
+
+    private final String tool;
+    private final boolean enabled;
+    private final long created;
+    private final LinkedHashMap<String, Phase> phases;  // guarded by itself
+    private final LinkedHashMap<String, LongAdder> counters;  // guarded by itself
+
+    public PhaseMetrics(String tool) {
+        this(tool, true);
+    }
+
+    private PhaseMetrics(String tool, boolean enabled) {
+        this.tool = tool;
+        this.enabled = enabled;
+        this.created = System.currentTimeMillis();
+        this.phases = new LinkedHashMap<>();
+        this.counters = new LinkedHashMap<>();
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)) return null;
+        try {
+            if (threads.isThreadCpuTimeSupported()) threads.setThreadCpuTimeEnabled(true);
+            if (threads.isThreadAllocatedMemorySupported()) threads.setThreadAllocatedMemoryEnabled(true);
+        } catch (UnsupportedOperationException | SecurityException e) {
+            System.err.println("Thread CPU time/allocation measurement not available: " + e.getMessage());
+        }
+        return threads;
+    }
+
+    /** start timing the phase on the current thread; Timer.stop adds the measurement */
+    public Timer start(String phase) {
+        if (!enabled) return NO_TIMER;
+        Phase target;
+        synchronized (phases) {
+            target = phases.computeIfAbsent(phase, Phase::new);
+        }
+        return new Timer(target);
+    }
+
+    /** add to the counter, a count without timing (e.g. cache hits, number of loci) */
+    public void count(String counter, long value) {
+        if (!enabled) return;
+        LongAdder adder;
+        synchronized (counters) {
+            adder = counters.computeIfAbsent(counter, c -> new LongAdder());
+        }
+        adder.add(value);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** one line per phase and per counter, for the console */
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        for (Phase phase : snapshot()) {
+            summary.append(String.format(Locale.ROOT, "%-22s wall %9.1f ms  cpu %9.1f ms  alloc %9.1f MB  items %d%n",
+                    phase.name, phase.wallNanos.sum() / 1e6, phase.cpuNanos.sum() / 1e6,
+                    phase.allocatedBytes.sum() / 1e6, phase.items.sum()));
+        }
+        for (Map.Entry<String, Long> counter : counterSnapshot().entrySet()) {
+            summary.append(String.format(Locale.ROOT, "%-22s count %d%n", counter.getKey(), counter.getValue()));
+        }
+        return summary.toString();
+    }
+
+    /** write the phases to the path; paths ending with ".prom" or ".txt" get the Prometheus text format, others JSON */
+    public void write(String path) throws IOException {
+        String content = path.endsWith(".prom") || path.endsWith(".txt") ? toPrometheus() : toJson();
+        try (BufferedWriter writer = Files.newBufferedWriter(Path.of(path), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"tool\": \"").append(tool).append("\",\n");
+        json.append("  \"started\": \"").append(Instant.ofEpochMilli(created)).append("\",\n");
+        json.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"processors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("  \"phases\": [");
+        boolean first = true;
+        for (Phase phase : snapshot()) {
+            json.append(first ? "\n" : ",\n");
+            json.append("    {\"phase\": \"").append(phase.name).append('"')
+                    .append(", \"calls\": ").append(phase.calls.sum())
+                    .append(", \"wall_ns\": ").append(phase.wallNanos.sum())
+                    .append(", \"span_ns\": ").append(phase.span())
+                    .append(", \"cpu_ns\": ").append(phase.cpuNanos.sum())
+                    .append(", \"allocated_bytes\": ").append(phase.allocatedBytes.sum())
+                    .append(", \"items\": ").append(phase.items.sum()).append('}');
+            first = false;
+        }
+        json.append("\n  ],\n");
+        json.append("  \"counters\": {");
+        first = true;
+        for (Map.Entry<String, Long> counter : counterSnapshot().entrySet()) {
+            json.append(first ? "\n" : ",\n");
+            json.append("    \"").append(counter.getKey()).append("\": ").append(counter.getValue());
+            first = false;
+        }
+        return json.append(first ? "}\n}\n" : "\n  }\n}\n").toString();
+    }
+
+    public String toPrometheus() {
+        Phase[] snapshot = snapshot();
+        StringBuilder text = new StringBuilder();
+        appendMetric(text, snapshot, "phase_calls_total", "counter", "Number of times the phase was timed", phase -> (double) phase.calls.sum());
+        appendMetric(text, snapshot, "phase_wall_seconds", "gauge", "Sum of the timed wall intervals of the phase", phase -> phase.wallNanos.sum() / 1e9);
+        appendMetric(text, snapshot, "phase_span_seconds", "gauge", "First start to last stop of the phase", phase -> phase.span() / 1e9);
+        appendMetric(text, snapshot, "phase_cpu_seconds", "gauge", "CPU time of the threads while timing the phase", phase -> phase.cpuNanos.sum() / 1e9);
+        appendMetric(text, snapshot, "phase_allocated_bytes", "gauge", "Heap allocated by the threads while timing the phase", phase -> (double) phase.allocatedBytes.sum());
+        appendMetric(text, snapshot, "phase_items_total", "counter", "Items (genes, events, reads, ...) processed in the phase", phase -> (double) phase.items.sum());
+
+        LinkedHashMap<String, Long> counters = counterSnapshot();
+        text.append("# HELP genometools_count_total Counts which are no phase (cache hits, loci, ...)\n");
+        text.append("# TYPE genometools_count_total counter\n");
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            text.append("genometools_count_total{tool=\"").append(tool).append("\",counter=\"").append(counter.getKey()).append("\"} ")
+                    .append(counter.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private void appendMetric(StringBuilder text, Phase[] snapshot, String name, String type, String help,
+                              ToDoubleFunction<Phase> value) {
+        text.append("# HELP genometools_").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE genometools_").append(name).append(' ').append(type).append('\n');
+        for (Phase phase : snapshot) {
+            double v = value.applyAsDouble(phase);
+            text.append("genometools_").append(name).append("{tool=\"").append(tool).append("\",phase=\"").append(phase.name).append("\"} ")
+                    .append(v == Math.rint(v) && Math.abs(v) < 1e15 ? String.valueOf((long) v) : String.format(Locale.ROOT, "%.9f", v))
+                    .append('\n');
+        }
+    }
+
+    private Phase[] snapshot() {
+        synchronized (phases) {
+            return phases.values().toArray(new Phase[0]);
+        }
+    }
+
+    private LinkedHashMap<String, Long> counterSnapshot() {
+        LinkedHashMap<String, Long> snapshot = new LinkedHashMap<>();
+        synchronized (counters) {
+            counters.forEach((counter, value) -> snapshot.put(counter, value.sum()));
+        }
+        return snapshot;
+    }
+
+    private static long currentThreadCpuTime() {
+        return THREADS != null && THREADS.isThreadCpuTimeEnabled() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        return THREADS != null && THREADS.isThreadAllocatedMemoryEnabled() ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+
+    /** accumulated measurements of one phase */
+    private class Phase {
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder wallNanos = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder items = new LongAdder();
+        private final LongAccumulator firstStart = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final AtomicLong lastStop = new AtomicLong(Long.MIN_VALUE);
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        private String tool() {
+            return tool;
+        }
+
+        private long span() {
+            return lastStop.get() == Long.MIN_VALUE ? 0 : lastStop.get() - firstStart.get();
+        }
+    }
+
+
+    /**
+     * One measurement of a phase on the current thread; not thread-safe, stop it on the thread which started it.
+     * Use it with try-with-resources or call stop(items) once.
+     */
+    public static class Timer implements AutoCloseable {
+        private final PhaseMetrics.Phase phase;
+        private final PhaseEvent event;
+        private final long startNanos;
+        private final long startCpu;
+        private final long startAllocated;
+        private long items;
+        private boolean stopped;
+
+        private Timer(PhaseMetrics.Phase phase) {
+            this.phase = phase;
+            if (phase == null) {
+                this.event = null;
+                this.startNanos = 0;
+                this.startCpu = 0;
+                this.startAllocated = 0;
+                return;
+            }
+            this.event = new PhaseEvent();
+            event.begin();
+            this.startAllocated = currentThreadAllocatedBytes();
+            this.startCpu = currentThreadCpuTime();
+            this.startNanos = System.nanoTime();
+            phase.firstStart.accumulate(startNanos);
+        }
+
+        /** count items for the phase, added when the timer stops */
+        public void addItems(long items) {
+            this.items += items;
+        }
+
+        public void stop(long items) {
+            addItems(items);
+            close();
+        }
+
+        @Override
+        public void close() {
+            if (phase == null || stopped) return;
+            stopped = true;
+            long stopNanos = System.nanoTime();
+            long cpu = currentThreadCpuTime() - startCpu;
+            long allocated = currentThreadAllocatedBytes() - startAllocated;
+
+            phase.calls.increment();
+            phase.wallNanos.add(stopNanos - startNanos);
+            phase.cpuNanos.add(cpu);
+            phase.allocatedBytes.add(allocated);
+            phase.items.add(items);
+            phase.lastStop.accumulateAndGet(stopNanos, Math::max);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.tool = phase.tool();
+                event.phase = phase.name;
+                event.items = items;
+                event.cpuTime = cpu;
+                event.allocatedBytes = allocated;
+                event.commit();
+            }
+        }
+    }
+}
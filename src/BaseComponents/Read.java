@@ -1,7 +1,8 @@
 package BaseComponents;
 
-import java.util.LinkedList;
+import java.nio.charset.StandardCharsets;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class Read {
     // add all needed output information
@@ -21,60 +22,69 @@ public class Read {
 
     private String fw;
     private String rw;
-    private final LinkedList<Integer> mutationsfw;
-    private final LinkedList<Integer> mutationsrw;
+    // mutated positions, valid up to numMutationsfw/-rw; the buffers are reused when the Read is reused
+    private int[] mutationsfw;
+    private int[] mutationsrw;
+    private int numMutationsfw;
+    private int numMutationsrw;
+    private byte[] bases;  // reused buffer for the mutated sequence
 
-    private final Random random;
-    private static final char[] bases = {'A', 'T', 'C', 'G'};
+    private final RandomGenerator random;
+    private MutationEngine mutationEngine;
 
 
     public Read(int readLength){
+        this(readLength, new Random());
+    }
+
+    /**
+     * A Read can be reused for further reads of the same length: setFragmentStartRelative, setFw and setRw overwrite
+     * the previous one.
+     * @param random source of the mutations, e.g. the stream of the transcript for reproducible reads
+     */
+    public Read(int readLength, RandomGenerator random){
         this.readLength = readLength;
-        this.mutationsfw = new LinkedList<>();
-        this.mutationsrw = new LinkedList<>();
-        this.random = new Random();
+        this.mutationsfw = new int[readLength];
+        this.mutationsrw = new int[readLength];
+        this.bases = new byte[readLength];
+        this.random = random;
         this.fwStartRelative = -1;
     }
 
     /**
      * @param dna input sequence to mutate
-     * @param mutationRate at which rate to introduce a miss match
+     * @param mutationRate percent of bases with a miss match (may be fractional), see MutationEngine
      * @param x on which strand the mutations are introduced: 'f' := fw and 'r' := rw
      * @return the sequence, but with introduced miss matches
      */
     public String mutateDNA(String dna, double mutationRate, char x) {
-        StringBuilder mutatedDNA = new StringBuilder(dna.length());
-
-        for (int i = 0; i < dna.length(); i++) {
-            char base = dna.charAt(i);
-
-            // Determine if the base should mutate
-            if (random.nextInt(100) < mutationRate) {
-                if(x == 'f') mutationsfw.add(i);
-                else mutationsrw.add(i);
-                // Mutate the base
-                base = getRandomMutation(base, random);
-            }
-
-            mutatedDNA.append(base);
+        if (mutationEngine == null || mutationEngine.getMutationRate() != mutationRate) {
+            mutationEngine = new MutationEngine(mutationRate, random);
         }
-
-        return mutatedDNA.toString();
+        int length = dna.length();
+        if (bases.length < length) bases = new byte[length];
+        for (int i = 0; i < length; i++) bases[i] = (byte) dna.charAt(i);
+
+        int numMutations;
+        if (x == 'f') {
+            if (mutationsfw.length < length) mutationsfw = new int[length];
+            numMutations = numMutationsfw = mutationEngine.mutate(bases, length, mutationsfw);
+        } else {
+            if (mutationsrw.length < length) mutationsrw = new int[length];
+            numMutations = numMutationsrw = mutationEngine.mutate(bases, length, mutationsrw);
+        }
+        if (numMutations == 0) return dna;
+        return new String(bases, 0, length, StandardCharsets.ISO_8859_1);
     }
 
-    /**
-     * @param base original nucleotide
-     * @param random object
-     * @return new nucleotide after "mutation"
-     */
-    private static char getRandomMutation(char base, Random random) {
-        // Generate a random base that's different from the original
-        char newBase;
-        do {
-            newBase = bases[random.nextInt(bases.length)];
-        } while (newBase == base);
-
-        return newBase;
+    /** @return the positions joined by ", " (mapping info output) */
+    private static String joinPositions(int[] positions, int count) {
+        StringBuilder joined = new StringBuilder(count * 4);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) joined.append(", ");
+            joined.append(positions[i]);
+        }
+        return joined.toString();
     }
 
     @Override
@@ -110,12 +120,29 @@ public class Read {
         return fwStartRelative;
     }
 
-    public LinkedList<Integer> getMutationsfw() {
-        return mutationsfw;
+    public int getNumMutationsfw() {
+        return numMutationsfw;
+    }
+
+    public int getNumMutationsrw() {
+        return numMutationsrw;
+    }
+
+    /** @param i from 0 to getNumMutationsfw() - 1, ascending positions */
+    public int getMutationfw(int i) {
+        return mutationsfw[i];
+    }
+
+    public int getMutationrw(int i) {
+        return mutationsrw[i];
+    }
+
+    public String getMutationsfwString() {
+        return joinPositions(mutationsfw, numMutationsfw);
     }
 
-    public LinkedList<Integer> getMutationsrw() {
-        return mutationsrw;
+    public String getMutationsrwString() {
+        return joinPositions(mutationsrw, numMutationsrw);
     }
 
     public int getRwStartRelative() {
@@ -123,13 +150,13 @@ public class Read {
     }
 
     /** since all needed info is available, set indexes */
-    public void setFragmentStartRelative(int fragmentStartRelative, int fragmentLength, int transcriptLength,  String strandDirection) {
+    public void setFragmentStartRelative(int fragmentStartRelative, int fragmentLength, int transcriptLength, boolean strandPositive) {
         this.fwTrStartRelative = fragmentStartRelative;
         this.fwTrEndRelative = this.fwTrStartRelative + readLength;
         this.rwTrStartRelative = fragmentStartRelative + fragmentLength - readLength;
         this.rwTrEndRelative = fragmentStartRelative + fragmentLength;
 
-        if (strandDirection.equals("+")) {
+        if (strandPositive) {
             this.fwStartRelative = fwTrStartRelative;
             this.fwEndRelative = fwTrEndRelative;
             this.rwStartRelative = rwTrStartRelative;
@@ -0,0 +1,241 @@
+package BaseComponents;
+
+import java.util.Arrays;
+
+/**
+ * Indexed splice graph of one gene, built on its IntronTable.
+ * The nodes are the splice sites: donors (intron starts, i.e. the end of the CDS before the intron) and
+ * acceptors (intron ends, the start of the CDS after it). The edges are the distinct introns; each one refers to
+ * the rows of the intron table (one per transcript) which use it.
+ * 1. donor index: edges sorted by start and end, the edges of donor d are donorOffsets[d] ... donorOffsets[d+1] - 1
+ * 2. acceptor index: edges sorted by end and start, grouped per acceptor in the same way
+ * 3. exon index: all CDS of the gene sorted by start, with the running maximum of the ends,
+ *    so the CDS containing an interval are found by binary search
+ */
+public class SpliceGraph {
+    private final IntronTable introns;
+
+    // edges (distinct introns), sorted by start and end
+    private final int[] edgeStarts;
+    private final int[] edgeEnds;
+    private final int[] edgeRowOffsets;  // rows of edge e: edgeRows[edgeRowOffsets[e]] ... edgeRows[edgeRowOffsets[e+1] - 1]
+    private final int[] edgeRows;        // ascending, i.e. in the order of the intron table
+    private final int[] edgeFirstInTranscriptOrder;
+
+    private final int[] donorOffsets;
+    private final int[] acceptorEdges;
+    private final int[] acceptorOffsets;
+
+    // CDS of all transcripts sorted by start; exonTranscripts/exonOrdinals locate the CDS in IntronTable.getTranscriptAt
+    private final int[] exonStarts;
+    private final int[] exonEnds;
+    private final int[] exonTranscripts;
+    private final int[] exonOrdinals;
+    private final int[] exonMaxEnds;
+
+    public SpliceGraph(IntronTable introns) {
+        this.introns = introns;
+        int numRows = introns.size();
+
+        // rows are sorted by start => sort every group of equal starts by end (and row)
+        int[] rows = new int[numRows];
+        long[] keys = new long[numRows];
+        for (int first = 0; first < numRows; ) {
+            int last = first;
+            while (last < numRows && introns.getStart(last) == introns.getStart(first)) last++;
+            for (int row = first; row < last; row++) {
+                keys[row] = ((long) introns.getEnd(row) << 32) | row;
+            }
+            Arrays.sort(keys, first, last);
+            for (int row = first; row < last; row++) {
+                rows[row] = (int) keys[row];
+            }
+            first = last;
+        }
+
+        int numEdges = 0;
+        int numDonors = 0;
+        for (int i = 0; i < numRows; i++) {
+            if (i == 0 || introns.getStart(rows[i]) != introns.getStart(rows[i - 1])) {
+                numDonors++;
+                numEdges++;
+            } else if (introns.getEnd(rows[i]) != introns.getEnd(rows[i - 1])) {
+                numEdges++;
+            }
+        }
+
+        this.edgeStarts = new int[numEdges];
+        this.edgeEnds = new int[numEdges];
+        this.edgeRowOffsets = new int[numEdges + 1];
+        this.edgeRows = rows;
+        this.edgeFirstInTranscriptOrder = new int[numEdges];
+        this.donorOffsets = new int[numDonors + 1];
+
+        int edge = -1;
+        int donor = -1;
+        for (int i = 0; i < numRows; i++) {
+            int row = rows[i];
+            boolean newDonor = i == 0 || introns.getStart(row) != introns.getStart(rows[i - 1]);
+            if (newDonor || introns.getEnd(row) != introns.getEnd(rows[i - 1])) {
+                edge++;
+                edgeStarts[edge] = introns.getStart(row);
+                edgeEnds[edge] = introns.getEnd(row);
+                edgeRowOffsets[edge] = i;
+                edgeFirstInTranscriptOrder[edge] = Integer.MAX_VALUE;
+                if (newDonor) donorOffsets[++donor] = edge;
+            }
+            edgeFirstInTranscriptOrder[edge] = Math.min(edgeFirstInTranscriptOrder[edge], introns.getOrderInTranscript(row));
+        }
+        edgeRowOffsets[numEdges] = numRows;
+        donorOffsets[numDonors] = numEdges;
+
+        // acceptor index: edges are already ordered by start => the edge number breaks ties of equal ends
+        long[] byEnd = new long[numEdges];
+        for (int e = 0; e < numEdges; e++) {
+            byEnd[e] = ((long) edgeEnds[e] << 32) | e;
+        }
+        Arrays.sort(byEnd);
+        this.acceptorEdges = new int[numEdges];
+        int[] offsets = new int[numEdges + 1];
+        int numAcceptors = 0;
+        for (int i = 0; i < numEdges; i++) {
+            acceptorEdges[i] = (int) byEnd[i];
+            if (i == 0 || edgeEnds[acceptorEdges[i]] != edgeEnds[acceptorEdges[i - 1]]) offsets[numAcceptors++] = i;
+        }
+        offsets[numAcceptors] = numEdges;
+        this.acceptorOffsets = Arrays.copyOf(offsets, numAcceptors + 1);
+
+        // exon index
+        int numExons = 0;
+        for (int t = 0; t < introns.getNumTranscripts(); t++) {
+            numExons += introns.getTranscriptAt(t).getNumCDS();
+        }
+        long[] exonKeys = new long[numExons];
+        int[] transcriptOfExon = new int[numExons];
+        int[] ordinalOfExon = new int[numExons];
+        int x = 0;
+        for (int t = 0; t < introns.getNumTranscripts(); t++) {
+            Transcript transcript = introns.getTranscriptAt(t);
+            for (int c = 0; c < transcript.getNumCDS(); c++, x++) {
+                exonKeys[x] = ((long) transcript.getCDSStart(c) << 32) | x;
+                transcriptOfExon[x] = t;
+                ordinalOfExon[x] = c;
+            }
+        }
+        Arrays.sort(exonKeys);
+        this.exonStarts = new int[numExons];
+        this.exonEnds = new int[numExons];
+        this.exonTranscripts = new int[numExons];
+        this.exonOrdinals = new int[numExons];
+        this.exonMaxEnds = new int[numExons];
+        for (int i = 0; i < numExons; i++) {
+            int exon = (int) exonKeys[i];
+            Transcript transcript = introns.getTranscriptAt(transcriptOfExon[exon]);
+            exonStarts[i] = transcript.getCDSStart(ordinalOfExon[exon]);
+            exonEnds[i] = transcript.getCDSEnd(ordinalOfExon[exon]);
+            exonTranscripts[i] = transcriptOfExon[exon];
+            exonOrdinals[i] = ordinalOfExon[exon];
+            exonMaxEnds[i] = Math.max(i > 0 ? exonMaxEnds[i - 1] : Integer.MIN_VALUE, exonEnds[i]);
+        }
+    }
+
+    public IntronTable getIntrons() {
+        return introns;
+    }
+
+    public int getNumEdges() {
+        return edgeStarts.length;
+    }
+
+    public int getEdgeStart(int edge) {
+        return edgeStarts[edge];
+    }
+
+    public int getEdgeEnd(int edge) {
+        return edgeEnds[edge];
+    }
+
+    /** @return index of the first row of the edge in getEdgeRow */
+    public int getFirstRow(int edge) {
+        return edgeRowOffsets[edge];
+    }
+
+    /** @return index behind the last row of the edge in getEdgeRow */
+    public int getEndRow(int edge) {
+        return edgeRowOffsets[edge + 1];
+    }
+
+    /** @return row of the intron table */
+    public int getEdgeRow(int i) {
+        return edgeRows[i];
+    }
+
+    /** @return smallest transcript order index (IntronTable.getOrderInTranscript) of the rows of the edge */
+    public int getFirstInTranscriptOrder(int edge) {
+        return edgeFirstInTranscriptOrder[edge];
+    }
+
+    public int getNumDonors() {
+        return donorOffsets.length - 1;
+    }
+
+    /** @return first edge starting at the donor; the edges of a donor are consecutive and sorted by end */
+    public int getFirstEdgeOfDonor(int donor) {
+        return donorOffsets[donor];
+    }
+
+    public int getEndEdgeOfDonor(int donor) {
+        return donorOffsets[donor + 1];
+    }
+
+    public int getNumAcceptors() {
+        return acceptorOffsets.length - 1;
+    }
+
+    /** @return index of the first edge of the acceptor in getAcceptorEdge; sorted by start within the acceptor */
+    public int getFirstEdgeOfAcceptor(int acceptor) {
+        return acceptorOffsets[acceptor];
+    }
+
+    public int getEndEdgeOfAcceptor(int acceptor) {
+        return acceptorOffsets[acceptor + 1];
+    }
+
+    public int getAcceptorEdge(int i) {
+        return acceptorEdges[i];
+    }
+
+    /** @return indexes (for getExonStart/getExonEnd/getExonProtein) of the CDS with start <= the start and end >= the end, sorted by start */
+    public int[] exonsContaining(int start, int end) {
+        // first CDS whose running max end reaches the end; no CDS before it can contain the interval
+        int low = 0;
+        int high = exonStarts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (exonMaxEnds[mid] < end) low = mid + 1;
+            else high = mid;
+        }
+
+        int[] result = new int[0];
+        for (int i = low; i < exonStarts.length && exonStarts[i] <= start; i++) {
+            if (exonEnds[i] >= end) {
+                result = Arrays.copyOf(result, result.length + 1);
+                result[result.length - 1] = i;
+            }
+        }
+        return result;
+    }
+
+    public int getExonStart(int i) {
+        return exonStarts[i];
+    }
+
+    public int getExonEnd(int i) {
+        return exonEnds[i];
+    }
+
+    /** @return protein id of the CDS */
+    public String getExonProtein(int i) {
+        return introns.getTranscriptAt(exonTranscripts[i]).getProteinID(exonOrdinals[i]);
+    }
+}
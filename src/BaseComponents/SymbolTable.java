@@ -0,0 +1,65 @@
+package BaseComponents;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps identifiers (chromosomes, gene/transcript/protein ids) to dense ints at parse time.
+ * The model classes store and compare these ints; the String is only resolved for the output.
+ * Every distinct identifier is stored once, however many objects refer to it.
+ * Thread-safe, since GTF chunks are parsed in parallel.
+ */
+public class SymbolTable {
+    public static final SymbolTable CHROMOSOMES = new SymbolTable();
+    public static final SymbolTable GENE_IDS = new SymbolTable();
+    public static final SymbolTable TRANSCRIPT_IDS = new SymbolTable();
+    public static final SymbolTable PROTEIN_IDS = new SymbolTable();
+
+    public static final int NONE = -1;  // symbol of null
+
+    private final ConcurrentHashMap<String, Integer> symbols;
+    private volatile String[] names;  // symbol -> identifier
+    private int size;
+
+    public SymbolTable() {
+        this.symbols = new ConcurrentHashMap<>();
+        this.names = new String[1024];
+    }
+
+    /** @return the symbol of the identifier, a new one if it was not seen before */
+    public int intern(String name) {
+        if (name == null) return NONE;
+        Integer symbol = symbols.get(name);
+        if (symbol != null) return symbol;
+        return symbols.computeIfAbsent(name, this::add);
+    }
+
+    /** @return the symbol of the identifier or NONE, without adding it */
+    public int lookup(String name) {
+        if (name == null) return NONE;
+        return symbols.getOrDefault(name, NONE);
+    }
+
+    private synchronized int add(String name) {
+        String[] current = names;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = name;
+        names = current;  // publishes the new entry
+        return size++;
+    }
+
+    public String resolve(int symbol) {
+        return symbol == NONE ? null : names[symbol];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /** strand column as a primitive: '+', '-' or '.' if unknown */
+    public static char strand(String strand) {
+        return strand == null || strand.isEmpty() ? '.' : strand.charAt(0);
+    }
+}
@@ -0,0 +1,38 @@
+package BaseComponents;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the k largest elements seen so far (according to the comparator) in a min-heap of size k,
+ * so that e.g. the top 10 genes are found without sorting all of them.
+ */
+public class TopK<T> {
+    private final int k;
+    private final Comparator<? super T> comparator;
+    private final PriorityQueue<T> heap;  // smallest of the top k on top
+
+    public TopK(int k, Comparator<? super T> comparator) {
+        if (k <= 0) throw new IllegalArgumentException("k has to be positive");
+        this.k = k;
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<>(k + 1, comparator);
+    }
+
+    public void offer(T element) {
+        if (heap.size() < k) {
+            heap.add(element);
+        } else if (comparator.compare(element, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    /** @return the top k elements, largest first */
+    public ArrayList<T> getSorted() {
+        ArrayList<T> sorted = new ArrayList<>(heap);
+        sorted.sort(comparator.reversed());
+        return sorted;
+    }
+}
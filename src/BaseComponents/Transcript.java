@@ -1,50 +1,106 @@
 package BaseComponents;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.TreeSet;
-
-public class Transcript {
-    private Gene originGene;
-    private String ID;
-    private String name;
-    private TreeSet<CDS> allCDS;
-    private ArrayList<Intron> allIntrons;
-    private ArrayList<Integer> intronStartingPositions;
-    private final TreeSet<Exon> exons;
-    private long startGenomic;
-    private long startRelative;
-    private long endGenomic;
-    private long endRelative;
-    private long chromosomeStart;
-
-    public Transcript() {
-        this.allCDS = new TreeSet<>(Comparator.comparingLong(CDS::getStartGenomic));
-        this.allIntrons = new ArrayList<>();
-        this.exons = new TreeSet<>(Comparator.comparingLong(Exon::getStartGenomic));
-        this.startRelative = Integer.MAX_VALUE;
-        this.endRelative = Integer.MIN_VALUE;
-    }
-
-    public Transcript(String id, String name){
-        this();
-        this.ID = id;
-        this.name = name;
-    }
-
-    public Transcript(String ID){
-        this.ID = ID;
-        this.exons = new TreeSet<>(Comparator.comparingLong(Exon::getStartGenomic).thenComparing(Exon::getEndGenomic));
+import java.util.Arrays;
+
+/**
+ * Immutable, compact transcript: CDS and exons as sorted primitive arrays instead of TreeSets of objects.
+ * Built once per transcript with Transcript.Builder while the GTF (or a snapshot) is read, then frozen.
+ * Introns are derived from the CDS (as in IntronTable: intron i is cdsEnd(i):cdsStart(i + 1)), their starts are kept
+ * as an array for binary search. Exons get their start within the spliced transcript (getExonOffset), so the exon
+ * of a transcript position is found by binary search as well.
+ * Coordinates are stored as given to the builder: ExonSkipping uses the GTF positions of the CDS,
+ * ReadSimulator 1-based, end-exclusive exons.
+ */
+public final class Transcript {
+    private static final int[] EMPTY = new int[0];
+
+    private final int ID;  // SymbolTable.TRANSCRIPT_IDS
+    private final String name;
+    private final int[] cdsStarts;  // sorted
+    private final int[] cdsEnds;
+    private final int[] cdsProteins;  // SymbolTable.PROTEIN_IDS
+    private final int[] intronStarts;  // = cdsEnds without the last CDS
+    private final int[] exonStarts;  // sorted
+    private final int[] exonEnds;
+    private final int[] exonOffsets;  // exonOffsets[i] = sum of the lengths of the exons before i, [numExons] = length
+
+    private Transcript(Builder builder) {
+        this.ID = builder.ID;
+        this.name = builder.name;
+
+        int[] cdsOrder = sortedUniqueStarts(builder.cdsStarts, builder.numCDS);
+        this.cdsStarts = select(builder.cdsStarts, cdsOrder);
+        this.cdsEnds = select(builder.cdsEnds, cdsOrder);
+        this.cdsProteins = select(builder.cdsProteins, cdsOrder);
+        this.intronStarts = cdsEnds.length > 1 ? Arrays.copyOf(cdsEnds, cdsEnds.length - 1) : EMPTY;
+
+        int[] exonOrder = sortedUniqueStarts(builder.exonStarts, builder.numExons);
+        this.exonStarts = select(builder.exonStarts, exonOrder);
+        this.exonEnds = select(builder.exonEnds, exonOrder);
+        this.exonOffsets = new int[exonStarts.length + 1];
+        for (int i = 0; i < exonStarts.length; i++) {
+            exonOffsets[i + 1] = exonOffsets[i] + exonEnds[i] - exonStarts[i];
+        }
+    }
+
+    /**
+     * @return indexes of the entries sorted by start; of entries with the same start only the first added is kept
+     *         (as a TreeSet ordered by start would do)
+     */
+    private static int[] sortedUniqueStarts(int[] starts, int size) {
+        // start in the upper, insertion order in the lower 32 bits => stable sort by start
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) starts[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[size];
+        int numUnique = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && (int) (keys[i] >> 32) == (int) (keys[i - 1] >> 32)) continue;
+            order[numUnique++] = (int) keys[i];
+        }
+        return Arrays.copyOf(order, numUnique);
+    }
+
+    private static int[] select(int[] values, int[] order) {
+        if (order.length == 0) return EMPTY;
+        int[] selected = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            selected[i] = values[order[i]];
+        }
+        return selected;
     }
 
     @Override
     public String toString(){
-        return "Transcript " + this.getID() + ", " + this.getName() + " with " + this.allCDS.size() + " many CDS.";
+        return "Transcript " + this.getID() + ", " + this.getName() + " with " + this.cdsStarts.length + " many CDS.";
+    }
+
+    /**
+     * Introns of a transcript do not overlap, so their starts are sorted
+     * @return index of the intron starting at the position, -1 if there is none (binary search)
+     */
+    public int findIntronStartingAt(int start) {
+        int index = Arrays.binarySearch(intronStarts, start);
+        return index >= 0 ? index : -1;
+    }
+
+    /** @return index of the exon containing the position of the spliced transcript (0-based), -1 if outside */
+    public int findExonAt(int transcriptPosition) {
+        if (transcriptPosition < 0 || transcriptPosition >= getLength()) return -1;
+        int index = Arrays.binarySearch(exonOffsets, transcriptPosition);
+        return index >= 0 ? index : -index - 2;
     }
 
 
     // Getter and Setter
     public String getID() {
+        return SymbolTable.TRANSCRIPT_IDS.resolve(ID);
+    }
+
+    public int getIDSymbol() {
         return ID;
     }
 
@@ -52,69 +108,130 @@ public class Transcript {
         return name;
     }
 
-    public void addCDS(CDS toAdd){
-        this.allCDS.add(toAdd);
+    public int getNumCDS() {
+        return cdsStarts.length;
+    }
+
+    public int getCDSStart(int i) {
+        return cdsStarts[i];
     }
 
-    public TreeSet<CDS> getAllCDS() {
-        return allCDS;
+    public int getCDSEnd(int i) {
+        return cdsEnds[i];
     }
 
-    public ArrayList<Intron> getAllIntrons() {
-        return allIntrons;
+    /** @return end - start, as CDS.getLength() */
+    public int getCDSLength(int i) {
+        return cdsEnds[i] - cdsStarts[i];
     }
 
-    public ArrayList<Integer> getIntronStartingPositions() {
-        return intronStartingPositions;
+    public String getProteinID(int i) {
+        return SymbolTable.PROTEIN_IDS.resolve(cdsProteins[i]);
     }
 
-    public void setIntronStartingPositions(ArrayList<Integer> intronStartingPositions) {
-        this.intronStartingPositions = intronStartingPositions;
+    public int getNumIntrons() {
+        return intronStarts.length;
     }
 
-    public TreeSet<Exon> getExons() {
-        return exons;
+    /** @return start of intron i, the end of the CDS before it */
+    public int getIntronStart(int i) {
+        return intronStarts[i];
     }
 
-    public long getStartGenomic() {
-        return startGenomic;
+    /** @return end of intron i, the start of the CDS after it */
+    public int getIntronEnd(int i) {
+        return cdsStarts[i + 1];
     }
 
-    public long getEndGenomic() {
-        return endGenomic;
+    public int getNumExons() {
+        return exonStarts.length;
     }
 
-    public void setIndexesGenomic(){
-        this.startGenomic = exons.getFirst().getStartGenomic();
-        this.endGenomic = exons.getLast().getEndGenomic();
+    public int getExonStart(int i) {
+        return exonStarts[i];
     }
 
-    public TreeSet<Interval> getAlignedExons(boolean strandPositive, int readStart, int readEnd){
-        ArrayList<Exon> orderedExons = new ArrayList<>(exons);
-        TreeSet<Interval> subIntervals = new TreeSet<>(Comparator.comparingInt(Interval::getStart).thenComparingInt(Interval::getStop));
+    public int getExonEnd(int i) {
+        return exonEnds[i];
+    }
+
+    /** @return start of exon i within the spliced transcript (0-based) */
+    public int getExonOffset(int i) {
+        return exonOffsets[i];
+    }
+
+    /** @return sum of the exon lengths (end - start) */
+    public int getLength() {
+        return exonOffsets[exonStarts.length];
+    }
 
-        Exon exon;
-        for(int i = 0; i < orderedExons.size(); i++){
-            if(strandPositive) {
-                exon = orderedExons.get(i);
-            } else exon = orderedExons.get(orderedExons.size() - i - 1);
 
-            if (readStart >= exon.getStartGenomic() && readStart <= exon.getEndGenomic() && readEnd >= exon.getStartGenomic() && readEnd <= exon.getEndGenomic()) {
-                subIntervals.add(new Interval(readStart, readEnd));
-                break;
+    /**
+     * Collects the CDS and exons of a transcript in any order; build() sorts them by start and freezes the transcript.
+     * Not thread-safe.
+     */
+    public static class Builder {
+        private final int ID;
+        private final String name;
+        private int[] cdsStarts = EMPTY;
+        private int[] cdsEnds = EMPTY;
+        private int[] cdsProteins = EMPTY;
+        private int numCDS;
+        private int[] exonStarts = EMPTY;
+        private int[] exonEnds = EMPTY;
+        private int numExons;
+
+        public Builder(String id, String name) {
+            this.ID = SymbolTable.TRANSCRIPT_IDS.intern(id);
+            this.name = name;
+        }
+
+        /** @param proteinID protein_id (or ccds_id) of the CDS line */
+        public Builder addCDS(int start, int end, String proteinID) {
+            addCDSSymbol(start, end, SymbolTable.PROTEIN_IDS.intern(proteinID));
+            return this;
+        }
+
+        private void addCDSSymbol(int start, int end, int protein) {
+            if (numCDS == cdsStarts.length) {
+                int capacity = Math.max(4, 2 * numCDS);
+                cdsStarts = Arrays.copyOf(cdsStarts, capacity);
+                cdsEnds = Arrays.copyOf(cdsEnds, capacity);
+                cdsProteins = Arrays.copyOf(cdsProteins, capacity);
             }
-            else if (readStart >= exon.getStartGenomic() && readStart <= exon.getEndGenomic()) {
-                subIntervals.add(new Interval(readStart, exon.getEndGenomic()));
+            cdsStarts[numCDS] = start;
+            cdsEnds[numCDS] = end;
+            cdsProteins[numCDS++] = protein;
+        }
+
+        public Builder addExon(int start, int end) {
+            if (numExons == exonStarts.length) {
+                int capacity = Math.max(4, 2 * numExons);
+                exonStarts = Arrays.copyOf(exonStarts, capacity);
+                exonEnds = Arrays.copyOf(exonEnds, capacity);
             }
-            else if (readStart <= exon.getStartGenomic() && readEnd >= exon.getEndGenomic()) {
-                subIntervals.add(new Interval(exon.getStartGenomic(), exon.getEndGenomic()));
+            exonStarts[numExons] = start;
+            exonEnds[numExons++] = end;
+            return this;
+        }
+
+        /** append the CDS and exons of the other builder, e.g. of a later part of the file; they count as added later */
+        public Builder addAll(Builder other) {
+            for (int i = 0; i < other.numCDS; i++) {
+                addCDSSymbol(other.cdsStarts[i], other.cdsEnds[i], other.cdsProteins[i]);
             }
-            else if (readEnd >= exon.getStartGenomic() && readEnd <= exon.getEndGenomic()) {
-                subIntervals.add(new Interval(exon.getStartGenomic(), readEnd));
-                break;
+            for (int i = 0; i < other.numExons; i++) {
+                addExon(other.exonStarts[i], other.exonEnds[i]);
             }
+            return this;
+        }
+
+        public String getID() {
+            return SymbolTable.TRANSCRIPT_IDS.resolve(ID);
         }
 
-        return subIntervals;
+        public Transcript build() {
+            return new Transcript(this);
+        }
     }
 }
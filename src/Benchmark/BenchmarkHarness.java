@@ -0,0 +1,135 @@
+package Benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Minimal throughput harness in the spirit of JMH, for the benchmarks of this project:
+ * a benchmark is invoked again and again for at least the iteration time, first in warm-up iterations (not counted,
+ * JIT compilation) and then in measured iterations. Each invocation returns the number of items it processed
+ * (lines, bases, reads, ...), so the score is items per second; the error is the 99.9% confidence interval
+ * over the measured iterations (normal approximation), the allocation is per item on the benchmark thread.
+ * All benchmarks run in the same JVM, one after another; setup work belongs outside of the invocation.
+ */
+public class BenchmarkHarness {
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final double Z_999 = 3.29;
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+    private final ArrayList<Result> results;
+
+    /** keeps the JIT from removing the work of a benchmark; add the result of every invocation */
+    public static long blackhole;
+
+    /** one invocation of a benchmark */
+    public interface Invocation {
+        /** @return number of items processed */
+        long run() throws Exception;
+    }
+
+    public BenchmarkHarness(int warmupIterations, int iterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.results = new ArrayList<>();
+    }
+
+    public static String header() {
+        return String.format(Locale.ROOT, "%-28s %5s %16s %14s %8s %14s %12s", "Benchmark", "Cnt", "Score", "Error", "Units", "ns/item", "B/item");
+    }
+
+    /** warm up, measure and print the benchmark; the unit names the items, e.g. "lines" => lines/s */
+    public Result run(String name, String unit, Invocation invocation) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(invocation);
+        }
+
+        double[] scores = new double[iterations];
+        long totalItems = 0;
+        long totalNanos = 0;
+        long totalAllocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            long[] measured = iteration(invocation);
+            totalItems += measured[0];
+            totalNanos += measured[1];
+            totalAllocated += measured[2];
+            scores[i] = measured[0] * 1e9 / Math.max(1, measured[1]);
+        }
+
+        Result result = new Result(name, unit, scores, (double) totalNanos / Math.max(1, totalItems),
+                (double) totalAllocated / Math.max(1, totalItems));
+        results.add(result);
+        System.out.println(result);
+        return result;
+    }
+
+    /** @return items, nanoseconds and allocated bytes of the invocations within one iteration */
+    private long[] iteration(Invocation invocation) throws Exception {
+        long items = 0;
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            items += invocation.run();
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[]{items, elapsed, THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore};
+    }
+
+
+    // Getter and Setter
+    public ArrayList<Result> getResults() {
+        return results;
+    }
+
+
+    public static class Result {
+        private final String name;
+        private final String unit;
+        private final double[] scores;
+        private final double nanosPerItem;
+        private final double bytesPerItem;
+
+        private Result(String name, String unit, double[] scores, double nanosPerItem, double bytesPerItem) {
+            this.name = name;
+            this.unit = unit;
+            this.scores = scores;
+            this.nanosPerItem = nanosPerItem;
+            this.bytesPerItem = bytesPerItem;
+        }
+
+        public double getScore() {
+            double sum = 0;
+            for (double score : scores) sum += score;
+            return sum / scores.length;
+        }
+
+        /** half width of the 99.9% confidence interval of the score */
+        public double getError() {
+            if (scores.length < 2) return Double.NaN;
+            double mean = getScore();
+            double squares = 0;
+            for (double score : scores) squares += (score - mean) * (score - mean);
+            return Z_999 * Math.sqrt(squares / (scores.length - 1)) / Math.sqrt(scores.length);
+        }
+
+        /** tab separated: benchmark, iterations, score, error, unit, ns/item, bytes/item */
+        public String toTSV() {
+            return String.format(Locale.ROOT, "%s\t%d\t%.3f\t%.3f\t%s/s\t%.3f\t%.3f", name, scores.length, getScore(), getError(),
+                    unit, nanosPerItem, bytesPerItem);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-28s %5d %16.1f +- %11.1f %8s %14.2f %12.2f", name, scores.length, getScore(), getError(),
+                    unit + "/s", nanosPerItem, bytesPerItem);
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local client for ESSEServer: sends the queries of a file (one query string per line, e.g. gene=ENSG00000000009
+ * or region=1:100000-200000) again and again with a number of concurrent connections.
+ * Prints the round-trip latency (client side) and the throughput, then the /metrics of the server.
+ *
+ * usage: ESSEServerClient <queries file> [requests, default 10000] [concurrency, default 4] [url, default http://127.0.0.1:8080]
+ */
+public class ESSEServerClient {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: ESSEServerClient <queries file> [requests] [concurrency] [url]");
+            System.exit(1);
+        }
+        List<String> queries = Files.readAllLines(Path.of(args[0])).stream().filter(line -> !line.isBlank()).toList();
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        String url = args.length > 3 ? args[3] : "http://127.0.0.1:8080";
+        if (queries.isEmpty()) {
+            System.err.println("No queries in " + args[0]);
+            System.exit(1);
+        }
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        // warm up the connections and both JITs
+        for (int i = 0; i < Math.min(requests, 1000); i++) {
+            send(client, url + "/events?" + queries.get(i % queries.size()));
+        }
+
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+
+        ArrayList<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < concurrency; w++) {
+            workers.add(executor.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    long sent = System.nanoTime();
+                    try {
+                        if (send(client, url + "/events?" + queries.get(i % queries.size())) != 200) failed.incrementAndGet();
+                    } catch (IOException | InterruptedException e) {
+                        failed.incrementAndGet();
+                    }
+                    latencies[i] = System.nanoTime() - sent;
+                }
+            }));
+        }
+        for (Future<?> worker : workers) worker.get();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("requests\t%d%nfailed\t%d%nrequests_per_s\t%.0f%n", requests, failed.get(), requests / seconds);
+        System.out.printf("latency_us\tp50 %.1f\tp90 %.1f\tp99 %.1f\tmax %.1f%n",
+                latencies[requests / 2] / 1e3, latencies[(int) (requests * 0.9)] / 1e3,
+                latencies[(int) (requests * 0.99)] / 1e3, latencies[requests - 1] / 1e3);
+
+        HttpResponse<String> metrics = client.send(HttpRequest.newBuilder(URI.create(url + "/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        System.out.println("server\t" + metrics.body());
+    }
+
+    private static int send(HttpClient client, String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri)).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,100 @@
+package Benchmark;
+
+import BaseComponents.GTFAttributes;
+import BaseComponents.GTFRecord;
+import BaseComponents.MappedGTFReader;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Micro-benchmark for reading the attribute column of a GTF file:
+ * 1. split: the old way - split the line and column 9, strip quotes and ';' from every token
+ * 2. lazy: memory-mapped GTFRecord and GTFAttributes, only gene_id and transcript_id are decoded
+ * Both read the whole file and extract gene_id and transcript_id of every exon/CDS line.
+ * Prints the allocated bytes (ThreadMXBean of the current thread) and the time per line.
+ *
+ * usage: GTFAttributeBenchmark <gtf> [rounds, default 5]
+ */
+public class GTFAttributeBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long numLines;
+    private static long blackhole;  // keeps the JIT from removing the work
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: GTFAttributeBenchmark <gtf> [rounds]");
+            System.exit(1);
+        }
+        String gtf = args[0];
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        // warm up both variants, then measure
+        for (int i = 0; i < 2; i++) {
+            split(gtf);
+            lazy(gtf);
+        }
+
+        System.out.println("variant\tround\tlines\tbytes_per_line\tns_per_line");
+        for (int round = 1; round <= rounds; round++) {
+            measure("split", round, () -> split(gtf));
+            measure("lazy", round, () -> lazy(gtf));
+        }
+        System.out.println("# " + blackhole);
+    }
+
+    private interface Variant {
+        void run() throws IOException;
+    }
+
+    private static void measure(String name, int round, Variant variant) throws IOException {
+        long thread = Thread.currentThread().threadId();
+        numLines = 0;
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+
+        variant.run();
+
+        long time = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+        System.out.printf("%s\t%d\t%d\t%.1f\t%.1f%n", name, round, numLines,
+                (double) allocated / Math.max(1, numLines), (double) time / Math.max(1, numLines));
+    }
+
+    /** attribute handling of the old BufferedReader parsers */
+    private static void split(String gtf) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(gtf))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("#")) continue;
+                String[] values = line.split("\t");
+                if (values.length < 9 || !(values[2].equals("exon") || values[2].equals("CDS"))) continue;
+                numLines++;
+
+                String geneID = null;
+                String transcriptID = null;
+                for (String attr : values[8].split("; ")) {
+                    String value = attr.substring(attr.indexOf(" ") + 1).replace("\"", "").replace(";", "");
+                    if (attr.startsWith("gene_id")) geneID = value;
+                    else if (attr.startsWith("transcript_id")) transcriptID = value;
+                }
+                blackhole += (geneID == null ? 0 : geneID.length()) + (transcriptID == null ? 0 : transcriptID.length());
+            }
+        }
+    }
+
+    private static void lazy(String gtf) throws IOException {
+        MappedGTFReader.read(gtf, (GTFRecord record) -> {
+            if (!record.columnEquals(GTFRecord.FEATURE, "exon") && !record.columnEquals(GTFRecord.FEATURE, "CDS")) return;
+            numLines++;
+
+            GTFAttributes attributes = record.getAttributes();
+            String geneID = attributes.get("gene_id");
+            String transcriptID = attributes.get("transcript_id");
+            blackhole += (geneID == null ? 0 : geneID.length()) + (transcriptID == null ? 0 : transcriptID.length());
+        });
+    }
+}
@@ -0,0 +1,273 @@
+package Benchmark;
+
+import BaseComponents.Read;
+import BaseComponents.Utils;
+import ExonSkipping.ExonSkipping;
+import ReadSimulator.FASTAIndex;
+import ReadSimulator.PackedReference;
+import ReadSimulator.PreTranscript;
+import ReadSimulator.PreTranscriptLoader;
+import ReadSimulator.ReadSimulator;
+import ReadSimulator.ReferenceReader;
+import htsjdk.samtools.reference.FastaSequenceIndex;
+import htsjdk.samtools.reference.IndexedFastaSequenceFile;
+import org.apache.commons.cli.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput of the hot paths of both tools on synthetic data (SyntheticGenome, regenerated on every run from the seed),
+ * so the numbers do not depend on the large human files:
+ *   gtf.parse                       ExonSkipping: parse the GTF into genes/transcripts/CDS (no snapshot), lines/s
+ *   es.defineAndOrganizeIntrons     ExonSkipping: intron organization and ES-SE detection of all genes, genes/s
+ *   read.mutateDNA                  Read.mutateDNA of read sequences (one reused Read, as per transcript in the simulator), bases/s
+ *   utils.getReverseComplement      Utils.getReverseComplement of read sequences, bases/s
+ *   reference.fasta                 ReferenceReader on the FASTA (slice cache) for transcript sized regions, bases/s
+ *   reference.packed                ReferenceReader on the memory-mapped 2-bit reference (PackedReference), bases/s
+ *   readSimulator.regionVectors     genomic region vector of a read, reads/s
+ *   readSimulator.endToEnd          ReadSimulator from the readcounts to the FASTQ files (with the GTF snapshot), reads/s
+ * The read sequences are taken from the synthetic FASTA at fixed random positions.
+ *
+ * usage: GenomeBenchmarks [-data dir] [-genes 2000] [-isoforms 4] [-genome 20000000] [-chromosomes 3] [-seed 42]
+ *                         [-warmup 3] [-iterations 5] [-time 1000] [-include regex] [-o results.tsv]
+ */
+public class GenomeBenchmarks {
+    private static final int READ_LENGTH = 75;
+    private static final int SAMPLES = 4096;
+    private static final int REGION_LENGTH = 20000;
+    private static final double MUTATION_RATE = 1.0;
+    private static final double FRAGMENT_LENGTH = 200;
+    private static final double FRAGMENT_SD = 80;
+
+    private final String dataDir;
+    private final SyntheticGenome synthetic;
+    private final BenchmarkHarness harness;
+    private final Pattern include;
+
+    public GenomeBenchmarks(String dataDir, SyntheticGenome synthetic, BenchmarkHarness harness, Pattern include) {
+        this.dataDir = dataDir;
+        this.synthetic = synthetic;
+        this.harness = harness;
+        this.include = include;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption("data", true, "Directory for the synthetic inputs (default: <tmp>/genome-benchmarks)");
+        options.addOption("genes", true, "Number of genes (default 2000)");
+        options.addOption("isoforms", true, "Max transcripts per gene (default 4)");
+        options.addOption("genome", true, "Genome size in bases (default 20000000)");
+        options.addOption("chromosomes", true, "Number of chromosomes (default 3)");
+        options.addOption("seed", true, "Random seed of the synthetic data (default 42)");
+        options.addOption("warmup", true, "Warm-up iterations per benchmark (default 3)");
+        options.addOption("iterations", true, "Measured iterations per benchmark (default 5)");
+        options.addOption("time", true, "Min time per iteration in ms (default 1000)");
+        options.addOption("include", true, "Only benchmarks whose name contains a match of the regex");
+        options.addOption("o", true, "Write the results as a tab separated table");
+        CommandLineParser parser = new BasicParser();
+
+        GenomeBenchmarks benchmarks;
+        String resultsPath;
+        try {
+            CommandLine cmd = parser.parse(options, args);
+            String dataDir = cmd.getOptionValue("data", System.getProperty("java.io.tmpdir") + File.separator + "genome-benchmarks");
+            SyntheticGenome synthetic = new SyntheticGenome(Integer.parseInt(cmd.getOptionValue("genes", "2000")),
+                    Integer.parseInt(cmd.getOptionValue("isoforms", "4")),
+                    Long.parseLong(cmd.getOptionValue("genome", "20000000")),
+                    Integer.parseInt(cmd.getOptionValue("chromosomes", "3")),
+                    20,
+                    Long.parseLong(cmd.getOptionValue("seed", "42")));
+            BenchmarkHarness harness = new BenchmarkHarness(Integer.parseInt(cmd.getOptionValue("warmup", "3")),
+                    Integer.parseInt(cmd.getOptionValue("iterations", "5")),
+                    Long.parseLong(cmd.getOptionValue("time", "1000")));
+            Pattern include = Pattern.compile(cmd.getOptionValue("include", ""));
+            benchmarks = new GenomeBenchmarks(dataDir, synthetic, harness, include);
+            resultsPath = cmd.getOptionValue("o");
+        } catch (ParseException | IllegalArgumentException e) {
+            System.err.println("Error parsing command line arguments: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        benchmarks.run();
+
+        if (resultsPath != null) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(resultsPath))) {
+                writer.println("benchmark\titerations\tscore\terror\tunit\tns_per_item\tbytes_per_item");
+                for (BenchmarkHarness.Result result : benchmarks.harness.getResults()) {
+                    writer.println(result.toTSV());
+                }
+            }
+        }
+    }
+
+    public void run() throws Exception {
+        synthetic.write(dataDir);
+        String gtf = dataDir + File.separator + SyntheticGenome.GTF;
+        String fasta = dataDir + File.separator + SyntheticGenome.FASTA;
+        String fastaIndex = dataDir + File.separator + SyntheticGenome.FASTA_INDEX;
+        String readcounts = dataDir + File.separator + SyntheticGenome.READCOUNTS;
+        System.out.println("# " + synthetic.getGtfLines() + " GTF lines, " + synthetic.getTranscripts() + " transcripts, "
+                + synthetic.getFastaLength() + " bases in " + dataDir + "; java " + System.getProperty("java.version"));
+        System.out.println(BenchmarkHarness.header());
+
+        if (selected("gtf.parse")) {
+            harness.run("gtf.parse", "lines", () -> {
+                ExonSkipping exonSkipping = new ExonSkipping(gtf, 1, false, null);
+                BenchmarkHarness.blackhole += exonSkipping.getGenome().getAllGenes().size();
+                return synthetic.getGtfLines();
+            });
+        }
+
+        if (selected("es.defineAndOrganizeIntrons")) {
+            ExonSkipping exonSkipping = new ExonSkipping(gtf, 1, false, null);
+            int genes = exonSkipping.getGenome().getAllGenes().size();
+            // the detection of defineAndOrganizeIntrons, without collecting the events in the genome on every invocation
+            harness.run("es.defineAndOrganizeIntrons", "genes", () -> {
+                exonSkipping.forEachExonSpliceEvent(1, event -> BenchmarkHarness.blackhole++);
+                return genes;
+            });
+        }
+
+        String[] sequences = readSequences(fasta, fastaIndex);
+        if (selected("read.mutateDNA")) {
+            Read read = new Read(READ_LENGTH);
+            harness.run("read.mutateDNA", "bases", () -> {
+                for (String sequence : sequences) {
+                    BenchmarkHarness.blackhole += read.mutateDNA(sequence, MUTATION_RATE, 'f').length();
+                }
+                return (long) SAMPLES * READ_LENGTH;
+            });
+        }
+
+        if (selected("utils.getReverseComplement")) {
+            harness.run("utils.getReverseComplement", "bases", () -> {
+                for (String sequence : sequences) {
+                    BenchmarkHarness.blackhole += Utils.getReverseComplement(new StringBuilder(sequence)).charAt(0);
+                }
+                return (long) SAMPLES * READ_LENGTH;
+            });
+        }
+
+        if (selected("reference.fasta")) {
+            benchmarkReference("reference.fasta", fasta, fastaIndex);
+        }
+
+        if (selected("reference.packed")) {
+            String packed = fasta + PackedReference.EXTENSION;
+            PackedReference.convert(fasta, new FASTAIndex(fastaIndex), packed);
+            benchmarkReference("reference.packed", packed, fastaIndex);
+        }
+
+        HashMap<String, Integer> transcript2reads = readCounts(readcounts);
+        File outputDir = new File(dataDir, "simulation");
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) throw new IOException("Cannot create " + outputDir);
+
+        if (selected("readSimulator.regionVectors")) {
+            ReadSimulator simulator = newReadSimulator(fasta, fastaIndex, gtf, readcounts, outputDir);
+            ArrayList<PreTranscript> preTranscripts = new ArrayList<>();
+            for (PreTranscript preTranscript : PreTranscriptLoader.load(gtf, transcript2reads.keySet(),
+                    new FASTAIndex(fastaIndex).getChromosomes(), false).values()) {
+                if (!preTranscript.isTooShort(READ_LENGTH)) preTranscripts.add(preTranscript);
+            }
+            Random random = new Random(1);
+            PreTranscript[] samples = new PreTranscript[SAMPLES];
+            int[] starts = new int[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                samples[i] = preTranscripts.get(random.nextInt(preTranscripts.size()));
+                starts[i] = random.nextInt((int) samples[i].getTranscriptLength() - READ_LENGTH + 1);
+            }
+
+            harness.run("readSimulator.regionVectors", "reads", () -> {
+                for (int i = 0; i < SAMPLES; i++) {
+                    BenchmarkHarness.blackhole += simulator.regionVectors(starts[i], starts[i] + READ_LENGTH, samples[i]).size();
+                }
+                return SAMPLES;
+            });
+        }
+
+        if (selected("readSimulator.endToEnd")) {
+            long reads = 0;
+            for (int count : transcript2reads.values()) reads += count;  // upper bound, transcripts < read length are skipped
+            long numReads = reads;
+            harness.run("readSimulator.endToEnd", "reads", () -> {
+                for (File output : outputDir.listFiles()) {
+                    if (!output.delete()) throw new IOException("Cannot delete " + output);
+                }
+                ReadSimulator simulator = newReadSimulator(fasta, fastaIndex, gtf, readcounts, outputDir);
+                simulator.defineReadCollections();
+                simulator.definePreTranscriptsFromGTF();
+                simulator.modifyPreTranscript();
+                return numReads;
+            });
+        }
+    }
+
+    private boolean selected(String benchmark) {
+        return include.matcher(benchmark).find();
+    }
+
+    /** SAMPLES regions of REGION_LENGTH bases at fixed random positions of all chromosomes */
+    private void benchmarkReference(String name, String reference, String fastaIndex) throws Exception {
+        FASTAIndex index = new FASTAIndex(fastaIndex);
+        Random random = new Random(3);
+        String[] chromosomes = new String[SAMPLES];
+        long[] starts = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            chromosomes[i] = index.getChromosomes().get(random.nextInt(index.getChromosomes().size()));
+            long length = index.getChr2chrLength().get(chromosomes[i]);
+            starts[i] = 1 + (long) (random.nextDouble() * (length - REGION_LENGTH));
+        }
+
+        try (ReferenceReader reader = new ReferenceReader(reference, fastaIndex, index, ReferenceReader.DEFAULT_CACHE_BYTES)) {
+            harness.run(name, "bases", () -> {
+                for (int i = 0; i < SAMPLES; i++) {
+                    BenchmarkHarness.blackhole += reader.getSequence(chromosomes[i], starts[i], starts[i] + REGION_LENGTH - 1).length();
+                }
+                return (long) SAMPLES * REGION_LENGTH;
+            });
+        }
+    }
+
+    private static ReadSimulator newReadSimulator(String fasta, String fastaIndex, String gtf, String readcounts, File outputDir) {
+        return new ReadSimulator(READ_LENGTH, FRAGMENT_LENGTH, FRAGMENT_SD, readcounts, MUTATION_RATE, fasta, fastaIndex, gtf,
+                outputDir.getPath());
+    }
+
+    /** SAMPLES read sequences at random positions of the first chromosome */
+    private static String[] readSequences(String fasta, String fastaIndex) throws IOException {
+        FASTAIndex index = new FASTAIndex(fastaIndex);
+        String chromosome = index.getChromosomes().getFirst();
+        long length = index.getChr2chrLength().get(chromosome);
+        Random random = new Random(2);
+        String[] sequences = new String[SAMPLES];
+        try (IndexedFastaSequenceFile file = new IndexedFastaSequenceFile(new File(fasta), new FastaSequenceIndex(new File(fastaIndex)))) {
+            for (int i = 0; i < SAMPLES; i++) {
+                long start = 1 + (long) (random.nextDouble() * (length - READ_LENGTH));
+                sequences[i] = file.getSubsequenceAt(chromosome, start, start + READ_LENGTH - 1).getBaseString();
+            }
+        }
+        return sequences;
+    }
+
+    private static HashMap<String, Integer> readCounts(String readcounts) throws IOException {
+        HashMap<String, Integer> transcript2reads = new HashMap<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(readcounts))) {
+            String line = br.readLine();  // header
+            while ((line = br.readLine()) != null) {
+                String[] elements = line.split("\t");
+                transcript2reads.put(elements[1], Integer.parseInt(elements[2]));
+            }
+        }
+        return transcript2reads;
+    }
+}
@@ -0,0 +1,265 @@
+package Benchmark;
+
+import org.apache.commons.cli.*;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic inputs for both tools, so that runs can be compared without the large human files:
+ * 1. synthetic.gtf: Ensembl-like exon and CDS lines, genes sorted by position, 1 to isoforms transcripts per gene
+ *    which share exons (skipped exons and shifted splice sites => ES-SE, A5SS/A3SS, ... events)
+ * 2. synthetic.fa + synthetic.fa.fai: random bases (60 per line) covering all genes
+ * 3. synthetic.readcounts: 0 to maxreads reads for every transcript
+ * The same parameters and seed always give the same files.
+ * With -reuseids every second gene takes the transcript ids of the gene before it (ids which are not unique across genes,
+ * like the PAR genes of some annotations); CDS lines of a reused id after the first transcript of a gene extend the
+ * transcript of the earlier gene.
+ *
+ * usage: SyntheticGenome -o <dir> [-genes 2000] [-isoforms 4] [-genome 20000000] [-chromosomes 3] [-maxreads 20] [-seed 42] [-reuseids]
+ */
+public class SyntheticGenome {
+    public static final String GTF = "synthetic.gtf";
+    public static final String FASTA = "synthetic.fa";
+    public static final String FASTA_INDEX = "synthetic.fa.fai";
+    public static final String READCOUNTS = "synthetic.readcounts";
+
+    private static final int LINE_WIDTH = 60;
+    private static final byte[] BASES = {'A', 'C', 'G', 'T'};
+
+    private final int genes;
+    private final int isoforms;
+    private final long genomeSize;
+    private final int chromosomes;
+    private final int maxReads;
+    private final long seed;
+    private boolean reuseTranscriptIDs;
+
+    // filled by write
+    private final long[] chromosomeLengths;
+    private long gtfLines;
+    private long transcripts;
+
+    public SyntheticGenome(int genes, int isoforms, long genomeSize, int chromosomes, int maxReads, long seed) {
+        if (genes < 1 || isoforms < 1 || chromosomes < 1 || genomeSize < 1000L * genes) {
+            throw new IllegalArgumentException("Need at least one gene, isoform and chromosome and 1000 bases per gene");
+        }
+        this.genes = genes;
+        this.isoforms = isoforms;
+        this.genomeSize = genomeSize;
+        this.chromosomes = chromosomes;
+        this.maxReads = maxReads;
+        this.seed = seed;
+        this.chromosomeLengths = new long[chromosomes];
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = new Options();
+        options.addOption("o", true, "Output directory");
+        options.addOption("genes", true, "Number of genes (default 2000)");
+        options.addOption("isoforms", true, "Max transcripts per gene (default 4)");
+        options.addOption("genome", true, "Genome size in bases (default 20000000)");
+        options.addOption("chromosomes", true, "Number of chromosomes (default 3)");
+        options.addOption("maxreads", true, "Max reads per transcript in the readcounts (default 20)");
+        options.addOption("seed", true, "Random seed (default 42)");
+        options.addOption("reuseids", false, "Every second gene reuses the transcript ids of the gene before it");
+        CommandLineParser parser = new BasicParser();
+
+        SyntheticGenome synthetic;
+        String outputDir;
+        try {
+            CommandLine cmd = parser.parse(options, args);
+            if (!cmd.hasOption("o")) {
+                System.out.println("Please, check all input arguments!\n" +
+                        "-o <output directory>\n" +
+                        "-genes <integer, optional, default 2000>\n" +
+                        "-isoforms <integer, optional, max transcripts per gene, default 4>\n" +
+                        "-genome <integer, optional, genome size in bases, default 20000000>\n" +
+                        "-chromosomes <integer, optional, default 3>\n" +
+                        "-maxreads <integer, optional, max reads per transcript, default 20>\n" +
+                        "-seed <integer, optional, default 42>\n" +
+                        "-reuseids <optional, every second gene reuses the transcript ids of the gene before it>");
+                System.exit(1);
+            }
+            outputDir = cmd.getOptionValue("o");
+            synthetic = new SyntheticGenome(Integer.parseInt(cmd.getOptionValue("genes", "2000")),
+                    Integer.parseInt(cmd.getOptionValue("isoforms", "4")),
+                    Long.parseLong(cmd.getOptionValue("genome", "20000000")),
+                    Integer.parseInt(cmd.getOptionValue("chromosomes", "3")),
+                    Integer.parseInt(cmd.getOptionValue("maxreads", "20")),
+                    Long.parseLong(cmd.getOptionValue("seed", "42")));
+            synthetic.setReuseTranscriptIDs(cmd.hasOption("reuseids"));
+        } catch (ParseException | IllegalArgumentException e) {
+            System.err.println("Error parsing command line arguments: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        synthetic.write(outputDir);
+        System.out.println(synthetic.getGtfLines() + " GTF lines, " + synthetic.getTranscripts() + " transcripts, "
+                + synthetic.getFastaLength() + " bases in " + outputDir + " (" + (System.currentTimeMillis() - start) + " ms)");
+    }
+
+    /** write the GTF, FASTA, FASTA index and readcounts into the directory (created if needed) */
+    public void write(String outputDir) throws IOException {
+        File dir = new File(outputDir);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + outputDir);
+
+        writeAnnotation(new File(dir, GTF), new File(dir, READCOUNTS));
+        writeFasta(new File(dir, FASTA), new File(dir, FASTA_INDEX));
+    }
+
+    /** genes are laid out one after another in equal slots of each chromosome */
+    private void writeAnnotation(File gtfFile, File readcountsFile) throws IOException {
+        Random random = new Random(seed);
+        long slot = genomeSize / genes;
+        int genesPerChromosome = (genes + chromosomes - 1) / chromosomes;
+        gtfLines = 0;
+        transcripts = 0;
+
+        try (BufferedWriter gtf = new BufferedWriter(new FileWriter(gtfFile), 1 << 16);
+             BufferedWriter readcounts = new BufferedWriter(new FileWriter(readcountsFile), 1 << 16)) {
+            gtf.write("#!genome-build synthetic seed=" + seed + "\n");
+            readcounts.write("gene\ttranscript\tcount\n");
+
+            for (int g = 0; g < genes; g++) {
+                int chromosome = g / genesPerChromosome;
+                long slotStart = (long) (g % genesPerChromosome) * slot + 1000;
+                String chr = String.valueOf(chromosome + 1);
+                char strand = random.nextBoolean() ? '+' : '-';
+                String geneID = String.format("ENSG%011d", g + 1);
+                String geneName = "SYN" + (g + 1);
+
+                ArrayList<long[]> exons = exons(random, slotStart, slot * 4 / 5);
+                chromosomeLengths[chromosome] = Math.max(chromosomeLengths[chromosome], slotStart + slot);
+
+                int numTranscripts = 1 + random.nextInt(isoforms);
+                int idGene = reuseTranscriptIDs ? g - g % 2 : g;
+                for (int t = 0; t < numTranscripts; t++) {
+                    String transcriptID = String.format("ENST%011d", (long) (idGene + 1) * 100 + t);
+                    String proteinID = String.format("ENSP%011d", (long) (g + 1) * 100 + t);
+                    ArrayList<long[]> kept = isoform(random, exons, t);
+
+                    for (int n = 0; n < kept.size(); n++) {
+                        long[] exon = kept.get(n);
+                        String attributes = "gene_id \"" + geneID + "\"; transcript_id \"" + transcriptID + "\"; exon_number \"" + (n + 1)
+                                + "\"; gene_name \"" + geneName + "\"; gene_biotype \"protein_coding\"; transcript_name \"" + geneName + "-" + (t + 1) + "\";";
+                        gtf.write(chr + "\tprotein_coding\texon\t" + exon[0] + "\t" + exon[1] + "\t.\t" + strand + "\t.\t" + attributes + "\n");
+                        gtf.write(chr + "\tprotein_coding\tCDS\t" + exon[0] + "\t" + (exon[1] - 3) + "\t.\t" + strand + "\t0\t" + attributes
+                                + " protein_id \"" + proteinID + "\";\n");
+                        gtfLines += 2;
+                    }
+                    readcounts.write(geneID + "\t" + transcriptID + "\t" + random.nextInt(maxReads + 1) + "\n");
+                    transcripts++;
+                }
+            }
+        }
+    }
+
+    /** 2 to 14 exons of 30 to 300 bases, the rest of the span is split into introns (1-based, end-inclusive) */
+    private static ArrayList<long[]> exons(Random random, long start, long span) {
+        int numExons = (int) Math.max(2, Math.min(2 + random.nextInt(13), span / 400));
+        int[] lengths = new int[numExons];
+        double[] intronWeights = new double[numExons - 1];
+        long exonBases = 0;
+        double weights = 0;
+        for (int i = 0; i < numExons; i++) {
+            lengths[i] = 30 + random.nextInt(271);
+            exonBases += lengths[i];
+            if (i < numExons - 1) {
+                intronWeights[i] = 0.2 + random.nextDouble();
+                weights += intronWeights[i];
+            }
+        }
+        long intronBases = Math.max(50L * (numExons - 1), random.nextInt((int) Math.max(1, span - exonBases)));
+
+        ArrayList<long[]> exons = new ArrayList<>(numExons);
+        long position = start;
+        for (int i = 0; i < numExons; i++) {
+            exons.add(new long[]{position, position + lengths[i] - 1});
+            position += lengths[i];
+            if (i < numExons - 1) position += Math.max(50, Math.round(intronBases * intronWeights[i] / weights));
+        }
+        return exons;
+    }
+
+    /** the first transcript has all exons; the others skip inner exons (30%) and shift an inner splice site (30%) */
+    private static ArrayList<long[]> isoform(Random random, ArrayList<long[]> exons, int transcript) {
+        ArrayList<long[]> kept = new ArrayList<>(exons.size());
+        for (int i = 0; i < exons.size(); i++) {
+            if (transcript == 0 || i == 0 || i == exons.size() - 1 || random.nextDouble() >= 0.3) {
+                kept.add(exons.get(i).clone());
+            }
+        }
+        if (transcript > 0 && kept.size() > 2 && random.nextDouble() < 0.3) {
+            long[] exon = kept.get(1 + random.nextInt(kept.size() - 2));
+            int shift = 1 + random.nextInt(10);
+            if (random.nextBoolean()) exon[0] += shift;
+            else exon[1] -= shift;
+        }
+        return kept;
+    }
+
+    private void writeFasta(File fastaFile, File indexFile) throws IOException {
+        Random random = new Random(seed + 1);
+        byte[] line = new byte[LINE_WIDTH + 1];
+        line[LINE_WIDTH] = '\n';
+        long offset = 0;
+
+        try (OutputStream fasta = new BufferedOutputStream(new FileOutputStream(fastaFile), 1 << 16);
+             BufferedWriter index = new BufferedWriter(new FileWriter(indexFile))) {
+            for (int c = 0; c < chromosomes; c++) {
+                if (chromosomeLengths[c] == 0) continue;
+                String name = String.valueOf(c + 1);
+                byte[] header = (">" + name + " dna:chromosome synthetic\n").getBytes();
+                fasta.write(header);
+                offset += header.length;
+                index.write(name + "\t" + chromosomeLengths[c] + "\t" + offset + "\t" + LINE_WIDTH + "\t" + (LINE_WIDTH + 1) + "\n");
+
+                for (long written = 0; written < chromosomeLengths[c]; written += LINE_WIDTH) {
+                    int bases = (int) Math.min(LINE_WIDTH, chromosomeLengths[c] - written);
+                    int bits = 0;
+                    for (int i = 0; i < bases; i++) {
+                        if (i % 16 == 0) bits = random.nextInt();
+                        line[i] = BASES[(bits >>> ((i % 16) * 2)) & 3];
+                    }
+                    line[bases] = '\n';
+                    fasta.write(line, 0, bases + 1);
+                    offset += bases + 1;
+                }
+            }
+        }
+    }
+
+
+    // Getter and Setter
+    public boolean isReuseTranscriptIDs() {
+        return reuseTranscriptIDs;
+    }
+
+    public void setReuseTranscriptIDs(boolean reuseTranscriptIDs) {
+        this.reuseTranscriptIDs = reuseTranscriptIDs;
+    }
+
+    public long getGtfLines() {
+        return gtfLines;
+    }
+
+    public long getTranscripts() {
+        return transcripts;
+    }
+
+    public long getFastaLength() {
+        long length = 0;
+        for (long chromosomeLength : chromosomeLengths) length += chromosomeLength;
+        return length;
+    }
+}
@@ -0,0 +1,104 @@
+package Benchmark;
+
+import BaseComponents.Gene;
+import BaseComponents.Transcript;
+import ExonSkipping.ExonSkipping;
+import org.apache.commons.cli.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * Checks that ExonSkipping gives the same result for every number of threads: the synthetic GTF (SyntheticGenome,
+ * with transcript ids reused across genes) is read with 1 thread and with each of the given thread counts, then the
+ * genes (transcripts and their CDS) and the ES-SE table are compared.
+ * Many threads => many chunk boundaries, so the merge of the chunks (CDSCollector.mergeInto) is checked at
+ * many different genes.
+ * Exits with 1 and prints the first difference if a result differs.
+ *
+ * usage: ThreadConsistencyCheck [-data dir] [-threads 2,4,8,16,32] [-genes 400] [-seed 42]
+ */
+public class ThreadConsistencyCheck {
+
+    public static void main(String[] args) throws IOException {
+        Options options = new Options();
+        options.addOption("data", true, "Directory for the synthetic input (default: a temporary directory)");
+        options.addOption("threads", true, "Comma separated thread counts compared with 1 thread (default 2,4,8,16,32)");
+        options.addOption("genes", true, "Number of genes (default 400)");
+        options.addOption("seed", true, "Random seed (default 42)");
+        CommandLineParser parser = new BasicParser();
+
+        String dataDir;
+        String[] threadCounts;
+        SyntheticGenome synthetic;
+        try {
+            CommandLine cmd = parser.parse(options, args);
+            dataDir = cmd.hasOption("data") ? cmd.getOptionValue("data")
+                    : new File(System.getProperty("java.io.tmpdir"), "thread-consistency").getPath();
+            threadCounts = cmd.getOptionValue("threads", "2,4,8,16,32").split(",");
+            int genes = Integer.parseInt(cmd.getOptionValue("genes", "400"));
+            synthetic = new SyntheticGenome(genes, 4, 10000L * genes, 3, 0, Long.parseLong(cmd.getOptionValue("seed", "42")));
+            synthetic.setReuseTranscriptIDs(true);
+        } catch (ParseException | IllegalArgumentException e) {
+            System.out.println("Please, check all input arguments!\n" +
+                    "-data <directory, optional, default: temporary directory>\n" +
+                    "-threads <comma separated integers, optional, default 2,4,8,16,32>\n" +
+                    "-genes <integer, optional, default 400>\n" +
+                    "-seed <integer, optional, default 42>");
+            System.exit(1);
+            return;
+        }
+
+        synthetic.write(dataDir);
+        String gtf = dataDir + File.separator + SyntheticGenome.GTF;
+        String expected = describe(gtf, 1);
+
+        boolean consistent = true;
+        for (String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount.trim());
+            String actual = describe(gtf, threads);
+            if (actual.equals(expected)) {
+                System.out.println(threads + " threads: same as 1 thread");
+            } else {
+                System.out.println(threads + " threads: differs from 1 thread, first difference:\n" + firstDifference(expected, actual));
+                consistent = false;
+            }
+        }
+        if (!consistent) System.exit(1);
+    }
+
+    /** genes in genomic order with their transcripts and CDS, followed by the ES-SE table */
+    private static String describe(String gtf, int threads) {
+        ExonSkipping exonSkipping = new ExonSkipping(gtf, threads, false, null);
+        ArrayList<Gene> genes = new ArrayList<>(exonSkipping.getGenome().getAllGenes());
+        genes.sort(Comparator.comparing(Gene::getChromosome).thenComparingInt(Gene::getStartGenomic).thenComparing(Gene::getID));
+
+        StringBuilder description = new StringBuilder();
+        for (Gene gene : genes) {
+            description.append(gene.getID()).append('\t').append(gene.getChromosome()).append('\t').append(gene.getStrand());
+            for (Transcript transcript : gene.getAllTranscripts()) {
+                description.append('\t').append(transcript.getID()).append(':');
+                for (int i = 0; i < transcript.getNumCDS(); i++) {
+                    description.append(transcript.getCDSStart(i)).append('-').append(transcript.getCDSEnd(i)).append(',');
+                }
+            }
+            description.append('\n');
+        }
+        return description.append(exonSkipping.defineAndOrganizeIntrons(threads)).toString();
+    }
+
+    private static String firstDifference(String expected, String actual) {
+        String[] expectedLines = expected.split("\n", -1);
+        String[] actualLines = actual.split("\n", -1);
+        for (int i = 0; i < Math.max(expectedLines.length, actualLines.length); i++) {
+            String expectedLine = i < expectedLines.length ? expectedLines[i] : "<none>";
+            String actualLine = i < actualLines.length ? actualLines[i] : "<none>";
+            if (!expectedLine.equals(actualLine)) {
+                return "line " + (i + 1) + "\n  1 thread: " + expectedLine + "\n  threads:  " + actualLine;
+            }
+        }
+        return "none";
+    }
+}
@@ -0,0 +1,131 @@
+package ExonSkipping;
+
+import BaseComponents.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Collects the CDS entries of a GTF file (or of a byte range of it) into a Genome.
+ * The CDS of a transcript are collected in a Transcript.Builder; finish() freezes the transcripts into their genes,
+ * so call it once after the last line.
+ * For parallel reading every range gets its own collector, which is merged into the collector of the earlier ranges.
+ */
+public class CDSCollector implements Consumer<GTFRecord> {
+    private final Genome genome;
+    private final ArrayList<Gene> genesInOrder;  // order of first appearance, used for merging
+    private final IdentityHashMap<Gene, ArrayList<Transcript.Builder>> gene2transcripts;  // order of first appearance
+    private final HashMap<String, Transcript.Builder> id2transcript;
+
+    // last CDS line seen, see accept
+    private String lastGeneID;
+    private Transcript.Builder lastTranscript;
+
+    public CDSCollector(Genome genome) {
+        this.genome = genome;
+        this.genesInOrder = new ArrayList<>();
+        this.gene2transcripts = new IdentityHashMap<>();
+        this.id2transcript = new HashMap<>();
+    }
+
+    /**
+     * Add one GTF line to the genome, if it is a CDS entry.
+     * Strings are only created for values which are stored (ids, names, chromosome)
+     */
+    @Override
+    public void accept(GTFRecord record) {
+        if (!record.featureStartsWith("CDS")) return;
+
+        String currentCDSID = record.getAttribute("protein_id");
+        if (currentCDSID == null) currentCDSID = record.getAttribute("ccds_id", "");
+
+        // consecutive CDS lines mostly belong to the same transcript => no lookup and no id Strings needed
+        if (lastTranscript != null && record.attributeEquals("transcript_id", lastTranscript.getID())
+                && record.attributeEquals("gene_id", lastGeneID)) {
+            lastTranscript.addCDS(record.getStart(), record.getEnd(), currentCDSID);
+            return;
+        }
+
+        String currentGeneID = record.getGeneID();
+        String currentTranscriptID = record.getAttribute("transcript_id", "");
+
+        Transcript.Builder transcriptToUpdate;
+        Gene geneOrigin = genome.getId2Gene().get(currentGeneID);
+        if (geneOrigin == null) {  // If gene origin of CDS not in genome
+            // Define new Gene and add it; If Gene new, then also transcript new
+            geneOrigin = new Gene(SymbolTable.CHROMOSOMES.intern(record.getChromosome()), record.getStrandChar());
+            geneOrigin.setID(currentGeneID);
+            geneOrigin.setName(record.getAttribute("gene_name", ""));
+
+            // Add the new gene to genome.
+            genome.getId2Gene().put(currentGeneID, geneOrigin);
+            genome.addGene(geneOrigin);
+            genesInOrder.add(geneOrigin);
+            transcriptToUpdate = newTranscript(geneOrigin, currentTranscriptID, record);
+        } else {
+            // Check existence of transcript; if it exists => just add element
+            transcriptToUpdate = id2transcript.get(currentTranscriptID);
+            if (transcriptToUpdate == null) transcriptToUpdate = newTranscript(geneOrigin, currentTranscriptID, record);
+        }
+        transcriptToUpdate.addCDS(record.getStart(), record.getEnd(), currentCDSID);
+
+        lastGeneID = currentGeneID;
+        lastTranscript = transcriptToUpdate;
+    }
+
+    private Transcript.Builder newTranscript(Gene gene, String transcriptID, GTFRecord record) {
+        Transcript.Builder transcript = new Transcript.Builder(transcriptID, record.getAttribute("transcript_name", ""));
+        gene2transcripts.computeIfAbsent(gene, g -> new ArrayList<>()).add(transcript);
+        id2transcript.put(transcriptID, transcript);
+        return transcript;
+    }
+
+    /**
+     * Merge the genes and transcripts of this (later) part of the file into the collector of the earlier parts.
+     * Follows the same rules as accept, so merging the chunks in file order gives the sequential result.
+     */
+    public void mergeInto(CDSCollector target) {
+        for (Gene gene : genesInOrder) {
+            Gene existingGene = target.genome.getId2Gene().get(gene.getID());
+            ArrayList<Transcript.Builder> transcripts = gene2transcripts.get(gene);
+
+            boolean newGene = existingGene == null;
+            Gene targetGene = newGene ? gene : existingGene;
+            if (newGene) {
+                target.genome.getId2Gene().put(gene.getID(), gene);
+                target.genome.addGene(gene);
+                target.genesInOrder.add(gene);
+            }
+
+            for (int i = 0; i < transcripts.size(); i++) {
+                Transcript.Builder transcript = transcripts.get(i);
+                // the first transcript of a new gene is always new (see accept), the others may reuse the id of a
+                // transcript of an earlier gene
+                Transcript.Builder targetTranscript = newGene && i == 0 ? null : target.id2transcript.get(transcript.getID());
+                if (targetTranscript == null) {
+                    target.gene2transcripts.computeIfAbsent(targetGene, g -> new ArrayList<>()).add(transcript);
+                    target.id2transcript.put(transcript.getID(), transcript);
+                } else {
+                    // added after the CDS of the earlier chunk => the earlier CDS is kept for equal starts, like in accept
+                    targetTranscript.addAll(transcript);
+                }
+            }
+        }
+    }
+
+    /** freeze the collected transcripts and add them to their genes, in the order of their first CDS line */
+    public void finish() {
+        for (Gene gene : genesInOrder) {
+            for (Transcript.Builder builder : gene2transcripts.getOrDefault(gene, new ArrayList<>())) {
+                Transcript transcript = builder.build();
+                gene.addTranscript(transcript);
+                genome.getId2transcript().put(transcript.getID(), transcript);
+            }
+        }
+        gene2transcripts.clear();
+        id2transcript.clear();
+        lastTranscript = null;
+    }
+}
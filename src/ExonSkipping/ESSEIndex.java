@@ -0,0 +1,191 @@
+package ExonSkipping;
+
+import java.util.*;
+
+/**
+ * Precomputed lookups over the ES-SE events of one annotation, for ESSEServer.
+ * Every event is rendered to its JSON object once; a query only selects event ordinals from an index
+ * and concatenates the rendered objects.
+ * 1. gene: gene id or symbol -> events
+ * 2. coordinate: per chromosome the events sorted by SV start, with the running maximum of the SV ends,
+ *    so the first event which can overlap a position is found by binary search
+ * 3. skipped exons: all events sorted by max skipped exons (descending), "at least k" is a prefix
+ */
+public class ESSEIndex {
+    private static final String[] COLUMNS = ESSEWriter.HEADER.trim().split("\t");
+    private static final Set<Integer> NUMERIC_COLUMNS = Set.of(4, 5, 10, 11, 12, 13);
+
+    private final String name;
+
+    // per event, in the order of the ES-SE table
+    private final ArrayList<String> json;
+    private final ArrayList<String> chromosomes;
+    private int[] svStart;  // 1-based, as in the table
+    private int[] svEnd;
+    private int[] maxSkippedExons;
+    private int numEvents;
+
+    private final HashMap<String, int[]> geneIndex;
+    private final HashMap<String, int[]> eventsByStart;  // chromosome -> event ordinals sorted by SV start
+    private final HashMap<String, int[]> maxEndByStart;  // chromosome -> running max of the SV ends in that order
+    private int[] eventsBySkippedExons;
+
+    public ESSEIndex(String name) {
+        this.name = name;
+        this.json = new ArrayList<>();
+        this.chromosomes = new ArrayList<>();
+        this.svStart = new int[1024];
+        this.svEnd = new int[1024];
+        this.maxSkippedExons = new int[1024];
+        this.geneIndex = new HashMap<>();
+        this.eventsByStart = new HashMap<>();
+        this.maxEndByStart = new HashMap<>();
+    }
+
+    /** add the next event of the table; build has to be called after the last one */
+    public void add(ES_SE event) {
+        if (numEvents == svStart.length) {
+            svStart = Arrays.copyOf(svStart, 2 * numEvents);
+            svEnd = Arrays.copyOf(svEnd, 2 * numEvents);
+            maxSkippedExons = Arrays.copyOf(maxSkippedExons, 2 * numEvents);
+        }
+        long svIntron = event.getSVIntron();
+        svStart[numEvents] = (int) (svIntron >>> 32) + 1;
+        svEnd[numEvents] = (int) svIntron;
+        maxSkippedExons[numEvents] = event.getMax_skipped_exon();
+        chromosomes.add(event.getChromosome());
+        json.add(toJson(event));
+
+        addToGene(event.getID(), numEvents);
+        if (event.getSymbol() != null && !event.getSymbol().isEmpty() && !event.getSymbol().equals(event.getID())) {
+            addToGene(event.getSymbol(), numEvents);
+        }
+        numEvents++;
+    }
+
+    private void addToGene(String key, int event) {
+        int[] events = geneIndex.get(key);
+        events = events == null ? new int[1] : Arrays.copyOf(events, events.length + 1);
+        events[events.length - 1] = event;
+        geneIndex.put(key, events);
+    }
+
+    /** build the coordinate and skipped exon indexes */
+    public void build() {
+        HashMap<String, ArrayList<Integer>> byChromosome = new HashMap<>();
+        for (int e = 0; e < numEvents; e++) {
+            byChromosome.computeIfAbsent(chromosomes.get(e), c -> new ArrayList<>()).add(e);
+        }
+        for (Map.Entry<String, ArrayList<Integer>> entry : byChromosome.entrySet()) {
+            ArrayList<Integer> events = entry.getValue();
+            events.sort(Comparator.comparingInt(e -> svStart[e]));  // stable: table order for equal starts
+
+            int[] sorted = new int[events.size()];
+            int[] maxEnd = new int[events.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = events.get(i);
+                maxEnd[i] = Math.max(i > 0 ? maxEnd[i - 1] : 0, svEnd[sorted[i]]);
+            }
+            eventsByStart.put(entry.getKey(), sorted);
+            maxEndByStart.put(entry.getKey(), maxEnd);
+        }
+
+        eventsBySkippedExons = new int[numEvents];
+        Integer[] order = new Integer[numEvents];
+        for (int e = 0; e < numEvents; e++) order[e] = e;
+        Arrays.sort(order, Comparator.comparingInt((Integer e) -> -maxSkippedExons[e]));
+        for (int e = 0; e < numEvents; e++) eventsBySkippedExons[e] = order[e];
+    }
+
+    /** @return events of the gene (id or symbol), in table order */
+    public int[] byGene(String gene) {
+        return geneIndex.getOrDefault(gene, new int[0]);
+    }
+
+    /** @return events whose SV intron overlaps [start, end] (1-based, inclusive), sorted by SV start */
+    public int[] overlapping(String chromosome, int start, int end) {
+        int[] sorted = eventsByStart.get(chromosome);
+        if (sorted == null) return new int[0];
+        int[] maxEnd = maxEndByStart.get(chromosome);
+
+        // first position whose running max end reaches the start; no event before it can overlap
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (maxEnd[middle] < start) low = middle + 1;
+            else high = middle;
+        }
+
+        int[] result = new int[8];
+        int numResults = 0;
+        for (int i = low; i < sorted.length && svStart[sorted[i]] <= end; i++) {
+            if (svEnd[sorted[i]] >= start) {
+                if (numResults == result.length) result = Arrays.copyOf(result, 2 * numResults);
+                result[numResults++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(result, numResults);
+    }
+
+    /** @return number of events with at least k max skipped exons: the first ones of bySkippedExons */
+    public int countWithSkippedExons(int k) {
+        int low = 0;
+        int high = numEvents;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (maxSkippedExons[eventsBySkippedExons[middle]] >= k) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /** @return all events, sorted by max skipped exons (descending) */
+    public int[] bySkippedExons() {
+        return eventsBySkippedExons;
+    }
+
+    public int getMaxSkippedExons(int event) {
+        return maxSkippedExons[event];
+    }
+
+    /** @return the precomputed JSON object of the event */
+    public String getJson(int event) {
+        return json.get(event);
+    }
+
+    /** one JSON object per event with the columns of the ES-SE table */
+    private static String toJson(ES_SE event) {
+        String[] values = event.appendTo(new StringBuilder()).toString().split("\t", -1);
+        StringBuilder object = new StringBuilder("{");
+        for (int c = 0; c < COLUMNS.length; c++) {
+            if (c > 0) object.append(',');
+            object.append('"').append(COLUMNS[c]).append("\":");
+            String value = c < values.length ? values[c] : "";
+            if (NUMERIC_COLUMNS.contains(c)) object.append(value);
+            else appendString(object, value);
+        }
+        return object.append('}').toString();
+    }
+
+    static void appendString(StringBuilder output, String value) {
+        output.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') output.append('\\').append(c);
+            else if (c < 0x20) output.append(String.format("\\u%04x", (int) c));
+            else output.append(c);
+        }
+        output.append('"');
+    }
+
+
+    // Getter and Setter
+    public String getName() {
+        return name;
+    }
+
+    public int getNumEvents() {
+        return numEvents;
+    }
+}
@@ -0,0 +1,290 @@
+package ExonSkipping;
+
+import BaseComponents.Histogram;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.cli.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived ES-SE query service: the annotations are parsed and their events detected once,
+ * then queries are answered from the precomputed ESSEIndex of each annotation over HTTP/JSON on localhost.
+ *
+ * GET /annotations                        loaded annotations and their number of events
+ * GET /events?gene=ENSG...|symbol         events of the gene
+ * GET /events?region=chr:start-end        events whose SV intron overlaps the region
+ * GET /events?min_skipped_exons=k         events with max_skipped_exon >= k (most skipped exons first)
+ *     optional: annotation=name (required if more than one is loaded), limit=n (default 1000);
+ *     min_skipped_exons can be combined with gene/region as a filter
+ * GET /metrics                            requests, errors, throughput and latency (microseconds)
+ */
+public class ESSEServer {
+    private static final int DEFAULT_LIMIT = 1000;
+
+    private final LinkedHashMap<String, ESSEIndex> annotations;
+    private final long startTime;
+
+    // metrics, guarded by this
+    private final Histogram latencyMicros;
+    private final TreeMap<String, Long> requestsPerEndpoint;
+    private long numErrors;
+
+    public ESSEServer(LinkedHashMap<String, ESSEIndex> annotations) {
+        this.annotations = annotations;
+        this.startTime = System.nanoTime();
+        this.latencyMicros = Histogram.logarithmic(20);
+        this.requestsPerEndpoint = new TreeMap<>();
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        options.addOption("gtf", true, "Comma-separated GTF files to load");
+        options.addOption("names", true, "Comma-separated annotation names (default: file names)");
+        options.addOption("port", true, "Port on localhost (default: 8080)");
+        options.addOption("threads", true, "Threads for loading and for answering requests (default: number of processors)");
+        options.addOption("nosnapshot", false, "Do not use/write the binary snapshots of the parsed GTFs");
+        CommandLineParser parser = new BasicParser();
+
+        List<String> gtfs = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean useSnapshot = true;
+
+        try {
+            CommandLine cmd = parser.parse(options, args);
+            if (cmd.hasOption("gtf")) gtfs.addAll(Arrays.asList(cmd.getOptionValue("gtf").split(",")));
+            gtfs.addAll(cmd.getArgList());
+            if (cmd.hasOption("names")) names.addAll(Arrays.asList(cmd.getOptionValue("names").split(",")));
+            if (cmd.hasOption("nosnapshot")) useSnapshot = false;
+
+            try {
+                if (cmd.hasOption("port")) port = Integer.parseInt(cmd.getOptionValue("port"));
+                if (cmd.hasOption("threads")) threads = Integer.parseInt(cmd.getOptionValue("threads"));
+            } catch (NumberFormatException e) {
+                System.err.println("The options -port and -threads require an integer.");
+                System.exit(1);
+            }
+
+            if (gtfs.isEmpty()) {
+                System.out.println("-gtf <comma-separated GTF files>" + "\n" +
+                        " -names <optional, annotation names>" + "\n" +
+                        " -port <optional, default 8080>" + "\n" +
+                        " -threads <optional>" + "\n" +
+                        " -nosnapshot <optional, always parse the GTFs>");
+                return;
+            }
+        } catch (ParseException e) {
+            System.err.println("Error parsing command line arguments!");
+            return;
+        }
+
+        LinkedHashMap<String, ESSEIndex> annotations = new LinkedHashMap<>();
+        for (int i = 0; i < gtfs.size(); i++) {
+            String name = i < names.size() ? names.get(i) : annotationName(gtfs.get(i));
+            long start = System.currentTimeMillis();
+
+            ExonSkipping exonSkipping;
+            try {
+                exonSkipping = new ExonSkipping(gtfs.get(i), threads, useSnapshot);
+            } catch (UncheckedIOException e) {
+                System.err.println("Error: cannot read " + gtfs.get(i) + " (" + e.getCause() + ")");
+                System.exit(1);
+                return;
+            }
+            ESSEIndex index = new ESSEIndex(name);
+            exonSkipping.forEachExonSpliceEvent(threads, index::add);
+            index.build();
+            annotations.put(name, index);
+            System.out.println(name + ": " + index.getNumEvents() + " ES-SE events, loaded in " + (System.currentTimeMillis() - start) + " ms");
+        }
+
+        try {
+            new ESSEServer(annotations).start(port, threads);
+            System.out.println("Listening on http://127.0.0.1:" + port);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Homo_sapiens.GRCh37.75.gtf.gz => Homo_sapiens.GRCh37.75 */
+    private static String annotationName(String gtf) {
+        String name = Path.of(gtf).getFileName().toString();
+        for (String suffix : new String[]{".gz", ".bgz", ".gtf"}) {
+            if (name.endsWith(suffix)) name = name.substring(0, name.length() - suffix.length());
+        }
+        return name;
+    }
+
+    /** bind to the loopback interface only */
+    public HttpServer start(int port, int threads) throws IOException {
+        // small responses: without TCP_NODELAY each one waits for the delayed ACK of the client (~40 ms)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/annotations", exchange -> handle(exchange, "annotations"));
+        server.createContext("/events", exchange -> handle(exchange, "events"));
+        server.createContext("/metrics", exchange -> handle(exchange, "metrics"));
+        server.setExecutor(Executors.newFixedThreadPool(Math.max(1, threads)));
+        server.start();
+        return server;
+    }
+
+    private void handle(HttpExchange exchange, String endpoint) throws IOException {
+        long start = System.nanoTime();
+        int status = 200;
+        String body;
+        try {
+            Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            body = switch (endpoint) {
+                case "annotations" -> annotationsJson();
+                case "events" -> events(parameters, start);
+                default -> metricsJson();
+            };
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            StringBuilder error = new StringBuilder("{\"error\":");
+            ESSEIndex.appendString(error, e.getMessage());
+            body = error.append('}').toString();
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+
+        synchronized (this) {
+            latencyMicros.add((System.nanoTime() - start) / 1000);
+            requestsPerEndpoint.merge(endpoint, 1L, Long::sum);
+            if (status != 200) numErrors++;
+        }
+    }
+
+    private String events(Map<String, String> parameters, long start) {
+        ESSEIndex index = annotation(parameters.get("annotation"));
+        int limit = intParameter(parameters, "limit", DEFAULT_LIMIT);
+        int minSkippedExons = intParameter(parameters, "min_skipped_exons", Integer.MIN_VALUE);
+
+        int[] events;
+        int numEvents;
+        if (parameters.containsKey("gene")) {
+            events = index.byGene(parameters.get("gene"));
+            numEvents = events.length;
+        } else if (parameters.containsKey("region")) {
+            String region = parameters.get("region");
+            int colon = region.lastIndexOf(':');
+            String[] coordinates = colon < 0 ? new String[0] : region.substring(colon + 1).replace(",", "").split("-");
+            if (coordinates.length != 2) throw new IllegalArgumentException("region has to be chr:start-end");
+            try {
+                events = index.overlapping(region.substring(0, colon), Integer.parseInt(coordinates[0]), Integer.parseInt(coordinates[1]));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid coordinates in region " + region);
+            }
+            numEvents = events.length;
+        } else if (parameters.containsKey("min_skipped_exons")) {
+            events = index.bySkippedExons();
+            numEvents = index.countWithSkippedExons(minSkippedExons);
+        } else {
+            throw new IllegalArgumentException("One of gene, region or min_skipped_exons is required");
+        }
+
+        StringBuilder body = new StringBuilder(256);
+        body.append("{\"annotation\":");
+        ESSEIndex.appendString(body, index.getName());
+        body.append(",\"events\":[");
+        int count = 0;
+        int returned = 0;
+        for (int i = 0; i < numEvents; i++) {
+            if (index.getMaxSkippedExons(events[i]) < minSkippedExons) continue;
+            if (returned < limit) {
+                if (returned > 0) body.append(',');
+                body.append(index.getJson(events[i]));
+                returned++;
+            }
+            count++;
+        }
+        body.append("],\"count\":").append(count).append(",\"returned\":").append(returned)
+                .append(",\"micros\":").append((System.nanoTime() - start) / 1000).append('}');
+        return body.toString();
+    }
+
+    private ESSEIndex annotation(String name) {
+        if (name == null) {
+            if (annotations.size() == 1) return annotations.values().iterator().next();
+            throw new IllegalArgumentException("annotation is required, loaded: " + String.join(",", annotations.keySet()));
+        }
+        ESSEIndex index = annotations.get(name);
+        if (index == null) throw new IllegalArgumentException("Unknown annotation " + name);
+        return index;
+    }
+
+    private String annotationsJson() {
+        StringBuilder body = new StringBuilder("{\"annotations\":[");
+        boolean first = true;
+        for (ESSEIndex index : annotations.values()) {
+            if (!first) body.append(',');
+            body.append("{\"name\":");
+            ESSEIndex.appendString(body, index.getName());
+            body.append(",\"events\":").append(index.getNumEvents()).append('}');
+            first = false;
+        }
+        return body.append("]}").toString();
+    }
+
+    private synchronized String metricsJson() {
+        double uptime = (System.nanoTime() - startTime) / 1e9;
+        long requests = latencyMicros.getCount();
+        StringBuilder body = new StringBuilder("{");
+        body.append("\"uptime_s\":").append(String.format(Locale.ROOT, "%.1f", uptime));
+        body.append(",\"requests\":").append(requests);
+        body.append(",\"errors\":").append(numErrors);
+        body.append(",\"requests_per_s\":").append(String.format(Locale.ROOT, "%.1f", requests / uptime));
+        body.append(",\"endpoints\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : requestsPerEndpoint.entrySet()) {
+            if (!first) body.append(',');
+            body.append('"').append(entry.getKey()).append("\":").append(entry.getValue());
+            first = false;
+        }
+        body.append("},\"latency_us\":{");
+        if (requests > 0) {
+            body.append(String.format(Locale.ROOT, "\"mean\":%.1f,\"p50\":%.1f,\"p90\":%.1f,\"p99\":%.1f,\"max\":%d",
+                    latencyMicros.getMean(), latencyMicros.quantile(0.5), latencyMicros.quantile(0.9),
+                    latencyMicros.quantile(0.99), latencyMicros.getMax()));
+        }
+        return body.append("}}").toString();
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        HashMap<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) return parameters;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals < 0) continue;
+            parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " has to be an integer");
+        }
+    }
+}
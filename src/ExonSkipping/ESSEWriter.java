@@ -0,0 +1,31 @@
+package ExonSkipping;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the ES-SE table event by event (see TableWriter).
+ * The bytes are the same as the String of ExonSkipping.defineAndOrganizeIntrons (rows separated by '\n').
+ */
+public class ESSEWriter extends TableWriter {
+    public static final String HEADER = "id\tsymbol\tchr\tstrand\tnprots\tntrans\tSV\tWT\tWT_prots\tSV_prots\tmin_skipped_exon\tmax_skipped_exon\tmin_skipped_bases\tmax_skipped_bases\n";
+
+    public ESSEWriter(String outputPath) throws IOException {
+        super(outputPath, HEADER);
+    }
+
+    public void write(List<ES_SE> events) throws IOException {
+        for (ES_SE event : events) {
+            write(event);
+        }
+    }
+
+    public void write(ES_SE event) throws IOException {
+        event.appendTo(startRow());
+        endRow();
+    }
+
+    public long getNumEvents() {
+        return getNumRows();
+    }
+}
@@ -1,91 +1,86 @@
 package ExonSkipping;
 
-import BaseComponents.Intron;
-import BaseComponents.Utils;
-
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.stream.Collectors;
+import BaseComponents.IntronTable;
+import BaseComponents.SymbolTable;
 
 public class ES_SE {
-    private String ID;  // gene_id
+    private int ID;  // gene_id, SymbolTable.GENE_IDS
     private String symbol;  // gene name
-    private String chromosome;  // chromosome
+    private int chromosome;  // chromosome, SymbolTable.CHROMOSOMES
     private char strand;  // +/-
     private int n_prots;  // number of annotated CDS in the gene
     private int n_trans;  // number of annotated transcripts
-    private ArrayList<Intron> SV;  // the SV-intron as "start:end"
-    private ArrayList<Intron> WT;   // the WT introns within the SV-intron, separated by |
-    private ArrayList<Intron> intronsInSV;
-    private ArrayList<Intron> allIntronsInEvent;
-    private ArrayList<String> SV_prots;  // ids of the SV CDS, separated by |
-    private ArrayList<String> WT_prots;  // ids of the WT CDS, separated by |
+    private final IntronTable introns;  // intron table of the gene, the arrays below are its rows
+    private int[] SV;  // the SV-intron as "start:end"; ids of the SV CDS, separated by |
+    private int[] WT;   // ids of the WT CDS, separated by |
+    private long[] allIntronsInEvent;  // the WT introns within the SV-intron (intronKey), separated by |
     private int min_skipped_exon;
     private int max_skipped_exon;
     private int min_skipped_bases;
     private int max_skipped_bases;
 
-    public ES_SE(String ID, String symbol, String chr, char strand, int n_prots, int n_trans, ArrayList<Intron> SV, ArrayList<Intron> WT, ArrayList<Intron> allIntronsInEvent){
+    public ES_SE(int ID, String symbol, int chr, char strand, int n_prots, int n_trans, IntronTable introns, int[] SV, int[] WT, long[] allIntronsInEvent){
         this.ID = ID;
         this.symbol = symbol;
         this.chromosome = chr;
         this.strand = strand;
         this.n_prots = n_prots;
         this.n_trans = n_trans;
+        this.introns = introns;
         this.SV = SV;
         this.WT = WT;
         this.allIntronsInEvent = allIntronsInEvent;
-        this.SV_prots = new ArrayList<>();
-        this.WT_prots = new ArrayList<>();
-        this.intronsInSV = new ArrayList<>();
     }
 
 
     @Override
     public String toString(){
-        StringBuilder output = new StringBuilder(this.ID + "\t" + this.symbol + "\t" + this.chromosome + "\t" + this.strand + "\t" +
-                this.n_prots + "\t" + this.n_trans + "\t" +
-                (this.SV.getFirst().getStartGenomic() + 1) + ":" + this.SV.getFirst().getEndGenomic() + "\t" );
-
-        ArrayList<Intron> uniqueIntervals = new ArrayList<>(
-                intronsInSV.stream()
-                        .collect(Collectors.toMap(
-                                interval -> interval.getStartGenomic() + ":" + interval.getEndGenomic(),
-                                interval -> interval,
-                                (existing, replacement) -> existing
-                        )).values());
-        uniqueIntervals.sort(Comparator.comparingInt(Intron::getStartGenomic).reversed());
-
-        for(Intron intron: allIntronsInEvent){
-            output.append((intron.getStartGenomic()+1) + ":" + intron.getEndGenomic() + "|");
-        }
-        output.deleteCharAt(output.length()-1);
-        output.append("\t");
+        return appendTo(new StringBuilder()).toString();
+    }
 
-        // SV_prots:
-        for(Intron intron: WT){
-            output.append(intron.getCds3End().getID() + "|");
+    /**
+     * Appends the table row (without newline) to the given builder, so one builder can be reused for all events
+     * @return the builder
+     */
+    public StringBuilder appendTo(StringBuilder output) {
+        int svIntron = this.SV[0];
+        output.append(getID()).append('\t').append(this.symbol).append('\t').append(SymbolTable.CHROMOSOMES.resolve(this.chromosome)).append('\t')
+                .append(this.strand).append('\t').append(this.n_prots).append('\t').append(this.n_trans).append('\t')
+                .append(introns.getStart(svIntron) + 1).append(':').append(introns.getEnd(svIntron)).append('\t');
+
+        for (int i = 0; i < allIntronsInEvent.length; i++) {
+            long intron = allIntronsInEvent[i];
+            if (i > 0) output.append('|');
+            output.append((int) (intron >>> 32) + 1).append(':').append((int) intron);
         }
-        output.deleteCharAt(output.length()-1);
-        output.append("\t");
+        output.append('\t');
 
-        for(Intron intron: SV){
-            output.append(intron.getCds3End().getID() + "|");
-        }
-        output.deleteCharAt(output.length()-1);
-        output.append("\t");
+        // SV_prots:
+        appendProteinIDs(output, introns, WT);
+        appendProteinIDs(output, introns, SV);
 
         // MIN/MAX Exon
-
-        output.append(this.min_skipped_exon + "\t");
-        output.append(this.max_skipped_exon + "\t");
-        output.append((this.min_skipped_bases + 1) + "\t");
-        output.append((this.max_skipped_bases + 1) + "\t");
+        output.append(this.min_skipped_exon).append('\t');
+        output.append(this.max_skipped_exon).append('\t');
 
         // MIN/MAX Bases
+        output.append(this.min_skipped_bases + 1).append('\t');
+        output.append(this.max_skipped_bases + 1).append('\t');
 
+        return output;
+    }
+
+    /** packs the intron coordinates into one long, ordered by start and then end */
+    public static long intronKey(int start, int end) {
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
 
-        return output.toString();
+    private static void appendProteinIDs(StringBuilder output, IntronTable introns, int[] rows) {
+        for (int i = 0; i < rows.length; i++) {
+            if (i > 0) output.append('|');
+            output.append(introns.getCds3Protein(rows[i]));
+        }
+        output.append('\t');
     }
 
 
@@ -106,14 +101,6 @@ public class ES_SE {
         return max_skipped_bases;
     }
 
-    public ArrayList<Intron> getIntronsInSV() {
-        return intronsInSV;
-    }
-
-    public void setIntronsInSV(ArrayList<Intron> intronsInSV) {
-        this.intronsInSV = intronsInSV;
-    }
-
     public void setMin_skipped_exon(int min_skipped_exon) {
         this.min_skipped_exon = min_skipped_exon;
     }
@@ -131,6 +118,28 @@ public class ES_SE {
     }
 
     public String getID() {
+        return SymbolTable.GENE_IDS.resolve(ID);
+    }
+
+    public int getIDSymbol() {
         return ID;
     }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getChromosome() {
+        return SymbolTable.CHROMOSOMES.resolve(chromosome);
+    }
+
+    /** @return the SV intron as intronKey(start, end) */
+    public long getSVIntron() {
+        return intronKey(introns.getStart(SV[0]), introns.getEnd(SV[0]));
+    }
+
+    /** @return the WT introns within the SV intron (intronKey), sorted */
+    public long[] getWTIntrons() {
+        return allIntronsInEvent;
+    }
 }
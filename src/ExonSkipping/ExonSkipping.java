@@ -2,10 +2,20 @@ package ExonSkipping;
 
 import BaseComponents.*;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -15,10 +25,14 @@ import java.util.stream.Collectors;
  */
 
 public class ExonSkipping {
+    private static final int GENES_PER_THREAD = 16;  // genes processed ahead of the sink
+
     private Genome genome;
+    private final PhaseMetrics metrics;
+    private final SpliceEventDetector exonSkippingDetector;
 
     /**
-     * @param inputFilePath reads file, iterates it and saves the described gene structures
+     * @param inputFilePath memory-maps the file, iterates it and saves the described gene structures
      * 1. chromosome
      * 2. source (gene biotype)
      * 3. type of feature (gene, transcript, CDS...)
@@ -30,289 +44,310 @@ public class ExonSkipping {
      * 9. attribute - their order and number of elements *can* change
      */
     public ExonSkipping(String inputFilePath) {
-        genome = new Genome();
-
-        try (BufferedReader br = new BufferedReader(new FileReader(inputFilePath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-
-                int firstTab = line.indexOf("\t");
-                if (firstTab != -1) {
-                    int secondTab = line.indexOf("\t", firstTab + 1);
-                    if (secondTab != -1) {
-                        String afterSecondTab = line.substring(secondTab + 1);
-                        if (afterSecondTab.startsWith("CDS")){
-                            String[] values = line.split("\t");
-                            String[] attributes = values[8].split("; ");
-                            CDS newCDS = new CDS(Integer.parseInt(values[3]), Integer.parseInt(values[4]));
-
-                            Map<String, String> mappedAttributes = Arrays.stream(attributes)
-                                    .filter(e -> e.startsWith("gene") || e.startsWith("transcript") || e.startsWith("protein") || e.startsWith("ccds"))  // filter out only attributes we are interested in
-                                    .map(attr -> attr.split(" ", 2))
-                                    .filter(pair -> pair.length == 2)
-                                    .collect(Collectors.toMap(pair -> pair[0].trim(), pair -> pair[1].replace("\"", "").replace(";", ""), (existing, replacement) -> replacement));
-
-
-                            String currentGeneID = mappedAttributes.getOrDefault("gene_id", "");
-                            if(currentGeneID.isEmpty()){
-                                currentGeneID = attributes[0].split(" ")[2].replace("\"", "").replace(";", "");
-                            }
-                            String currentGeneName = mappedAttributes.getOrDefault("gene_name", "");
-                            String currentTranscriptName = mappedAttributes.getOrDefault("transcript_name", "");
-                            String currentTranscriptID = mappedAttributes.getOrDefault("transcript_id", "");
-                            String currentCDSID = mappedAttributes.getOrDefault("protein_id", mappedAttributes.getOrDefault("ccds_id", ""));
-                            newCDS.setID(currentCDSID);
-
-                            if (!genome.getId2Gene().containsKey(currentGeneID)) {  // If gene origin of CDS not in genome
-                                // Define new Gene and add it; If Gene new, then also transcript new
-                                Gene geneToAdd = new Gene(values[0], values[6]);
-                                geneToAdd.setID(currentGeneID);
-                                geneToAdd.setName(currentGeneName);
-
-                                Transcript newTranscript = new Transcript(currentTranscriptID, currentTranscriptName);
-                                newTranscript.addCDS(newCDS);
-
-                                // Transcript to gene
-                                geneToAdd.addTranscript(newTranscript);
-
-                                // Add the new gene to genome.
-                                genome.getId2Gene().put(currentGeneID, geneToAdd);
-                                genome.getId2transcript().put(currentTranscriptID, newTranscript);
-                                genome.addGene(geneToAdd);
-                            } else {  // Gene is already in genome
-                                Gene geneOrigin = genome.getId2Gene().get(currentGeneID);
-                                Utils.checkIfNull(geneOrigin, new Gene());
-
-                                // Check existence of transcript:
-                                Transcript transcriptToUpdate;
-                                if (!genome.getId2transcript().containsKey(currentTranscriptID)) {
-                                    transcriptToUpdate = new Transcript(currentTranscriptID, currentTranscriptName);
-                                    transcriptToUpdate.addCDS(newCDS);
-                                    genome.getId2transcript().put(currentTranscriptID, transcriptToUpdate);
-                                    geneOrigin.addTranscript(transcriptToUpdate);
-                                } else {
-                                    // it exists => just add element
-                                    transcriptToUpdate = genome.getId2transcript().get(currentTranscriptID);
-                                    Utils.checkIfNull(transcriptToUpdate, new Transcript());
-
-                                    transcriptToUpdate.addCDS(newCDS);
-                                }
-                            }
-                        }
+        this(inputFilePath, 1);
+    }
+
+    /**
+     * @param inputFilePath see above
+     * @param threads > 1: the file is split into byte ranges on line boundaries, each range is parsed on its own
+     *                into a local genome and these are merged in file order, so the result is the same as with one thread;
+     *                for gzip/BGZF files (.gtf.gz) the threads decompress the BGZF blocks
+     */
+    public ExonSkipping(String inputFilePath, int threads) {
+        this(inputFilePath, threads, false);
+    }
+
+    /**
+     * @param useSnapshot load the genome from the binary snapshot next to the GTF if it belongs to the current file;
+     *                    otherwise parse the GTF and write the snapshot for the next run
+     */
+    public ExonSkipping(String inputFilePath, int threads, boolean useSnapshot) {
+        this(inputFilePath, threads, useSnapshot, null);
+    }
+
+    /**
+     * @param selection only the genes of the region/gene list are read, using the GTF index (GTFIndex, built on the
+     *                  first use); the snapshot is neither read nor written. null := whole GTF
+     */
+    public ExonSkipping(String inputFilePath, int threads, boolean useSnapshot, GeneSelection selection) {
+        this(inputFilePath, threads, useSnapshot, selection, PhaseMetrics.NONE);
+    }
+
+    /**
+     * @param metrics records the phases gtf_parse (snapshot_write), intron_organization, es_se_detection and output
+     * @throws UncheckedIOException if the GTF (or its index) cannot be read, instead of an empty genome
+     */
+    public ExonSkipping(String inputFilePath, int threads, boolean useSnapshot, GeneSelection selection, PhaseMetrics metrics) {
+        this.genome = new Genome();
+        this.metrics = metrics;
+        this.exonSkippingDetector = new SpliceEventDetector(EnumSet.of(SpliceEventType.ES), metrics);
+
+        try {
+            if (selection != null && !selection.isEmpty()) useSnapshot = false;
+            AnnotationSnapshot snapshot = useSnapshot ? new AnnotationSnapshot(inputFilePath, AnnotationSnapshot.KIND_CDS) : null;
+            AnnotationSnapshot.Reader reader = snapshot != null ? snapshot.open() : null;
+
+            if (selection != null && !selection.isEmpty()) {
+                try (PhaseMetrics.Timer timer = metrics.start("gtf_parse")) {
+                    CDSCollector collector = new CDSCollector(genome);
+                    GTFIndex.read(inputFilePath, selection, collector);
+                    collector.finish();
+                    timer.addItems(genome.getAllGenes().size());
+                }
+            } else if (reader != null) {
+                try (PhaseMetrics.Timer timer = metrics.start("gtf_parse")) {
+                    genome = GenomeSnapshot.read(reader);
+                    timer.addItems(genome.getAllGenes().size());
+                }
+            } else {
+                if (CompressedGTFReader.isCompressed(inputFilePath)) {
+                    // no byte ranges in a compressed file => parallel block decompression, sequential parsing
+                    try (PhaseMetrics.Timer timer = metrics.start("gtf_parse")) {
+                        CDSCollector collector = new CDSCollector(genome);
+                        CompressedGTFReader.read(inputFilePath, threads, collector);
+                        collector.finish();
+                        timer.addItems(genome.getAllGenes().size());
+                    }
+                } else if (threads <= 1) {
+                    try (PhaseMetrics.Timer timer = metrics.start("gtf_parse")) {
+                        CDSCollector collector = new CDSCollector(genome);
+                        MappedGTFReader.read(inputFilePath, collector);
+                        collector.finish();
+                        timer.addItems(genome.getAllGenes().size());
+                    }
+                } else {
+                    readParallel(inputFilePath, threads);  // timed per chunk, the genes are counted after the merge
+                }
+                if (snapshot != null) {
+                    try (PhaseMetrics.Timer timer = metrics.start("snapshot_write")) {
+                        writeSnapshot(snapshot);
+                        timer.addItems(genome.getAllGenes().size());
                     }
                 }
             }
 
-
             for (Gene g : genome.getAllGenes()) {
                 g.setN_ports(g.getAllTranscripts().size());
                 g.setN_trans(g.getAllTranscripts().size());
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
         }
     }
 
+    /** empty genome, for the streaming mode */
+    private ExonSkipping(Genome genome, PhaseMetrics metrics) {
+        this.genome = genome;
+        this.metrics = metrics;
+        this.exonSkippingDetector = new SpliceEventDetector(EnumSet.of(SpliceEventType.ES), metrics);
+    }
+
     /**
-     * For each gene define all introns by iterating each transcript in the gene
-     * @return the ES-SE string
+     * Streaming mode: the genes are read one after the other and each one is processed and released as soon as
+     * it is complete, so the whole annotation is never in memory (see GeneStream). Needs a GTF in which the lines
+     * of a gene follow each other, or one sorted by coordinate with gene lines.
+     * The table is the same as in the other modes.
+     * @param selection only these genes (read with the GTF index); null := whole GTF
      */
-    public String defineAndOrganizeIntrons() {
-        for (Gene gene : genome.getAllGenes()) {
-            ArrayList<Intron> introns = new ArrayList<>();
-            HashMap<Integer, ArrayList<Intron>> organizedIntrons = new HashMap<>();
-
-            for (Transcript transcript: gene.getAllTranscripts()) {
-                ArrayList<Integer> startingPositions = new ArrayList<>();
-
-                CDS end5 = null;
-                for (CDS end3 : transcript.getAllCDS()) {  // CDS entries are automatically sorted
-                    if (end5 != null) {
-                        Intron intron = new Intron(end5, end3);
-                        intron.setOriginTranscript(transcript);
-                        transcript.getAllIntrons().add(intron);
-                        introns.add(intron);
-
-                        int startIndex = intron.getStartGenomic();
-                        startingPositions.add(startIndex);
-
-                        if(!organizedIntrons.containsKey(startIndex)){
-                            organizedIntrons.put(startIndex, new ArrayList<>());
-                            organizedIntrons.get(startIndex).add(intron);
-                        } else organizedIntrons.get(startIndex).add(intron);
-                    }
-                    end5 = end3;
-                }
+    public static void stream(String inputFilePath, GeneSelection selection, ESSEWriter writer) throws IOException {
+        stream(inputFilePath, selection, writer, PhaseMetrics.NONE);
+    }
 
-                Collections.sort(startingPositions);
-                transcript.setIntronStartingPositions(startingPositions);
+    /**
+     * @param metrics the genes are processed while the GTF is read, so gtf_stream contains intron_organization
+     *                and es_se_detection; output is the copy of the spooled rows into the table
+     */
+    public static void stream(String inputFilePath, GeneSelection selection, ESSEWriter writer, PhaseMetrics metrics) throws IOException {
+        Path spoolPath = Files.createTempFile("esse", ".spool");
+        try (GeneStream stream = new GeneStream(new ExonSkipping(new Genome(), metrics), spoolPath)) {
+            try (PhaseMetrics.Timer timer = metrics.start("gtf_stream")) {
+                if (selection != null && !selection.isEmpty()) {
+                    GTFIndex.read(inputFilePath, selection, stream);
+                } else {
+                    MappedGTFReader.read(inputFilePath, stream);
+                }
+                stream.finish();
+                timer.addItems(stream.getNumGenes());
             }
-
-            gene.setAllIntrons(introns);
-            gene.setOrganizedIntrons(organizedIntrons);
-
+            try (PhaseMetrics.Timer output = metrics.start("output")) {
+                stream.writeSorted(writer);
+                output.addItems(writer.getNumEvents());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            Files.deleteIfExists(spoolPath);
         }
+    }
 
-        return this.ES_SE();
+    private void writeSnapshot(AnnotationSnapshot snapshot) {
+        try (AnnotationSnapshot.Writer writer = snapshot.create()) {
+            GenomeSnapshot.write(genome, writer);
+            writer.commit();
+        } catch (IOException e) {
+            System.err.println("Could not write snapshot " + snapshot.getSnapshotPath() + ": " + e.getMessage());
+        }
     }
 
+    private void readParallel(String inputFilePath, int threads) throws IOException {
+        long[] boundaries = MappedGTFReader.splitAtLines(inputFilePath, threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            ArrayList<Future<CDSCollector>> chunks = new ArrayList<>();
+            for (int i = 0; i < boundaries.length - 1; i++) {
+                long from = boundaries[i];
+                long to = boundaries[i + 1];
+                chunks.add(executor.submit(() -> {
+                    PhaseMetrics.Timer timer = metrics.start("gtf_parse");
+                    try {
+                        CDSCollector collector = new CDSCollector(new Genome());
+                        MappedGTFReader.read(inputFilePath, from, to, collector);
+                        return collector;
+                    } finally {
+                        timer.close();
+                    }
+                }));
+            }
+
+            // merge in file order => same genes, transcripts and CDS as a sequential read
+            CDSCollector merged = new CDSCollector(genome);
+            for (Future<CDSCollector> chunk : chunks) {
+                CDSCollector collector = chunk.get();
+                PhaseMetrics.Timer timer = metrics.start("gtf_parse");
+                try {
+                    collector.mergeInto(merged);
+                } finally {
+                    timer.close();
+                }
+            }
+            try (PhaseMetrics.Timer timer = metrics.start("gtf_parse")) {
+                merged.finish();
+                timer.addItems(genome.getAllGenes().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Reading " + inputFilePath + " was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error while reading " + inputFilePath, e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
 
     /**
-     * Uses the data structure with organized introns;
-     * Has a list with all introns gro gene;
-     * Iterate through all genes and build output
+     * For each gene define all introns by iterating each transcript in the gene
+     * @return the ES-SE string
      */
-    private String ES_SE() {
-        genome.getAllGenes().forEach(gene -> {
-
-            List<Intron> uncheckedIntrons = gene.getAllIntrons().stream()
-                    .filter(intron -> !intron.getChecked())
-                    .toList();
+    public String defineAndOrganizeIntrons() {
+        return defineAndOrganizeIntrons(1);
+    }
 
-            uncheckedIntrons.forEach(intron -> processIntron(gene, intron));
-        });
+    /**
+     * Genes are independent of each other, so with threads > 1 they are processed in parallel.
+     * Each gene collects its events in its own list; the lists are concatenated in genomic order
+     * (chromosome, gene start, gene id), so the output is the same for every number of threads.
+     * @return the ES-SE string
+     */
+    public String defineAndOrganizeIntrons(int threads) {
+        processGenesInOrder(threads, this::processGene, genome.getExonSpliceEvents()::addAll);
 
-        String output = "id\tsymbol\tchr\tstrand\tnprots\tntrans\tSV\tWT\tWT_prots\tSV_prots\tmin_skipped_exon\tmax_skipped_exon\tmin_skipped_bases\tmax_skipped_bases\n"
+        return ESSEWriter.HEADER
                 + genome.getExonSpliceEvents().stream()
                 .map(ES_SE::toString)
                 .collect(Collectors.joining("\n"));
-
-        return output;
     }
 
-    private void processIntron(Gene gene, Intron intron) {
-        if (intron.getChecked()) return;
-
-        int SVIntervalStart = intron.getStartGenomic();
-        int SVIntervalEnd = intron.getEndGenomic();
-
-        ArrayList<Intron> SV = new ArrayList<>();
-        ArrayList<Intron> WT = new ArrayList<>();
-
-        ArrayList<Intron> potentialTranscripts = gene.getOrganizedIntrons().get(SVIntervalStart);
-
-        if (potentialTranscripts.size() == 1) {
-            potentialTranscripts.getFirst().setChecked();
-            return;
-        }
-
-        for (Intron potentialEvent : potentialTranscripts) {
-            if (potentialEvent.getEndGenomic() > SVIntervalEnd) continue;
+    /**
+     * Streaming variant: the events of a gene are written as soon as the gene and all genes before it are done.
+     * They are not kept in Genome.getExonSpliceEvents(), so the table never has to fit into memory as a whole.
+     */
+    public void defineAndOrganizeIntrons(int threads, ESSEWriter writer) throws IOException {
+        writeSpliceEvents(threads, writer, List.of());
+    }
 
-            if (potentialEvent.getEndGenomic() == SVIntervalEnd) {
-                potentialEvent.setChecked();
-                SV.add(potentialEvent);
-            } else {
+    /**
+     * Hand every event to the action, in the order of the table, without keeping them in Genome.getExonSpliceEvents()
+     */
+    public void forEachExonSpliceEvent(int threads, Consumer<ES_SE> action) {
+        processGenesInOrder(threads, this::processGene, events -> events.forEach(action));
+    }
 
-                if(evaluateWT(gene, potentialEvent, SVIntervalEnd)){
-                    WT.add(potentialEvent);
+    /**
+     * All requested event types in one traversal of the splice graph per gene, each type written by its own writer
+     * while the genes are processed (in the order of the ES-SE table)
+     * @param esWriter ES-SE table, null := no ES detection
+     * @param writers tables of the other event types (A5SS, A3SS, MXE, IR)
+     */
+    public void writeSpliceEvents(int threads, ESSEWriter esWriter, Collection<SpliceEventWriter> writers) throws IOException {
+        EnumSet<SpliceEventType> types = EnumSet.noneOf(SpliceEventType.class);
+        if (esWriter != null) types.add(SpliceEventType.ES);
+        for (SpliceEventWriter writer : writers) types.add(writer.getType());
+        SpliceEventDetector detector = new SpliceEventDetector(types, metrics);
+
+        try {
+            processGenesInOrder(threads, detector::detect, events -> {
+                try (PhaseMetrics.Timer output = metrics.start("output")) {
+                    if (esWriter != null) {
+                        esWriter.write(events.getExonSkipping());
+                        output.addItems(events.getExonSkipping().size());
+                    }
+                    for (SpliceEventWriter writer : writers) {
+                        writer.write(events.get(writer.getType()));
+                        output.addItems(events.get(writer.getType()).size());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-            }
-        }
-
-        if (!WT.isEmpty()) {
-            ArrayList<Intron> WT_introns = determineWTIntronsInSVInterval(WT, SVIntervalStart, SVIntervalEnd);
-            recordExonSpliceEvent(gene, SV, WT, WT_introns, SVIntervalStart, SVIntervalEnd);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
 
-    private boolean evaluateWT(Gene gene, Intron potentialIntron, int SV_interval_end){
-        Transcript transcript = potentialIntron.getOriginTranscript();
-        String transcriptID = transcript.getID();
-
-        int index = Collections.binarySearch(transcript.getIntronStartingPositions(), potentialIntron.getStartGenomic());
-        if (index < 0) {
-            System.err.println("STARTING INDEX NOT FOUND!");
-            return false;
+    /**
+     * Run the intron organization and event detection for every gene and hand the result of each gene
+     * to the sink, in genomic order (chromosome, gene start, gene id).
+     * With threads > 1 at most GENES_PER_THREAD * threads genes are submitted ahead of the sink, so the pending
+     * results do not grow with the genome.
+     */
+    private <T> void processGenesInOrder(int threads, Function<Gene, T> process, Consumer<T> sink) {
+        List<Gene> sortedGenes = genome.getAllGenes().stream()
+                .sorted(Comparator.comparing(Gene::getChromosome)
+                        .thenComparingInt(Gene::getStartGenomic)
+                        .thenComparing(Gene::getID))
+                .toList();
+
+        if (threads <= 1) {
+            for (Gene gene : sortedGenes) {
+                sink.accept(process.apply(gene));
+            }
+            return;
         }
 
-        A: while (index < transcript.getIntronStartingPositions().size() && transcript.getIntronStartingPositions().get(index) < SV_interval_end) {
-            int startPosition = transcript.getIntronStartingPositions().get(index);
-            ArrayList<Intron> intronsAtPosition = gene.getOrganizedIntrons().get(startPosition);
-
-            for (Intron candidate : intronsAtPosition) {
-                if (!candidate.getOriginTranscript().getID().equals(transcriptID)) continue;
-
-                // Candidate has the same transcript iD -> happens ones in a gene
-                if (candidate.getEndGenomic() == SV_interval_end) {  // Defines event
-                    return true;
-                } else if (candidate.getEndGenomic() < SV_interval_end) {
-                    index++;
-                    continue A;
-                } else
-                    return false;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            ArrayDeque<CompletableFuture<T>> pending = new ArrayDeque<>();
+            Iterator<Gene> genes = sortedGenes.iterator();
+            while (genes.hasNext() || !pending.isEmpty()) {
+                // the results of the submitted genes are kept until the sink took them => bounded
+                while (genes.hasNext() && pending.size() < GENES_PER_THREAD * threads) {
+                    Gene gene = genes.next();
+                    pending.add(CompletableFuture.supplyAsync(() -> process.apply(gene), pool));
+                }
+                // hand over in order; finished genes further down wait until all genes before them are done
+                sink.accept(pending.poll().join());
             }
-
-            index++;
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Error during splice event detection", e.getCause());
+        } finally {
+            pool.shutdownNow();
         }
-
-        return false;
-    }
-
-    private void recordExonSpliceEvent(Gene gene, ArrayList<Intron> SV, ArrayList<Intron> WT, ArrayList<Intron> WT_introns, int SV_interval_start, int SV_interval_end) {
-        ES_SE event = new ES_SE(gene.getID(), gene.getName(), gene.getChromosome(),
-                gene.getStrandDirection().charAt(0), gene.getN_ports(),
-                gene.getN_trans(), SV, WT, WT_introns);
-
-        int minSkippedExons = calculateSkippedExons(WT, SV_interval_start, SV_interval_end, true);
-        event.setMin_skipped_exon(minSkippedExons);
-        int maxSkippedExons = calculateSkippedExons(WT, SV_interval_start, SV_interval_end, false);
-        event.setMax_skipped_exon(maxSkippedExons);
-        event.setMin_skipped_bases(calculateSkippedBases(WT, SV_interval_start, SV_interval_end, true));
-        event.setMax_skipped_bases(calculateSkippedBases(WT, SV_interval_start, SV_interval_end, false));
-
-        genome.getExonSpliceEvents().add(event);
-    }
-
-    private int calculateSkippedExons(ArrayList<Intron> WTs, int SV_startIndex, int SV_endIndex, boolean isMin) {
-        return WTs.stream()
-                .mapToInt(wt -> {
-                    Transcript transcript = wt.getOriginTranscript();
-                    return (int) transcript.getAllIntrons().stream()
-                            .filter(intron -> intron.getStartGenomic() >= SV_startIndex && intron.getEndGenomic() <= SV_endIndex)
-                            .count() - 1;
-                })
-                .reduce(isMin ? Integer.MAX_VALUE : Integer.MIN_VALUE, isMin ? Integer::min : Integer::max);
-    }
-
-    private int calculateSkippedBases(ArrayList<Intron> WTs, int SV_startIndex, int SV_endIndex, boolean isMin) {
-        return WTs.stream()
-                .mapToInt(wt -> {
-                    Transcript transcript = wt.getOriginTranscript();
-                    // Get filtered introns
-                    List<Intron> filteredIntrons = transcript.getAllIntrons().stream()
-                            .filter(intron -> intron.getStartGenomic() >= SV_startIndex && intron.getEndGenomic() < SV_endIndex)
-                            .toList();
-
-                    // Sum lengths of the CDS at the 3' end
-                    int cdsLengthSum = filteredIntrons.stream()
-                            .mapToInt(intron -> intron.getCds3End().getLength())
-                            .sum();
-
-                    // Count the number of filtered introns
-                    int filteredIntronCount = filteredIntrons.size();
-
-                    // Return the total sum of CDS length + filtered intron count
-                    return cdsLengthSum + filteredIntronCount -1;
-                })
-                .reduce(isMin ? Integer.MAX_VALUE : Integer.MIN_VALUE, isMin ? Integer::min : Integer::max);
     }
 
-    private ArrayList<Intron> determineWTIntronsInSVInterval(ArrayList<Intron> WTs, int SV_startIndex, int SV_endIndex) {
-        Map<String, Intron> uniqueIntronsMap = new HashMap<>();
-
-        WTs.forEach(wt -> {
-            Transcript transcript = wt.getOriginTranscript();
-            transcript.getAllIntrons().stream()
-                    .filter(intron -> intron.getStartGenomic() >= SV_startIndex && intron.getEndGenomic() <= SV_endIndex)
-                    .forEach(intron -> uniqueIntronsMap.put(
-                            intron.getStartGenomic() + ":" + intron.getEndGenomic(),
-                            intron
-                    ));
-        });
-
-        // Return unique introns as a list
-        return new ArrayList<>(uniqueIntronsMap.values());
+    /** ES-SE events of the gene, see SpliceEventDetector */
+    ArrayList<ES_SE> processGene(Gene gene) {
+        return exonSkippingDetector.detect(gene).getExonSkipping();
     }
 
 
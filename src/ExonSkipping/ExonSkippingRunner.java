@@ -1,22 +1,37 @@
 package ExonSkipping;
 
-import BaseComponents.Gene;
-import BaseComponents.Intron;
+import BaseComponents.GeneSelection;
+import BaseComponents.PhaseMetrics;
 import org.apache.commons.cli.*;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumSet;
 
 public class ExonSkippingRunner {
     public static void main(String[] args) {
         Options options = new Options();
         options.addOption("gtf",true, "Input gtf file");
         options.addOption("o",  true, "Input output file path");
+        options.addOption("nosnapshot", false, "Do not use/write the binary snapshot of the parsed GTF");
+        options.addOption("threads", true, "Number of threads for GTF parsing and ES-SE detection (default: 1)");
+        options.addOption("stream", false, "Process the GTF gene by gene (lines of a gene consecutive or sorted by coordinate), memory bounded by the largest gene, plus the interned ids and some 100 bytes per gene with events for sorting the table");
+        options.addOption("region", true, "Only genes overlapping the region chr:start-end (uses the GTF index)");
+        options.addOption("genes", true, "Only the genes listed in the file, one gene id per line (uses the GTF index)");
+        options.addOption("metrics", true, "Write wall/CPU time, allocation and items per phase to the file (.json, or .prom for Prometheus text)");
+        options.addOption("events", true, "Comma-separated event types: es, a5ss, a3ss, mxe, ir or all (default: es)");
         CommandLineParser parser = new BasicParser();
 
         String gtfFilename = "";
         String outputFilename = "";
+        int threads = 1;
+        boolean useSnapshot = true;
+        boolean stream = false;
+        GeneSelection selection = new GeneSelection();  // empty := whole GTF
+        EnumSet<SpliceEventType> types = EnumSet.of(SpliceEventType.ES);
+        String metricsFilename = null;
 
         try {
             CommandLine cmd = parser.parse(options, args);
@@ -28,9 +43,63 @@ public class ExonSkippingRunner {
                 outputFilename = cmd.getOptionValue("o");
             }
 
+            if(cmd.hasOption("threads")){
+                String threadsInput = cmd.getOptionValue("threads");
+                try {
+                    threads = Integer.parseInt(threadsInput);
+                } catch (NumberFormatException e) {
+                    System.err.println("The option -threads requires an integer. Invalid input: " + threadsInput);
+                    System.exit(1);
+                }
+            }
+
+            if(cmd.hasOption("nosnapshot")){
+                useSnapshot = false;
+            }
+
+            if(cmd.hasOption("stream")){
+                stream = true;
+            }
+
+            try {
+                if(cmd.hasOption("region")) selection.setRegion(cmd.getOptionValue("region"));
+                if(cmd.hasOption("genes")) selection.addGeneFile(cmd.getOptionValue("genes"));
+            } catch (IllegalArgumentException | IOException e) {
+                System.err.println("Invalid -region/-genes: " + e.getMessage());
+                System.exit(1);
+            }
+
+            if(cmd.hasOption("metrics")){
+                metricsFilename = cmd.getOptionValue("metrics");
+            }
+
+            if(cmd.hasOption("events")){
+                try {
+                    types.clear();
+                    for (String type : cmd.getOptionValue("events").split(",")) {
+                        if (type.trim().equalsIgnoreCase("all")) types.addAll(EnumSet.allOf(SpliceEventType.class));
+                        else types.add(SpliceEventType.forName(type));
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Invalid -events: " + e.getMessage());
+                    System.exit(1);
+                }
+                if (stream && !types.equals(EnumSet.of(SpliceEventType.ES))) {
+                    System.err.println("-stream only detects ES events, run without -stream for " + cmd.getOptionValue("events"));
+                    System.exit(1);
+                }
+            }
+
             if(!(cmd.hasOption("o") || cmd.hasOption("gtf"))){
                 System.out.println("-gtf <give GTF-file path>" + "\n" +
-                        " -o <output-file path>");
+                        " -o <output-file path>" + "\n" +
+                        " -threads <number of threads, optional>" + "\n" +
+                        " -nosnapshot <optional, always parse the GTF>" + "\n" +
+                        " -region <chr:start-end, optional, only genes overlapping the region>" + "\n" +
+                        " -genes <file with one gene id per line, optional>" + "\n" +
+                        " -events <es,a5ss,a3ss,mxe,ir or all, optional, default es>" + "\n" +
+                        " -metrics <file, optional, per phase metrics as .json or .prom>" + "\n" +
+                        " -stream <optional, gene by gene with bounded memory>");
                 return;
             }
         } catch (ParseException e) {
@@ -39,20 +108,64 @@ public class ExonSkippingRunner {
         }
 
         long startTime = System.currentTimeMillis();
-        ExonSkipping exonSkipping = new ExonSkipping(gtfFilename);
-        String output = exonSkipping.defineAndOrganizeIntrons();
+        PhaseMetrics metrics = metricsFilename != null ? new PhaseMetrics("ExonSkipping") : PhaseMetrics.NONE;
 
-        long endTime = System.currentTimeMillis();
-        long duration = endTime - startTime;
-        System.out.println("Runtime: " + duration + " ms");
+        // events are written while the genes are processed, every type into its own table
+        // (output.txt => output.a5ss.txt, ...); ".gz" output paths are compressed
+        ArrayList<SpliceEventWriter> writers = new ArrayList<>();
+        boolean failed = false;
+        try (ESSEWriter writer = types.contains(SpliceEventType.ES) ? new ESSEWriter(outputFilename) : null) {
+            for (SpliceEventType type : types) {
+                if (type != SpliceEventType.ES) writers.add(new SpliceEventWriter(SpliceEventWriter.outputPath(outputFilename, type), type));
+            }
 
-        try (FileWriter writer = new FileWriter(outputFilename)) {
-            writer.write(output);
+            if (stream) {
+                ExonSkipping.stream(gtfFilename, selection, writer, metrics);
+            } else {
+                ExonSkipping exonSkipping = new ExonSkipping(gtfFilename, threads, useSnapshot, selection, metrics);
+                exonSkipping.writeSpliceEvents(threads, writer, writers);
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            System.err.println("Error: " + e.getMessage());
+            failed = true;
+        } catch (UncheckedIOException e) {  // GTF not readable
+            System.err.println("Error: " + e.getCause());
+            failed = true;
+        } finally {
+            for (SpliceEventWriter writer : writers) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
         }
 
+        if (failed) {
+            // no partial tables, which could be taken for a result
+            try {
+                Files.deleteIfExists(Path.of(outputFilename));
+                for (SpliceEventType type : types) {
+                    if (type != SpliceEventType.ES) Files.deleteIfExists(Path.of(SpliceEventWriter.outputPath(outputFilename, type)));
+                }
+            } catch (IOException e) {
+                System.err.println("Could not delete the partial output: " + e.getMessage());
+            }
+            System.exit(1);
+        }
 
+        long endTime = System.currentTimeMillis();
+        long duration = endTime - startTime;
+        System.out.println("Runtime: " + duration + " ms");
+
+        if (metricsFilename != null) {
+            System.out.print(metrics.summary());
+            try {
+                metrics.write(metricsFilename);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
 }
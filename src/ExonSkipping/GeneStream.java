@@ -0,0 +1,202 @@
+package ExonSkipping;
+
+import BaseComponents.GTFRecord;
+import BaseComponents.Gene;
+import BaseComponents.Genome;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Streaming ES-SE detection (ExonSkipping.stream): every gene is collected in its own small genome.
+ * A gene is complete when a line of another gene starts behind the end of all of its lines so far,
+ * or when the chromosome changes. Then its events are detected, encoded into a spool file and the gene is dropped.
+ * Per gene with events only its position in the spool and its sort key are kept (some 100 bytes), so at the end the
+ * spooled rows are copied in the order of the table (chromosome, gene start, gene id) without holding more than one
+ * gene in memory. The ids of the finished genes (to detect unsorted input) are only kept for the current chromosome;
+ * a gene id on several chromosomes is a gene per chromosome. The ids are still interned into the shared SymbolTables,
+ * which are not shrunk, since other parsers and finished events of this process may refer to their symbols.
+ */
+class GeneStream implements Consumer<GTFRecord>, Closeable {
+    private final ExonSkipping exonSkipping;
+    private final Path spoolPath;
+    private final OutputStream spool;
+    private long spoolSize;
+    private long numGenes;  // processed
+
+    private final LinkedHashMap<String, ActiveGene> activeGenes;
+    private final HashSet<String> finishedGenes;  // on the current chromosome
+    private final ArrayList<SpooledGene> spooledGenes;
+    private String chromosome;
+    private ActiveGene lastGene;
+    private int nextExpiry = Integer.MAX_VALUE;  // smallest end of the active genes; may be too small, ends only grow
+
+    GeneStream(ExonSkipping exonSkipping, Path spoolPath) throws IOException {
+        this.exonSkipping = exonSkipping;
+        this.spoolPath = spoolPath;
+        this.spool = new BufferedOutputStream(Files.newOutputStream(spoolPath), 1 << 16);
+        this.activeGenes = new LinkedHashMap<>();
+        this.finishedGenes = new HashSet<>();
+        this.spooledGenes = new ArrayList<>();
+    }
+
+    @Override
+    public void accept(GTFRecord record) {
+        if (chromosome == null || !record.columnEquals(GTFRecord.CHROMOSOME, chromosome)) {
+            finish();
+            startChromosome(record.getChromosome());
+        }
+
+        // consecutive lines mostly belong to the same gene => no id String needed
+        ActiveGene gene = lastGene;
+        if (gene == null || !record.attributeEquals("gene_id", gene.id)) {
+            String id = record.getGeneID();
+            gene = activeGenes.get(id);
+            if (gene == null) {
+                if (finishedGenes.contains(id)) {
+                    throw new UncheckedIOException(new IOException("Gene " + id + " continues at byte " + record.getOffset()
+                            + " after it was finished; the GTF is not sorted by gene or coordinate, run without -stream"));
+                }
+                gene = new ActiveGene(id);
+                activeGenes.put(id, gene);
+            }
+            lastGene = gene;
+        }
+
+        int start = record.getStart();
+        gene.end = Math.max(gene.end, record.getEnd());
+        nextExpiry = Math.min(nextExpiry, gene.end);
+        gene.collector.accept(record);
+
+        if (start > nextExpiry) finishEndingBefore(start);
+    }
+
+    /** the genes of the previous chromosome are spooled => their ids are not needed anymore */
+    private void startChromosome(String chromosome) {
+        finishedGenes.clear();
+        this.chromosome = chromosome;
+    }
+
+    /** finish the genes whose lines all end before the position; the gene of the current line is never one of them */
+    private void finishEndingBefore(int position) {
+        nextExpiry = Integer.MAX_VALUE;
+        Iterator<ActiveGene> genes = activeGenes.values().iterator();
+        while (genes.hasNext()) {
+            ActiveGene gene = genes.next();
+            if (gene.end < position) {
+                genes.remove();
+                process(gene);
+            } else {
+                nextExpiry = Math.min(nextExpiry, gene.end);
+            }
+        }
+    }
+
+    /** finish all active genes (end of the chromosome or of the file) */
+    void finish() {
+        for (ActiveGene gene : activeGenes.values()) {
+            process(gene);
+        }
+        activeGenes.clear();
+        nextExpiry = Integer.MAX_VALUE;
+    }
+
+    private void process(ActiveGene activeGene) {
+        finishedGenes.add(activeGene.id);
+        if (lastGene == activeGene) lastGene = null;
+
+        activeGene.collector.finish();
+        for (Gene gene : activeGene.genome.getAllGenes()) {
+            numGenes++;
+            gene.setN_ports(gene.getAllTranscripts().size());
+            gene.setN_trans(gene.getAllTranscripts().size());
+
+            ArrayList<ES_SE> events = exonSkipping.processGene(gene);
+            if (events.isEmpty()) continue;
+
+            StringBuilder rows = new StringBuilder();
+            for (ES_SE event : events) {
+                event.appendTo(rows).append('\n');
+            }
+            byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+            try {
+                spool.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            spooledGenes.add(new SpooledGene(gene.getChromosome(), gene.getStartGenomic(), gene.getID(),
+                    spoolSize, bytes.length, events.size()));
+            spoolSize += bytes.length;
+        }
+    }
+
+    /** copy the spooled rows into the table, in the order of the other modes */
+    void writeSorted(ESSEWriter writer) throws IOException {
+        spool.flush();
+        spooledGenes.sort(Comparator.comparing((SpooledGene gene) -> gene.chromosome)
+                .thenComparingInt(gene -> gene.start)
+                .thenComparing(gene -> gene.id));
+
+        try (FileChannel channel = FileChannel.open(spoolPath, StandardOpenOption.READ)) {
+            for (SpooledGene gene : spooledGenes) {
+                ByteBuffer rows = ByteBuffer.allocate(gene.length);
+                while (rows.hasRemaining()) {
+                    if (channel.read(rows, gene.offset + rows.position()) < 0) throw new EOFException("Truncated spool file");
+                }
+                writer.writeEncoded(rows.array(), gene.length - 1, gene.numEvents);  // without the last '\n'
+            }
+        }
+    }
+
+    long getNumGenes() {
+        return numGenes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        spool.close();
+    }
+
+
+    /** gene whose lines are still being read */
+    private static class ActiveGene {
+        private final String id;
+        private final Genome genome;
+        private final CDSCollector collector;
+        private int end;
+
+        private ActiveGene(String id) {
+            this.id = id;
+            this.genome = new Genome();
+            this.collector = new CDSCollector(genome);
+        }
+    }
+
+
+    /** sort key and position of the encoded rows of a processed gene */
+    private static class SpooledGene {
+        private final String chromosome;
+        private final int start;
+        private final String id;
+        private final long offset;
+        private final int length;
+        private final int numEvents;
+
+        private SpooledGene(String chromosome, int start, String id, long offset, int length, int numEvents) {
+            this.chromosome = chromosome;
+            this.start = start;
+            this.id = id;
+            this.offset = offset;
+            this.length = length;
+            this.numEvents = numEvents;
+        }
+    }
+}
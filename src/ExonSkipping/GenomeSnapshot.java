@@ -0,0 +1,68 @@
+package ExonSkipping;
+
+import BaseComponents.*;
+
+import java.io.IOException;
+
+/**
+ * Payload of the CDS snapshot: genes with their transcripts and CDS, in the order they were parsed
+ */
+public abstract class GenomeSnapshot {
+
+    public static void write(Genome genome, AnnotationSnapshot.Writer writer) throws IOException {
+        writer.writeInt(genome.getAllGenes().size());
+        for (Gene gene : genome.getAllGenes()) {
+            writer.writeString(gene.getID());
+            writer.writeString(gene.getName());
+            writer.writeString(gene.getChromosome());
+            writer.writeString(gene.getStrandDirection());
+
+            writer.writeInt(gene.getAllTranscripts().size());
+            for (Transcript transcript : gene.getAllTranscripts()) {
+                writer.writeString(transcript.getID());
+                writer.writeString(transcript.getName());
+
+                writer.writeInt(transcript.getNumCDS());
+                for (int c = 0; c < transcript.getNumCDS(); c++) {
+                    writer.writeString(transcript.getProteinID(c));
+                    writer.writeInt(transcript.getCDSStart(c));
+                    writer.writeInt(transcript.getCDSEnd(c));
+                }
+            }
+        }
+    }
+
+    public static Genome read(AnnotationSnapshot.Reader reader) {
+        Genome genome = new Genome();
+
+        int numGenes = reader.readInt();
+        for (int g = 0; g < numGenes; g++) {
+            String geneID = reader.readString();
+            String geneName = reader.readString();
+            Gene gene = new Gene(reader.readString(), reader.readString());
+            gene.setID(geneID);
+            gene.setName(geneName);
+
+            int numTranscripts = reader.readInt();
+            for (int t = 0; t < numTranscripts; t++) {
+                String transcriptID = reader.readString();
+                Transcript.Builder builder = new Transcript.Builder(transcriptID, reader.readString());
+
+                int numCDS = reader.readInt();
+                for (int c = 0; c < numCDS; c++) {
+                    String cdsID = reader.readString();
+                    builder.addCDS(reader.readInt(), reader.readInt(), cdsID);
+                }
+                Transcript transcript = builder.build();
+
+                gene.addTranscript(transcript);
+                genome.getId2transcript().put(transcriptID, transcript);
+            }
+
+            genome.getId2Gene().put(geneID, gene);
+            genome.addGene(gene);
+        }
+
+        return genome;
+    }
+}
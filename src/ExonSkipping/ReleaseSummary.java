@@ -0,0 +1,155 @@
+package ExonSkipping;
+
+import BaseComponents.Histogram;
+import BaseComponents.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * What ReportPlots keeps of one analyzed GTF release: a compact copy of every ES-SE event (for the plots and the diff
+ * between releases) and the streaming histograms of the max skipped exons/bases, from which the plots are drawn.
+ * The genome and the ES_SE objects are dropped as soon as the summary is built.
+ */
+public class ReleaseSummary {
+    private static final int EXON_BINS = 200;  // one bin per number of skipped exons, more in the overflow bin
+    private static final int BASE_BINS_PER_DECADE = 20;
+
+    private final String name;
+    private final ArrayList<EventSummary> events;  // in the order of the ES-SE table
+    private final Histogram maxSkippedExonsHistogram;
+    private final Histogram maxSkippedBasesHistogram;
+
+    public ReleaseSummary(String name) {
+        this.name = name;
+        this.events = new ArrayList<>();
+        this.maxSkippedExonsHistogram = Histogram.fixed(0, 1, EXON_BINS);
+        this.maxSkippedBasesHistogram = Histogram.logarithmic(BASE_BINS_PER_DECADE);
+    }
+
+    public void add(ES_SE event) {
+        EventSummary summary = new EventSummary(event);
+        events.add(summary);
+        maxSkippedExonsHistogram.add(summary.maxSkippedExons);
+        maxSkippedBasesHistogram.add(summary.maxSkippedBases);
+    }
+
+
+    /** key of the hash join between releases: gene and SV intron */
+    public static final class EventKey {
+        private final int gene;  // SymbolTable.GENE_IDS, the same for all releases
+        private final long svIntron;
+
+        public EventKey(int gene, long svIntron) {
+            this.gene = gene;
+            this.svIntron = svIntron;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EventKey other && gene == other.gene && svIntron == other.svIntron;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(gene, svIntron);
+        }
+    }
+
+
+    /** one ES-SE event without references to the genome */
+    public static class EventSummary {
+        private final int gene;
+        private final String symbol;
+        private final long svIntron;
+        private final long[] wtIntrons;
+        private final int minSkippedExons;
+        private final int maxSkippedExons;
+        private final int minSkippedBases;
+        private final int maxSkippedBases;
+
+        private EventSummary(ES_SE event) {
+            this.gene = event.getIDSymbol();
+            this.symbol = event.getSymbol();
+            this.svIntron = event.getSVIntron();
+            this.wtIntrons = event.getWTIntrons();
+            this.minSkippedExons = event.getMin_skipped_exon();
+            this.maxSkippedExons = event.getMax_skipped_exon();
+            this.minSkippedBases = event.getMin_skipped_bases();
+            this.maxSkippedBases = event.getMax_skipped_bases();
+        }
+
+        public EventKey getKey() {
+            return new EventKey(gene, svIntron);
+        }
+
+        /** same event in another release, but with other WT introns or other skipped exons/bases */
+        public boolean differsFrom(EventSummary other) {
+            return minSkippedExons != other.minSkippedExons || maxSkippedExons != other.maxSkippedExons
+                    || minSkippedBases != other.minSkippedBases || maxSkippedBases != other.maxSkippedBases
+                    || !Arrays.equals(wtIntrons, other.wtIntrons);
+        }
+
+        public String getID() {
+            return SymbolTable.GENE_IDS.resolve(gene);
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        /** @return SV intron as in the ES-SE table (start:end) */
+        public String getSV() {
+            return formatIntron(svIntron);
+        }
+
+        /** @return WT introns as in the ES-SE table (start:end|start:end...) */
+        public String getWT() {
+            StringBuilder wt = new StringBuilder();
+            for (int i = 0; i < wtIntrons.length; i++) {
+                if (i > 0) wt.append('|');
+                wt.append(formatIntron(wtIntrons[i]));
+            }
+            return wt.toString();
+        }
+
+        private static String formatIntron(long intron) {
+            return ((int) (intron >>> 32) + 1) + ":" + (int) intron;
+        }
+
+        public int getMinSkippedExons() {
+            return minSkippedExons;
+        }
+
+        public int getMaxSkippedExons() {
+            return maxSkippedExons;
+        }
+
+        public int getMinSkippedBases() {
+            return minSkippedBases;
+        }
+
+        public int getMaxSkippedBases() {
+            return maxSkippedBases;
+        }
+    }
+
+
+    // Getter and Setter
+    public String getName() {
+        return name;
+    }
+
+    public ArrayList<EventSummary> getEvents() {
+        return events;
+    }
+
+    public Histogram getMaxSkippedExonsHistogram() {
+        return maxSkippedExonsHistogram;
+    }
+
+    public Histogram getMaxSkippedBasesHistogram() {
+        return maxSkippedBasesHistogram;
+    }
+}
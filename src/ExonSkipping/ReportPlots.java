@@ -1,131 +1,335 @@
 package ExonSkipping;
 
-import BaseComponents.Intron;
-import BaseComponents.Utils;
+import BaseComponents.Histogram;
+import BaseComponents.TopK;
+import org.apache.commons.cli.*;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.io.FileWriter;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
 
+/**
+ * Compares the ES-SE events of N GTF releases.
+ * The releases are analyzed concurrently; each one holds a part of a shared memory budget (estimated from the file size)
+ * while its genome is in memory, afterwards only its ReleaseSummary is kept. The ids of a release stay in the global
+ * SymbolTables (the summaries refer to them), so their estimate is taken off the budget up front, for every release.
+ * A release whose GTF cannot be read fails the whole comparison.
+ * Output (in -o): histogram_exons.csv / histogram_bases.csv (binned max skipped exons/bases per release, used by the plots),
+ * statistics.csv (quantiles computed from the histograms), releases.txt and diff.tsv with the new, lost and changed
+ * events between consecutive releases.
+ */
 public class ReportPlots {
+    private static final String[] DEFAULT_GTFS = {
+            "src/ExonSkipping/data/Homo_sapiens.GRCh37.67.gtf",
+            "src/ExonSkipping/data/Homo_sapiens.GRCh37.75.gtf"
+    };
+    // rough heap need per byte of (uncompressed) GTF while a release is analyzed
+    private static final double HEAP_PER_GTF_BYTE = 0.5;
+    // rough heap need per byte of (uncompressed) GTF of its interned ids, kept after the analysis (~110 bytes per id)
+    private static final double SYMBOLS_PER_GTF_BYTE = 0.06;
+    private static final int COMPRESSION_RATIO = 10;
+
     public static void main(String[] args) {
-        String[] GTFs = {
-                "src/ExonSkipping/data/Homo_sapiens.GRCh37.67.gtf",
-                "src/ExonSkipping/data/Homo_sapiens.GRCh37.75.gtf"
-        };
-
-        ArrayList<Integer>[] maxSkippedExons = new ArrayList[GTFs.length];
-        for(int i = 0; i < GTFs.length; i++){
-            maxSkippedExons[i] = new ArrayList<>();
+        Options options = new Options();
+        options.addOption("gtf", true, "Comma-separated GTF files, oldest release first (further files can follow as arguments)");
+        options.addOption("names", true, "Comma-separated release names (default: file names)");
+        options.addOption("o", true, "Output directory for the tables (default: src/ExonSkipping/data)");
+        options.addOption("plots", true, "Output directory for the plots (default: src/ExonSkipping/plots)");
+        options.addOption("threads", true, "Number of releases analyzed at the same time (default: number of releases)");
+        options.addOption("memory", true, "Memory budget in MB for the releases in progress (default: 3/4 of the max heap)");
+        options.addOption("nosnapshot", false, "Do not use/write the binary snapshots of the parsed GTFs");
+        options.addOption("noplot", false, "Only write the tables, do not run the Python plots");
+        CommandLineParser parser = new BasicParser();
+
+        List<String> gtfs = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        String outputDirectory = "src/ExonSkipping/data";
+        String plotDirectory = "src/ExonSkipping/plots";
+        int threads = 0;
+        long memoryMB = Runtime.getRuntime().maxMemory() / (1 << 20) * 3 / 4;
+        boolean useSnapshot = true;
+        boolean plot = true;
+
+        try {
+            CommandLine cmd = parser.parse(options, args);
+            if (cmd.hasOption("gtf")) gtfs.addAll(Arrays.asList(cmd.getOptionValue("gtf").split(",")));
+            gtfs.addAll(cmd.getArgList());
+            if (gtfs.isEmpty()) gtfs.addAll(Arrays.asList(DEFAULT_GTFS));
+
+            if (cmd.hasOption("names")) names.addAll(Arrays.asList(cmd.getOptionValue("names").split(",")));
+            if (cmd.hasOption("o")) outputDirectory = cmd.getOptionValue("o");
+            if (cmd.hasOption("plots")) plotDirectory = cmd.getOptionValue("plots");
+            if (cmd.hasOption("nosnapshot")) useSnapshot = false;
+            if (cmd.hasOption("noplot")) plot = false;
+
+            try {
+                if (cmd.hasOption("threads")) threads = Integer.parseInt(cmd.getOptionValue("threads"));
+                if (cmd.hasOption("memory")) memoryMB = Long.parseLong(cmd.getOptionValue("memory"));
+            } catch (NumberFormatException e) {
+                System.err.println("The options -threads and -memory require an integer.");
+                System.exit(1);
+            }
+        } catch (ParseException e) {
+            System.err.println("Error parsing command line arguments!");
+            return;
         }
-        ArrayList<Integer>[] maxSkippedBases = new ArrayList[GTFs.length];
-        for(int i = 0; i < GTFs.length; i++){
-            maxSkippedBases[i] = new ArrayList<>();
+
+        for (int i = names.size(); i < gtfs.size(); i++) {
+            names.add(releaseName(gtfs.get(i)));
+        }
+        if (threads <= 0) threads = gtfs.size();
+
+        long startTime = System.currentTimeMillis();
+        List<ReleaseSummary> releases = analyze(gtfs, names, threads, memoryMB, useSnapshot);
+        if (releases == null) System.exit(1);
+
+        new File(outputDirectory).mkdirs();
+        writeReleases(releases, outputDirectory + "/releases.txt");
+        writeHistograms(releases, true, outputDirectory + "/histogram_exons.csv");
+        writeHistograms(releases, false, outputDirectory + "/histogram_bases.csv");
+        writeStatistics(releases, outputDirectory + "/statistics.csv");
+        writeDiff(releases, outputDirectory + "/diff.tsv");
+        System.out.println("Runtime: " + (System.currentTimeMillis() - startTime) + " ms");
+
+        // call python program on the saved histograms; plots for distribution of max skipped exons and bases
+        if (plot) {
+            try {
+                ProcessBuilder pb = new ProcessBuilder("python", "src/ExonSkipping/plot_max_exon_bases_data.py", outputDirectory, plotDirectory);
+                pb.inheritIO();  // This will allow you to see any output or errors from the Python script
+                Process process = pb.start();
+                int exitCode = process.waitFor();  // Wait for the script to finish
+                if (exitCode == 0) {
+                    System.out.println("Plot generated successfully.");
+                } else {
+                    System.out.println("Error: Python script did not run successfully.");
+                }
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+            }
         }
 
+        printTopGenes(releases);
+    }
 
-        int gtfCounter = 0;
-        ArrayList<ES_SE> allEvents = new ArrayList<>();
+    /**
+     * Parse the GTFs and detect their events concurrently, at most `threads` at a time and
+     * only as many as fit into the memory budget
+     * @return the summaries in the order of the GTFs, null if one of them failed
+     */
+    public static List<ReleaseSummary> analyze(List<String> gtfs, List<String> names, int threads, long memoryMB, boolean useSnapshot) {
+        // ids shared by the releases are counted for each of them => on the safe side
+        long symbolsMB = 0;
+        for (String gtf : gtfs) symbolsMB += estimateMemoryMB(gtf, SYMBOLS_PER_GTF_BYTE);
+        int budget = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryMB - symbolsMB));
+        Semaphore memory = new Semaphore(budget, true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
 
-        for(String inputFilePath : GTFs) {
-            // run all files and define ES-SE
-            ExonSkipping exonSkipping = new ExonSkipping(inputFilePath);
-            exonSkipping.defineAndOrganizeIntrons();
+        try {
+            ArrayList<Future<ReleaseSummary>> futures = new ArrayList<>();
+            for (int i = 0; i < gtfs.size(); i++) {
+                String gtf = gtfs.get(i);
+                String name = names.get(i);
+                int permits = (int) Math.min(budget, estimateMemoryMB(gtf, HEAP_PER_GTF_BYTE));
 
-            for(ES_SE event: exonSkipping.getGenome().getExonSpliceEvents()){
-                maxSkippedExons[gtfCounter].add(event.getMax_skipped_exon());
-                maxSkippedBases[gtfCounter].add(event.getMax_skipped_bases());
+                futures.add(executor.submit(() -> {
+                    memory.acquire(permits);
+                    try {
+                        ExonSkipping exonSkipping;
+                        try {
+                            exonSkipping = new ExonSkipping(gtf, 1, useSnapshot);
+                        } catch (UncheckedIOException e) {
+                            // an empty genome would show up as all genes lost in diff.tsv
+                            throw new IOException("Release " + name + ": cannot read " + gtf + " (" + e.getCause() + ")", e.getCause());
+                        }
+                        ReleaseSummary summary = new ReleaseSummary(name);
+                        exonSkipping.forEachExonSpliceEvent(1, summary::add);
+                        System.out.println(name + ": " + summary.getEvents().size() + " ES-SE events");
+                        return summary;
+                    } finally {
+                        memory.release(permits);
+                    }
+                }));
             }
 
-            gtfCounter++;
+            ArrayList<ReleaseSummary> releases = new ArrayList<>();
+            for (Future<ReleaseSummary> future : futures) {
+                releases.add(future.get());
+            }
+            return releases;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) System.err.println("Error: " + e.getCause().getMessage());
+            else e.getCause().printStackTrace();
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            // Genes test
-            allEvents.addAll(exonSkipping.getGenome().getExonSpliceEvents());
+    private static long estimateMemoryMB(String gtf, double bytesPerGTFByte) {
+        try {
+            double size = Files.size(Path.of(gtf));
+            if (gtf.endsWith(".gz") || gtf.endsWith(".bgz")) size *= COMPRESSION_RATIO;
+            return Math.max(1, (long) (size * bytesPerGTFByte) >> 20);
+        } catch (IOException e) {
+            return 1;  // ExonSkipping reports the missing file
         }
+    }
 
+    /** Homo_sapiens.GRCh37.75.gtf.gz => Homo_sapiens.GRCh37.75 */
+    private static String releaseName(String gtf) {
+        String name = Path.of(gtf).getFileName().toString();
+        for (String suffix : new String[]{".gz", ".bgz", ".gtf"}) {
+            if (name.endsWith(suffix)) name = name.substring(0, name.length() - suffix.length());
+        }
+        return name;
+    }
 
-        // max skipped exons writer
-        try (FileWriter writer = new FileWriter("src/ExonSkipping/data/exons.csv")) {
-            for (ArrayList<Integer> valuesPerFile : maxSkippedExons) {
-                StringBuilder line = new StringBuilder();
-                for(Integer i: valuesPerFile){
-                    line.append(i).append(",");
-                }
-                if(line.isEmpty()) writer.write("0");
-                else line.deleteCharAt(line.length()-1);
-                writer.write(line + "\n");
+    private static void writeReleases(List<ReleaseSummary> releases, String path) {
+        try (FileWriter writer = new FileWriter(path)) {
+            for (ReleaseSummary release : releases) {
+                writer.write(release.getName() + "\n");
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
+    }
 
-        // max skipped bases writer
-        try (FileWriter writer = new FileWriter("src/ExonSkipping/data/bases.csv")) {
-            for (ArrayList<Integer> valuesPerFile : maxSkippedBases) {
-                StringBuilder line = new StringBuilder();
-                for(Integer i: valuesPerFile){
-                    line.append(i).append(",");
-                }
-                if(line.isEmpty()) writer.write("0");
-                else line.deleteCharAt(line.length()-1);
-                writer.write(line + "\n");
+    /** rows: release,bin_start,bin_end,count (bin_end exclusive, only non-empty bins) */
+    private static void writeHistograms(List<ReleaseSummary> releases, boolean exons, String path) {
+        try (FileWriter writer = new FileWriter(path)) {
+            writer.write("release,bin_start,bin_end,count\n");
+            for (ReleaseSummary release : releases) {
+                Histogram histogram = exons ? release.getMaxSkippedExonsHistogram() : release.getMaxSkippedBasesHistogram();
+                histogram.writeTable(release.getName(), writer);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
+    }
 
-        // call python program on the saved values - line 1: plot for distribution of max skipped exons, line 2: -||- bases
-        try {
-            ProcessBuilder pb = new ProcessBuilder("python", "src/ExonSkipping/plot_max_exon_bases_data.py");
-            pb.inheritIO();  // This will allow you to see any output or errors from the Python script
-            Process process = pb.start();
-            int exitCode = process.waitFor();  // Wait for the script to finish
-            if (exitCode == 0) {
-                System.out.println("Plot generated successfully.");
-            } else {
-                System.out.println("Error: Python script did not run successfully.");
+    /** summary statistics of the max skipped exons/bases per release, for the table next to the plots */
+    private static void writeStatistics(List<ReleaseSummary> releases, String path) {
+        try (FileWriter writer = new FileWriter(path)) {
+            writer.write("release,metric,count,mean,median,lq,uq,iqr,min,max\n");
+            for (ReleaseSummary release : releases) {
+                writeStatistics(writer, release.getName(), "exons", release.getMaxSkippedExonsHistogram());
+                writeStatistics(writer, release.getName(), "bases", release.getMaxSkippedBasesHistogram());
             }
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
+    }
 
-        // Determine top 10 genes
-        // Step 1: map each GeneID to an Integer[]
-        HashMap<String, Integer[]> geneId2numMaxExons = new HashMap<>();
-
-        for(ES_SE event: allEvents){
-            if(!geneId2numMaxExons.containsKey(event.getID())){
-                geneId2numMaxExons.put(event.getID(), new Integer[]{event.getMax_skipped_exon(), event.getMin_skipped_bases()});
-            } else {
-                Integer[] oldValues = geneId2numMaxExons.get(event.getID());
-                geneId2numMaxExons.get(event.getID())[0] = oldValues[0] + event.getMax_skipped_exon();
-                geneId2numMaxExons.get(event.getID())[1] = oldValues[1] + event.getMin_skipped_bases();
-            }
+    private static void writeStatistics(FileWriter writer, String release, String metric, Histogram histogram) throws IOException {
+        if (histogram.getCount() == 0) {
+            writer.write(release + "," + metric + ",0,0,0,0,0,0,0,0\n");
+            return;
         }
+        double lq = histogram.quantile(0.25);
+        double uq = histogram.quantile(0.75);
+        writer.write(String.format(Locale.ROOT, "%s,%s,%d,%.2f,%.2f,%.2f,%.2f,%.2f,%d,%d\n", release, metric,
+                histogram.getCount(), histogram.getMean(), histogram.quantile(0.5), lq, uq, uq - lq,
+                histogram.getMin(), histogram.getMax()));
+    }
+
+    /**
+     * Events of consecutive releases, joined on gene id and SV intron:
+     * the older release is put into a hash table, the newer one probes it
+     */
+    private static void writeDiff(List<ReleaseSummary> releases, String path) {
+        try (FileWriter writer = new FileWriter(path)) {
+            writer.write("from\tto\tstatus\tid\tsymbol\tSV\tWT_from\tWT_to\tskipped_exons_from\tskipped_exons_to\tskipped_bases_from\tskipped_bases_to\n");
+
+            for (int i = 1; i < releases.size(); i++) {
+                ReleaseSummary older = releases.get(i - 1);
+                ReleaseSummary newer = releases.get(i);
 
-        List<Map.Entry<String, Integer[]>> entryList = new ArrayList<>(geneId2numMaxExons.entrySet());
+                // build
+                LinkedHashMap<ReleaseSummary.EventKey, ReleaseSummary.EventSummary> olderEvents = new LinkedHashMap<>();
+                for (ReleaseSummary.EventSummary event : older.getEvents()) {
+                    olderEvents.putIfAbsent(event.getKey(), event);
+                }
+
+                // probe
+                int numNew = 0;
+                int numChanged = 0;
+                for (ReleaseSummary.EventSummary event : newer.getEvents()) {
+                    ReleaseSummary.EventSummary before = olderEvents.remove(event.getKey());
+                    if (before == null) {
+                        writeDiffLine(writer, older, newer, "new", null, event);
+                        numNew++;
+                    } else if (before.differsFrom(event)) {
+                        writeDiffLine(writer, older, newer, "changed", before, event);
+                        numChanged++;
+                    }
+                }
 
-        // Step 2: Sort the list by the two integers in Integer[] in descending order
-        entryList.sort((e1, e2) -> {
-            Integer[] values1 = e1.getValue();
-            Integer[] values2 = e2.getValue();
+                // not probed => lost
+                for (ReleaseSummary.EventSummary event : olderEvents.values()) {
+                    writeDiffLine(writer, older, newer, "lost", event, null);
+                }
 
-            // Compare by the first value in descending order
-            int compareFirst = values2[0].compareTo(values1[0]);
-            if (compareFirst != 0) {
-                return compareFirst;
+                System.out.println(older.getName() + " -> " + newer.getName() + ": " + numNew + " new, "
+                        + olderEvents.size() + " lost, " + numChanged + " changed");
             }
-            // If the first values are equal, compare by the second value in descending order
-            return values2[1].compareTo(values1[1]);
-        });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-        // Step 3: Print the first 10 entries
-        System.out.println("Top 10 genes:");
-        entryList.stream()
-                .limit(10)
-                .forEach(entry -> System.out.println(entry.getKey() + " => " + Arrays.toString(entry.getValue())));
+    private static void writeDiffLine(FileWriter writer, ReleaseSummary older, ReleaseSummary newer, String status,
+                                      ReleaseSummary.EventSummary before, ReleaseSummary.EventSummary after) throws IOException {
+        ReleaseSummary.EventSummary event = after != null ? after : before;
+        writer.write(older.getName() + "\t" + newer.getName() + "\t" + status + "\t" + event.getID() + "\t"
+                + event.getSymbol() + "\t" + event.getSV() + "\t"
+                + (before != null ? before.getWT() : ".") + "\t" + (after != null ? after.getWT() : ".") + "\t"
+                + skippedExons(before) + "\t" + skippedExons(after) + "\t"
+                + skippedBases(before) + "\t" + skippedBases(after) + "\n");
+    }
 
+    /** min-max, as in the ES-SE table */
+    private static String skippedExons(ReleaseSummary.EventSummary event) {
+        return event == null ? "." : event.getMinSkippedExons() + "-" + event.getMaxSkippedExons();
     }
 
+    private static String skippedBases(ReleaseSummary.EventSummary event) {
+        return event == null ? "." : (event.getMinSkippedBases() + 1) + "-" + (event.getMaxSkippedBases() + 1);
+    }
+
+    /** Determine top 10 genes over all releases (sum of max skipped exons, then of min skipped bases) */
+    private static void printTopGenes(List<ReleaseSummary> releases) {
+        // Step 1: map each GeneID to its sums
+        HashMap<String, int[]> geneId2numMaxExons = new HashMap<>();
+        for (ReleaseSummary release : releases) {
+            for (ReleaseSummary.EventSummary event : release.getEvents()) {
+                int[] values = geneId2numMaxExons.computeIfAbsent(event.getID(), id -> new int[2]);
+                values[0] += event.getMaxSkippedExons();
+                values[1] += event.getMinSkippedBases();
+            }
+        }
+
+        // Step 2: keep the 10 largest in a bounded heap instead of sorting all genes
+        Comparator<Map.Entry<String, int[]>> byValues = Comparator
+                .comparingInt((Map.Entry<String, int[]> entry) -> entry.getValue()[0])
+                .thenComparingInt(entry -> entry.getValue()[1])
+                .thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+        TopK<Map.Entry<String, int[]>> top = new TopK<>(10, byValues);
+        for (Map.Entry<String, int[]> entry : geneId2numMaxExons.entrySet()) {
+            top.offer(entry);
+        }
+
+        // Step 3: Print them
+        System.out.println("Top 10 genes:");
+        for (Map.Entry<String, int[]> entry : top.getSorted()) {
+            System.out.println(entry.getKey() + " => " + Arrays.toString(entry.getValue()));
+        }
+    }
 }
@@ -0,0 +1,138 @@
+package ExonSkipping;
+
+import BaseComponents.Gene;
+import BaseComponents.SymbolTable;
+
+import java.util.LinkedHashSet;
+
+/**
+ * One A5SS, A3SS, MXE or IR event (exon skipping events are ES_SE).
+ * The two alternatives are stored as intronKey(start, end) with the protein ids of the transcripts using them:
+ * A5SS/A3SS: the two introns, ordered by position
+ * MXE:       the two exons (CDS), ordered by position; flank is the outer intron span (donor before, acceptor after)
+ * IR:        first is the intron; the CDS retaining it are in retainingExons, their protein ids in proteins2
+ */
+public class SpliceEvent {
+    private final SpliceEventType type;
+    private final int ID;  // gene_id, SymbolTable.GENE_IDS
+    private final String symbol;
+    private final int chromosome;  // SymbolTable.CHROMOSOMES
+    private final char strand;
+    private final int n_prots;
+    private final int n_trans;
+    private final long first;
+    private final long second;
+    private final long flank;
+    private final LinkedHashSet<String> proteins1;
+    private final LinkedHashSet<String> proteins2;
+    private final LinkedHashSet<Long> retainingExons;
+
+    public SpliceEvent(SpliceEventType type, Gene gene, long first, long second, long flank) {
+        this.type = type;
+        this.ID = gene.getIDSymbol();
+        this.symbol = gene.getName();
+        this.chromosome = gene.getChromosomeSymbol();
+        this.strand = gene.getStrand();
+        this.n_prots = gene.getN_ports();
+        this.n_trans = gene.getN_trans();
+        this.first = first;
+        this.second = second;
+        this.flank = flank;
+        this.proteins1 = new LinkedHashSet<>();
+        this.proteins2 = new LinkedHashSet<>();
+        this.retainingExons = new LinkedHashSet<>();
+    }
+
+    @Override
+    public String toString(){
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the table row (without newline) to the given builder, columns as in SpliceEventType.getHeader()
+     * @return the builder
+     */
+    public StringBuilder appendTo(StringBuilder output) {
+        output.append(getID()).append('\t').append(this.symbol).append('\t').append(SymbolTable.CHROMOSOMES.resolve(this.chromosome)).append('\t')
+                .append(this.strand).append('\t').append(this.n_prots).append('\t').append(this.n_trans).append('\t');
+
+        switch (type) {
+            case A5SS, A3SS -> {
+                appendIntron(output, first).append('\t');
+                appendIntron(output, second).append('\t');
+                appendProteinIDs(output, proteins1).append('\t');
+                appendProteinIDs(output, proteins2).append('\t');
+                // the introns share one site, the other ones differ by the alternative bases
+                int delta = Math.abs((int) (second >>> 32) - (int) (first >>> 32)) + Math.abs((int) second - (int) first);
+                output.append(delta);
+            }
+            case MXE -> {
+                appendIntron(output, flank).append('\t');
+                appendExon(output, first).append('\t');
+                appendExon(output, second).append('\t');
+                appendProteinIDs(output, proteins1).append('\t');
+                appendProteinIDs(output, proteins2);
+            }
+            case IR -> {
+                appendIntron(output, first).append('\t');
+                boolean firstExon = true;
+                for (long exon : retainingExons) {
+                    if (!firstExon) output.append('|');
+                    appendExon(output, exon);
+                    firstExon = false;
+                }
+                output.append('\t');
+                appendProteinIDs(output, proteins1).append('\t');
+                appendProteinIDs(output, proteins2);
+            }
+            default -> throw new IllegalStateException("ES events are ES_SE");
+        }
+        return output;
+    }
+
+    private static StringBuilder appendIntron(StringBuilder output, long intron) {
+        return output.append((int) (intron >>> 32) + 1).append(':').append((int) intron);
+    }
+
+    private static StringBuilder appendExon(StringBuilder output, long exon) {
+        return output.append((int) (exon >>> 32)).append(':').append((int) exon);
+    }
+
+    private static StringBuilder appendProteinIDs(StringBuilder output, LinkedHashSet<String> proteins) {
+        return output.append(String.join("|", proteins));
+    }
+
+
+    // Getter and Setter
+    public SpliceEventType getType() {
+        return type;
+    }
+
+    public String getID() {
+        return SymbolTable.GENE_IDS.resolve(ID);
+    }
+
+    public long getFirst() {
+        return first;
+    }
+
+    public long getSecond() {
+        return second;
+    }
+
+    public long getFlank() {
+        return flank;
+    }
+
+    public LinkedHashSet<String> getProteins1() {
+        return proteins1;
+    }
+
+    public LinkedHashSet<String> getProteins2() {
+        return proteins2;
+    }
+
+    public LinkedHashSet<Long> getRetainingExons() {
+        return retainingExons;
+    }
+}
@@ -0,0 +1,312 @@
+package ExonSkipping;
+
+import BaseComponents.Gene;
+import BaseComponents.IntronTable;
+import BaseComponents.PhaseMetrics;
+import BaseComponents.SpliceGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+
+/**
+ * Finds the requested event types of a gene in one traversal of its splice graph (no further pass over the
+ * transcripts or introns per type).
+ * 1. donors, in order of position: the edges (introns) leaving a donor are sorted by end, so
+ *    ES:   an edge with WT transcripts which have an intron ending at the same acceptor
+ *    A3SS (+ strand) / A5SS (- strand): two edges whose downstream CDS overlap
+ *    MXE:  two edges whose downstream CDS do not overlap and whose next introns end at the same acceptor
+ *    IR:   every edge, CDS of other transcripts containing it (exon index of the graph)
+ * 2. acceptors, in order of position: A5SS (+ strand) / A3SS (- strand), two edges whose upstream CDS overlap
+ */
+class SpliceEventDetector {
+    private final EnumSet<SpliceEventType> types;
+    private final PhaseMetrics metrics;
+
+    /** @param metrics intron_organization and es_se_detection are timed per gene, on the thread processing it */
+    SpliceEventDetector(EnumSet<SpliceEventType> types, PhaseMetrics metrics) {
+        this.types = types;
+        this.metrics = metrics;
+    }
+
+    /**
+     * define all introns of the gene (its IntronTable, sorted by start) and the splice graph on top of them
+     * and detect the events
+     */
+    SpliceEvents detect(Gene gene) {
+        PhaseMetrics.Timer organization = metrics.start("intron_organization");
+        IntronTable introns = new IntronTable(gene.getAllTranscripts());
+        gene.setIntronTable(introns);
+        SpliceGraph graph = new SpliceGraph(introns);
+        organization.stop(introns.size());
+
+        PhaseMetrics.Timer detection = metrics.start("es_se_detection");
+        SpliceEvents events = new SpliceEvents();
+
+        // ES events keep the order of the table: by the first row of the SV intron, transcript by transcript
+        long[] exonSkippingOrder = new long[graph.getNumEdges()];
+        ArrayList<ES_SE> exonSkipping = new ArrayList<>();
+        LinkedHashMap<MXEKey, SpliceEvent> mutuallyExclusive = new LinkedHashMap<>();  // in the order they are found
+
+        for (int donor = 0; donor < graph.getNumDonors(); donor++) {
+            int firstEdge = graph.getFirstEdgeOfDonor(donor);
+            int endEdge = graph.getEndEdgeOfDonor(donor);
+
+            for (int edge = firstEdge; edge < endEdge; edge++) {
+                if (types.contains(SpliceEventType.ES) && endEdge - firstEdge > 1) {
+                    ES_SE event = exonSkipping(gene, graph, firstEdge, endEdge, edge);
+                    if (event != null) {
+                        exonSkippingOrder[exonSkipping.size()] = ((long) graph.getFirstInTranscriptOrder(edge) << 32) | exonSkipping.size();
+                        exonSkipping.add(event);
+                    }
+                }
+                if (types.contains(SpliceEventType.IR)) intronRetention(gene, graph, edge, events);
+
+                for (int other = edge + 1; other < endEdge; other++) {
+                    if (types.contains(SpliceEventType.A3SS) || types.contains(SpliceEventType.A5SS)) {
+                        alternativeAcceptor(gene, graph, edge, other, events);
+                    }
+                    if (types.contains(SpliceEventType.MXE)) {
+                        mutuallyExclusive(gene, graph, edge, other, mutuallyExclusive);
+                    }
+                }
+            }
+        }
+
+        if (types.contains(SpliceEventType.A5SS) || types.contains(SpliceEventType.A3SS)) {
+            for (int acceptor = 0; acceptor < graph.getNumAcceptors(); acceptor++) {
+                int end = graph.getEndEdgeOfAcceptor(acceptor);
+                for (int i = graph.getFirstEdgeOfAcceptor(acceptor); i < end; i++) {
+                    for (int j = i + 1; j < end; j++) {
+                        alternativeDonor(gene, graph, graph.getAcceptorEdge(i), graph.getAcceptorEdge(j), events);
+                    }
+                }
+            }
+        }
+
+        Arrays.sort(exonSkippingOrder, 0, exonSkipping.size());
+        for (int i = 0; i < exonSkipping.size(); i++) {
+            events.getExonSkipping().add(exonSkipping.get((int) exonSkippingOrder[i]));
+        }
+        mutuallyExclusive.values().forEach(events::add);
+        detection.stop(events.size());
+        return events;
+    }
+
+    /**
+     * ES with the edge as SV intron: WT transcripts start an intron at the same donor, which ends before the SV end,
+     * and reach the SV end through introns within the SV intron (IntronTable.hasPathEndingAt).
+     * @return the event, null if there is no WT transcript
+     */
+    private ES_SE exonSkipping(Gene gene, SpliceGraph graph, int firstEdge, int endEdge, int edge) {
+        IntronTable introns = graph.getIntrons();
+        int SVIntervalStart = graph.getEdgeStart(edge);
+        int SVIntervalEnd = graph.getEdgeEnd(edge);
+
+        // the rows of the donor are consecutive rows of the intron table
+        int firstRow = graph.getFirstRow(firstEdge);
+        int endRow = graph.getFirstRow(endEdge);
+        int[] WT = new int[endRow - firstRow];
+        int numWT = 0;
+        for (int row = firstRow; row < endRow; row++) {
+            if (introns.getEnd(row) < SVIntervalEnd && introns.hasPathEndingAt(introns.getTranscript(row), SVIntervalStart, SVIntervalEnd)) {
+                WT[numWT++] = row;
+            }
+        }
+        if (numWT == 0) return null;
+
+        int[] SV = new int[graph.getEndRow(edge) - graph.getFirstRow(edge)];
+        for (int i = 0; i < SV.length; i++) {
+            SV[i] = graph.getEdgeRow(graph.getFirstRow(edge) + i);
+        }
+        WT = Arrays.copyOf(WT, numWT);
+        long[] WT_introns = determineWTIntronsInSVInterval(introns, WT, SVIntervalStart, SVIntervalEnd);
+
+        ES_SE event = new ES_SE(gene.getIDSymbol(), gene.getName(), gene.getChromosomeSymbol(),
+                gene.getStrand(), gene.getN_ports(),
+                gene.getN_trans(), introns, SV, WT, WT_introns);
+        calculateSkippedExonsAndBases(event, introns, WT, SVIntervalStart, SVIntervalEnd);
+        return event;
+    }
+
+    /**
+     * min/max skipped exons and bases over all WT transcripts in one pass;
+     * each value is a prefix sum lookup in the intron table (O(log n) per transcript)
+     */
+    private void calculateSkippedExonsAndBases(ES_SE event, IntronTable introns, int[] WTs, int SV_startIndex, int SV_endIndex) {
+        int minSkippedExons = Integer.MAX_VALUE;
+        int maxSkippedExons = Integer.MIN_VALUE;
+        int minSkippedBases = Integer.MAX_VALUE;
+        int maxSkippedBases = Integer.MIN_VALUE;
+
+        for (int wt : WTs) {
+            int transcript = introns.getTranscript(wt);
+
+            int skippedExons = introns.countWithin(transcript, SV_startIndex, SV_endIndex) - 1;
+            // introns ending before the SV end: lengths of the CDS at the 3' end + intron count
+            int skippedBases = introns.cds3LengthWithin(transcript, SV_startIndex, SV_endIndex - 1)
+                    + introns.countWithin(transcript, SV_startIndex, SV_endIndex - 1) - 1;
+
+            minSkippedExons = Math.min(minSkippedExons, skippedExons);
+            maxSkippedExons = Math.max(maxSkippedExons, skippedExons);
+            minSkippedBases = Math.min(minSkippedBases, skippedBases);
+            maxSkippedBases = Math.max(maxSkippedBases, skippedBases);
+        }
+
+        event.setMin_skipped_exon(minSkippedExons);
+        event.setMax_skipped_exon(maxSkippedExons);
+        event.setMin_skipped_bases(minSkippedBases);
+        event.setMax_skipped_bases(maxSkippedBases);
+    }
+
+    /**
+     * @return the distinct WT introns within the SV interval as packed keys (start << 32 | end), sorted by start and end
+     */
+    private long[] determineWTIntronsInSVInterval(IntronTable introns, int[] WTs, int SV_startIndex, int SV_endIndex) {
+        long[] keys = new long[0];
+        int numKeys = 0;
+
+        for (int wt : WTs) {
+            int[] rows = introns.getRowsWithin(introns.getTranscript(wt), SV_startIndex, SV_endIndex);
+            if (numKeys + rows.length > keys.length) keys = Arrays.copyOf(keys, Math.max(2 * keys.length, numKeys + rows.length));
+            for (int intron : rows) {
+                keys[numKeys++] = ES_SE.intronKey(introns.getStart(intron), introns.getEnd(intron));
+            }
+        }
+
+        Arrays.sort(keys, 0, numKeys);
+        int numUnique = 0;
+        for (int i = 0; i < numKeys; i++) {
+            if (numUnique == 0 || keys[i] != keys[numUnique - 1]) keys[numUnique++] = keys[i];
+        }
+        return Arrays.copyOf(keys, numUnique);
+    }
+
+    /**
+     * Same donor, the edge ends before the other one: alternative acceptor if a transcript using the edge
+     * continues with a CDS over the other acceptor (otherwise the other edge skips a whole exon)
+     */
+    private void alternativeAcceptor(Gene gene, SpliceGraph graph, int edge, int other, SpliceEvents events) {
+        IntronTable introns = graph.getIntrons();
+        int otherEnd = graph.getEdgeEnd(other);
+        for (int i = graph.getFirstRow(edge); i < graph.getEndRow(edge); i++) {
+            int row = graph.getEdgeRow(i);
+            if (introns.getCds3Stop(row) < otherEnd) continue;
+            for (int j = graph.getFirstRow(other); j < graph.getEndRow(other); j++) {
+                if (introns.getTranscript(graph.getEdgeRow(j)) != introns.getTranscript(row)) {
+                    SpliceEventType type = gene.getStrand() == '-' ? SpliceEventType.A5SS : SpliceEventType.A3SS;
+                    if (types.contains(type)) events.add(pair(type, gene, graph, edge, other));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Same acceptor, the edge starts before the other one: alternative donor if a transcript using the other edge
+     * has its upstream CDS over the donor of the edge
+     */
+    private void alternativeDonor(Gene gene, SpliceGraph graph, int edge, int other, SpliceEvents events) {
+        IntronTable introns = graph.getIntrons();
+        int start = graph.getEdgeStart(edge);
+        for (int j = graph.getFirstRow(other); j < graph.getEndRow(other); j++) {
+            int row = graph.getEdgeRow(j);
+            if (introns.getCds5Start(row) > start) continue;
+            for (int i = graph.getFirstRow(edge); i < graph.getEndRow(edge); i++) {
+                if (introns.getTranscript(graph.getEdgeRow(i)) != introns.getTranscript(row)) {
+                    SpliceEventType type = gene.getStrand() == '-' ? SpliceEventType.A3SS : SpliceEventType.A5SS;
+                    if (types.contains(type)) events.add(pair(type, gene, graph, edge, other));
+                    return;
+                }
+            }
+        }
+    }
+
+    /** A5SS/A3SS event of the two edges, with the proteins (3' CDS) of all transcripts using them */
+    private SpliceEvent pair(SpliceEventType type, Gene gene, SpliceGraph graph, int edge, int other) {
+        SpliceEvent event = new SpliceEvent(type, gene, edgeKey(graph, edge), edgeKey(graph, other), 0);
+        addProteins(graph, edge, event.getProteins1());
+        addProteins(graph, other, event.getProteins2());
+        return event;
+    }
+
+    /**
+     * Same donor, the downstream CDS of a transcript using the edge ends before the downstream CDS of one using
+     * the other edge, and the next introns of both transcripts end at the same acceptor
+     */
+    private void mutuallyExclusive(Gene gene, SpliceGraph graph, int edge, int other, LinkedHashMap<MXEKey, SpliceEvent> found) {
+        IntronTable introns = graph.getIntrons();
+        int otherEnd = graph.getEdgeEnd(other);
+        for (int i = graph.getFirstRow(edge); i < graph.getEndRow(edge); i++) {
+            int row = graph.getEdgeRow(i);
+            int next = introns.getNextInTranscript(row);
+            if (introns.getCds3Stop(row) >= otherEnd || next < 0) continue;
+
+            for (int j = graph.getFirstRow(other); j < graph.getEndRow(other); j++) {
+                int otherRow = graph.getEdgeRow(j);
+                int otherNext = introns.getNextInTranscript(otherRow);
+                if (introns.getTranscript(otherRow) == introns.getTranscript(row) || otherNext < 0
+                        || introns.getEnd(otherNext) != introns.getEnd(next)) continue;
+
+                long first = ES_SE.intronKey(introns.getEnd(row), introns.getCds3Stop(row));
+                long second = ES_SE.intronKey(introns.getEnd(otherRow), introns.getCds3Stop(otherRow));
+                long flank = ES_SE.intronKey(graph.getEdgeStart(edge), introns.getEnd(next));
+
+                SpliceEvent event = found.computeIfAbsent(new MXEKey(first, second, flank),
+                        key -> new SpliceEvent(SpliceEventType.MXE, gene, first, second, flank));
+                event.getProteins1().add(introns.getCds3Protein(row));
+                event.getProteins2().add(introns.getCds3Protein(otherRow));
+            }
+        }
+    }
+
+    /** the edge lies within CDS of other transcripts */
+    private void intronRetention(Gene gene, SpliceGraph graph, int edge, SpliceEvents events) {
+        int[] exons = graph.exonsContaining(graph.getEdgeStart(edge), graph.getEdgeEnd(edge));
+        if (exons.length == 0) return;
+
+        SpliceEvent event = new SpliceEvent(SpliceEventType.IR, gene, edgeKey(graph, edge), 0, 0);
+        addProteins(graph, edge, event.getProteins1());
+        for (int exon : exons) {
+            event.getRetainingExons().add(ES_SE.intronKey(graph.getExonStart(exon), graph.getExonEnd(exon)));
+            event.getProteins2().add(graph.getExonProtein(exon));
+        }
+        events.add(event);
+    }
+
+    private static long edgeKey(SpliceGraph graph, int edge) {
+        return ES_SE.intronKey(graph.getEdgeStart(edge), graph.getEdgeEnd(edge));
+    }
+
+    /** the exons and the flanking introns of an MXE event (intronKeys), same key => same event */
+    private static final class MXEKey {
+        private final long first;
+        private final long second;
+        private final long flank;
+
+        MXEKey(long first, long second, long flank) {
+            this.first = first;
+            this.second = second;
+            this.flank = flank;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MXEKey other)) return false;
+            return first == other.first && second == other.second && flank == other.flank;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(first) * 961 + Long.hashCode(second) * 31 + Long.hashCode(flank);
+        }
+    }
+
+    private static void addProteins(SpliceGraph graph, int edge, Collection<String> proteins) {
+        for (int i = graph.getFirstRow(edge); i < graph.getEndRow(edge); i++) {
+            proteins.add(graph.getIntrons().getCds3Protein(graph.getEdgeRow(i)));
+        }
+    }
+}
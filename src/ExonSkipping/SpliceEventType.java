@@ -0,0 +1,44 @@
+package ExonSkipping;
+
+/**
+ * Alternative splicing events found by SpliceEventDetector; every type is written into its own table.
+ * Introns are written as in the ES-SE table (start + 1:end, i.e. the CDS positions around the intron), CDS as start:end.
+ * ES:   exon skipping, see ES_SE
+ * A5SS: alternative 5' splice site, two introns with the same acceptor and overlapping upstream CDS (strand aware)
+ * A3SS: alternative 3' splice site, two introns with the same donor and overlapping downstream CDS (strand aware)
+ * MXE:  mutually exclusive exons, two non-overlapping CDS between the same donor and acceptor, each used by other transcripts
+ * IR:   intron retention, an intron which lies within a CDS of another transcript
+ */
+public enum SpliceEventType {
+    ES("es", ESSEWriter.HEADER),
+    A5SS("a5ss", "id\tsymbol\tchr\tstrand\tnprots\tntrans\tintron_1\tintron_2\tprots_1\tprots_2\tdelta_bases\n"),
+    A3SS("a3ss", "id\tsymbol\tchr\tstrand\tnprots\tntrans\tintron_1\tintron_2\tprots_1\tprots_2\tdelta_bases\n"),
+    MXE("mxe", "id\tsymbol\tchr\tstrand\tnprots\tntrans\tflank\texon_1\texon_2\tprots_1\tprots_2\n"),
+    IR("ir", "id\tsymbol\tchr\tstrand\tnprots\tntrans\tintron\tretaining_exons\tspliced_prots\tretained_prots\n");
+
+    private final String name;
+    private final String header;
+
+    SpliceEventType(String name, String header) {
+        this.name = name;
+        this.header = header;
+    }
+
+    /** @return the type for its (case-insensitive) name, e.g. "a5ss" */
+    public static SpliceEventType forName(String name) {
+        for (SpliceEventType type : values()) {
+            if (type.name.equalsIgnoreCase(name.trim())) return type;
+        }
+        throw new IllegalArgumentException("Unknown event type " + name + ", expected es, a5ss, a3ss, mxe or ir");
+    }
+
+
+    // Getter and Setter
+    public String getName() {
+        return name;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+}
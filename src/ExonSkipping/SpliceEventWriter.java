@@ -0,0 +1,47 @@
+package ExonSkipping;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the table of one A5SS, A3SS, MXE or IR event type (see TableWriter), columns as in SpliceEventType.getHeader()
+ */
+public class SpliceEventWriter extends TableWriter {
+    private final SpliceEventType type;
+
+    public SpliceEventWriter(String outputPath, SpliceEventType type) throws IOException {
+        super(outputPath, type.getHeader());
+        this.type = type;
+    }
+
+    /**
+     * @return path of the table of the type next to the ES-SE table: output.txt => output.a5ss.txt,
+     *         output.txt.gz => output.a5ss.txt.gz
+     */
+    public static String outputPath(String esOutputPath, SpliceEventType type) {
+        String path = esOutputPath.endsWith(".gz") ? esOutputPath.substring(0, esOutputPath.length() - 3) : esOutputPath;
+        String compression = esOutputPath.substring(path.length());
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        int dot = path.lastIndexOf('.');
+        if (dot <= slash + 1) return path + "." + type.getName() + compression;
+        return path.substring(0, dot) + "." + type.getName() + path.substring(dot) + compression;
+    }
+
+    public void write(List<SpliceEvent> events) throws IOException {
+        for (SpliceEvent event : events) {
+            write(event);
+        }
+    }
+
+    public void write(SpliceEvent event) throws IOException {
+        if (event.getType() != type) throw new IllegalArgumentException(event.getType() + " event in the " + type + " table");
+        event.appendTo(startRow());
+        endRow();
+    }
+
+
+    // Getter and Setter
+    public SpliceEventType getType() {
+        return type;
+    }
+}
@@ -0,0 +1,39 @@
+package ExonSkipping;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+
+/**
+ * The events of one gene, per type, as found by one traversal of its splice graph
+ */
+public class SpliceEvents {
+    private final ArrayList<ES_SE> exonSkipping;
+    private final EnumMap<SpliceEventType, ArrayList<SpliceEvent>> events;
+
+    public SpliceEvents() {
+        this.exonSkipping = new ArrayList<>();
+        this.events = new EnumMap<>(SpliceEventType.class);
+    }
+
+    void add(SpliceEvent event) {
+        events.computeIfAbsent(event.getType(), type -> new ArrayList<>()).add(event);
+    }
+
+    /** @return number of events of all types */
+    public int size() {
+        int size = exonSkipping.size();
+        for (ArrayList<SpliceEvent> list : events.values()) size += list.size();
+        return size;
+    }
+
+
+    // Getter and Setter
+    public ArrayList<ES_SE> getExonSkipping() {
+        return exonSkipping;
+    }
+
+    /** @return the A5SS, A3SS, MXE or IR events of the gene, in the order of the traversal */
+    public ArrayList<SpliceEvent> get(SpliceEventType type) {
+        return events.getOrDefault(type, new ArrayList<>());
+    }
+}
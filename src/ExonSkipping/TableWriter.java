@@ -0,0 +1,108 @@
+package ExonSkipping;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a tab-separated table row by row into a buffered channel instead of building one String.
+ * Output paths ending with ".gz" are gzip-compressed. Rows are separated by '\n', there is none after the last row.
+ */
+public abstract class TableWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder;
+    private final StringBuilder line;  // reused for every row
+    private long numRows;
+
+    protected TableWriter(String outputPath, String header) throws IOException {
+        FileChannel fileChannel = FileChannel.open(Path.of(outputPath),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (outputPath.endsWith(".gz")) {
+            this.channel = Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE));
+        } else {
+            this.channel = fileChannel;
+        }
+
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.encoder = StandardCharsets.UTF_8.newEncoder();
+        this.line = new StringBuilder(512);
+
+        line.append(header);
+        encode(line);
+    }
+
+    /** @return the empty row builder (with the separator of the previous row), the row is written by endRow */
+    protected StringBuilder startRow() {
+        line.setLength(0);
+        if (numRows > 0) line.append('\n');
+        return line;
+    }
+
+    protected void endRow() throws IOException {
+        encode(line);
+        numRows++;
+    }
+
+    /**
+     * rows which are already encoded, e.g. spooled by the streaming mode
+     * @param rows UTF-8 rows separated by '\n', without a newline after the last one
+     */
+    public void writeEncoded(byte[] rows, int length, int numRows) throws IOException {
+        if (numRows == 0) return;
+        if (this.numRows > 0) put(new byte[]{'\n'}, 1);
+        put(rows, length);
+        this.numRows += numRows;
+    }
+
+    private void put(byte[] bytes, int length) throws IOException {
+        int written = 0;
+        while (written < length) {
+            if (!buffer.hasRemaining()) flush();
+            int n = Math.min(buffer.remaining(), length - written);
+            buffer.put(bytes, written, n);
+            written += n;
+        }
+    }
+
+    /** encode the characters into the byte buffer, flushing it to the channel whenever it is full */
+    private void encode(CharSequence chars) throws IOException {
+        CharBuffer input = CharBuffer.wrap(chars);
+        while (encoder.encode(input, buffer, true).isOverflow()) {
+            flush();
+        }
+        encoder.reset();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public long getNumRows() {
+        return numRows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -1,48 +1,50 @@
 import numpy as np
 import matplotlib.pyplot as plt
 import pandas as pd
-import seaborn as sns
 import textwrap
 
 # ===== Constants =====
+# usage: plot_max_exon_bases_data.py [data directory] [plot directory] (both written/used by ReportPlots)
+# the values are not read one by one: ReportPlots writes histograms (non-empty bins) and the statistics computed from them
+import os
+import sys
+
+DATA_DIR = sys.argv[1] if len(sys.argv) > 1 else "src/ExonSkipping/data"
+PLOT_DIR = sys.argv[2] if len(sys.argv) > 2 else "src/ExonSkipping/plots"
 EXPERIMENTS = ["Homo_sapiens.GRCh37.67", "Homo_sapiens.GRCh37.75"]
+if os.path.exists(os.path.join(DATA_DIR, "releases.txt")):
+    with open(os.path.join(DATA_DIR, "releases.txt")) as releases:
+        EXPERIMENTS = [line.strip() for line in releases if line.strip()]
 DATA_PATHS = {
-    "exons": "src/ExonSkipping/data/exons.csv",
-    "bases": "src/ExonSkipping/data/bases.csv"
+    "exons": os.path.join(DATA_DIR, "histogram_exons.csv"),
+    "bases": os.path.join(DATA_DIR, "histogram_bases.csv"),
+    "statistics": os.path.join(DATA_DIR, "statistics.csv")
 }
 PLOT_PATHS = {
-    "cumulative_exons": "src/ExonSkipping/plots/cumulative_plot_exons.png",
-    "cumulative_bases": "src/ExonSkipping/plots/cumulative_plot_bases.png",
-    "stats_exons": "src/ExonSkipping/plots/statistics_summary_by_exon.png",
-    "stats_bases": "src/ExonSkipping/plots/statistics_summary_by_bases.png",
-    "box_exons": "src/ExonSkipping/plots/box_plot_exons.png",
-    "box_bases": "src/ExonSkipping/plots/box_plot_bases.png"
+    "cumulative_exons": os.path.join(PLOT_DIR, "cumulative_plot_exons.png"),
+    "cumulative_bases": os.path.join(PLOT_DIR, "cumulative_plot_bases.png"),
+    "stats_exons": os.path.join(PLOT_DIR, "statistics_summary_by_exon.png"),
+    "stats_bases": os.path.join(PLOT_DIR, "statistics_summary_by_bases.png"),
+    "box_exons": os.path.join(PLOT_DIR, "box_plot_exons.png"),
+    "box_bases": os.path.join(PLOT_DIR, "box_plot_bases.png")
 }
 FIGSIZE = (10, 6)
 
 # ===== Functions =====
-def load_csv(path):
-    with open(path, "r") as file:
-        lines = file.read().strip().split("\n")
-    return [list(map(float, line.split(","))) for line in lines]
-
-def compute_statistics(data):
-    stats = []
-    for d in data:
-        sorted_data = np.sort(d)
-        median = np.median(sorted_data)
-        lq = np.percentile(sorted_data, 25)
-        uq = np.percentile(sorted_data, 75)
-        iqr = uq - lq
-        stats.append([median, lq, uq, iqr])
-    return stats
-
-def plot_cumulative(data, xlabel, ylabel, title, save_path):
+def load_histograms(path):
+    """ release -> DataFrame with bin_start, bin_end (exclusive), count """
+    df = pd.read_csv(path)
+    return [df[df["release"] == release].sort_values("bin_start") for release in EXPERIMENTS]
+
+def load_statistics(path, metric):
+    df = pd.read_csv(path)
+    return df[df["metric"] == metric].set_index("release").loc[EXPERIMENTS]
+
+def plot_cumulative(histograms, xlabel, ylabel, title, save_path):
     plt.figure(figsize=FIGSIZE)
-    for i, d in enumerate(data):
-        sorted_data = np.sort(d)
-        cumulative_count = np.arange(1, len(sorted_data) + 1)
-        plt.step(sorted_data, cumulative_count, where='post', label=f'GTF File {EXPERIMENTS[i]}')
+    for i, h in enumerate(histograms):
+        # all values of a bin are counted at its last value
+        plt.step(h["bin_end"] - 1, np.cumsum(h["count"]), where='post', label=f'GTF File {EXPERIMENTS[i]}')
     plt.xlabel(xlabel)
     plt.ylabel(ylabel)
     plt.title(title)
@@ -51,8 +53,8 @@ def plot_cumulative(data, xlabel, ylabel, title, save_path):
     plt.savefig(save_path, dpi=300)
     plt.close()
 
-def plot_statistics_table(stat_list, title, save_path):
-    df = pd.DataFrame(stat_list, columns=["Median", "LQ", "UQ", "IQR"], index=EXPERIMENTS)
+def plot_statistics_table(stats, title, save_path):
+    df = stats[["median", "lq", "uq", "iqr"]].rename(columns={"median": "Median", "lq": "LQ", "uq": "UQ", "iqr": "IQR"})
     fig, ax = plt.subplots(figsize=(6, 3))
     ax.axis('off')
     table = ax.table(cellText=df.values, rowLabels=df.index, colLabels=df.columns, cellLoc='center', loc='center')
@@ -63,13 +65,17 @@ def plot_statistics_table(stat_list, title, save_path):
     plt.savefig(save_path, bbox_inches='tight')
     plt.close()
 
-def plot_box_violin(data, title, save_path, y_ticks=None):
+def plot_box(stats, title, save_path, y_ticks=None):
+    """ box plot drawn from the precomputed quartiles (whiskers: min and max) """
     wrapped_labels = [textwrap.fill(label, width=13) for label in EXPERIMENTS]
-    log_data = [np.log10(np.array(d) + 1) for d in data]
-
-    plt.figure(figsize=(15, 6))
-    sns.violinplot(data=log_data, cut=0, inner="quartile")
-    plt.xticks(range(len(wrapped_labels)), wrapped_labels, rotation=30)
+    log = lambda value: np.log10(value + 1)
+    boxes = [{"label": label, "med": log(row["median"]), "q1": log(row["lq"]), "q3": log(row["uq"]),
+              "whislo": log(row["min"]), "whishi": log(row["max"]), "fliers": []}
+             for label, (_, row) in zip(wrapped_labels, stats.iterrows())]
+
+    fig, ax = plt.subplots(figsize=(15, 6))
+    ax.bxp(boxes, showfliers=False)
+    plt.xticks(rotation=30)
     plt.title(title)
 
     if y_ticks is not None:
@@ -84,12 +90,14 @@ def plot_box_violin(data, title, save_path, y_ticks=None):
     plt.close()
 
 # ===== Main Workflow =====
-exons_data = load_csv(DATA_PATHS["exons"])
-bases_data = load_csv(DATA_PATHS["bases"])
+exons_histograms = load_histograms(DATA_PATHS["exons"])
+bases_histograms = load_histograms(DATA_PATHS["bases"])
+exons_statistics = load_statistics(DATA_PATHS["statistics"], "exons")
+bases_statistics = load_statistics(DATA_PATHS["statistics"], "bases")
 
 # Cumulative plots
 plot_cumulative(
-    exons_data,
+    exons_histograms,
     xlabel="Skipped Exons",
     ylabel="Cumulative Count",
     title="Cumulative Distribution of Skipped Exons per ES-SE Event",
@@ -97,7 +105,7 @@ plot_cumulative(
 )
 
 plot_cumulative(
-    bases_data,
+    bases_histograms,
     xlabel="Skipped Bases",
     ylabel="Cumulative Count",
     title="Cumulative Distribution of Skipped Bases per ES-SE Event",
@@ -106,27 +114,27 @@ plot_cumulative(
 
 # Statistics tables
 plot_statistics_table(
-    compute_statistics(exons_data),
+    exons_statistics,
     title="Statistics Summary for max skipping exon",
     save_path=PLOT_PATHS["stats_exons"]
 )
 
 plot_statistics_table(
-    compute_statistics(bases_data),
+    bases_statistics,
     title="Statistics Summary for max skipping bases",
     save_path=PLOT_PATHS["stats_bases"]
 )
 
-# Box/Violin plots (preserved)
-plot_box_violin(
-    exons_data,
+# Box plots
+plot_box(
+    exons_statistics,
     title="Box Plot of max skipped Exons per GTF file",
     save_path=PLOT_PATHS["box_exons"],
     y_ticks=np.arange(0.25, 1.26, step=0.1)
 )
 
-plot_box_violin(
-    bases_data,
+plot_box(
+    bases_statistics,
     title="Box Plot of max skipped Bases per GTF file",
     save_path=PLOT_PATHS["box_bases"]
 )
@@ -9,6 +9,7 @@ import java.util.HashMap;
 public class FASTAIndex {
     private final HashMap<String, Long> chr2chrLength;
     private final HashMap<String, Long> chr2startIndexFASTA;
+    private final HashMap<String, int[]> chr2lineLengths;  // bases per line, bytes per line (incl. newline)
     private final ArrayList<String> chromosomes;
     private int lineLength;
     private int lineLengthInclNewline;
@@ -17,6 +18,7 @@ public class FASTAIndex {
         this.chromosomes = new ArrayList<>();
         this.chr2startIndexFASTA = new HashMap<>();
         this.chr2chrLength = new HashMap<>();
+        this.chr2lineLengths = new HashMap<>();
 
         int count = 0;
         try(BufferedReader br = new BufferedReader(new FileReader(findxFilePath))){
@@ -30,6 +32,7 @@ public class FASTAIndex {
                 this.chromosomes.add(values[0]);
                 this.chr2chrLength.put(values[0], Long.parseLong(values[1]));
                 this.chr2startIndexFASTA.put(values[0], Long.parseLong(values[2]));
+                this.chr2lineLengths.put(values[0], new int[]{Integer.parseInt(values[3]), Integer.parseInt(values[4])});
 
                 count++;
             }
@@ -52,6 +55,11 @@ public class FASTAIndex {
         return chr2startIndexFASTA;
     }
 
+    /** @return bases per line and bytes per line (including the newline) of the chromosome */
+    public int[] getLineLengths(String chromosome) {
+        return chr2lineLengths.get(chromosome);
+    }
+
     public int getLineLength() {
         return lineLength;
     }
@@ -0,0 +1,122 @@
+package ReadSimulator;
+
+import BaseComponents.Transcript;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Order in which the transcripts are simulated: sorted by chromosome (order of the FASTA index), genomic start, end and
+ * transcript id, so the reference is read front to back and the output order does not depend on hashing.
+ * Consecutive transcripts which overlap or lie at most MAX_GAP bases apart (e.g. the isoforms of a gene) form a locus;
+ * the reference of a locus is fetched once and the exons of its transcripts are sliced out of it.
+ * A locus is not extended beyond MAX_LOCUS_LENGTH bases, but always holds at least one transcript.
+ * getLocusSequence keeps the sequence of the current locus and is not thread-safe; parallel simulation fetches the
+ * loci with fetchLocusSequence, one locus (transcripts getLocusFirst(l) to getLocusFirst(l + 1) - 1) per task.
+ */
+public class LocusSchedule {
+    public static final int MAX_GAP = 1000;
+    public static final int MAX_LOCUS_LENGTH = 1 << 22;
+
+    private final ArrayList<PreTranscript> transcripts;  // locus order
+    private final int[] locusOfTranscript;
+    private final ArrayList<Integer> locusFirstTranscripts;
+    private final ArrayList<String> locusChromosomes;
+    private final ArrayList<int[]> locusRegions;  // 1-based start and end-inclusive end of each locus
+
+    // sequence of the last fetched locus
+    private int bufferedLocus = -1;
+    private String buffer;
+
+    public LocusSchedule(Collection<PreTranscript> preTranscripts, List<String> chromosomeOrder) {
+        HashMap<String, Integer> chromosomeRanks = new HashMap<>();
+        for (String chromosome : chromosomeOrder) chromosomeRanks.putIfAbsent(chromosome, chromosomeRanks.size());
+
+        this.transcripts = new ArrayList<>(preTranscripts);
+        transcripts.sort(Comparator.comparingInt((PreTranscript preTr) -> chromosomeRanks.getOrDefault(preTr.getChromosome(), Integer.MAX_VALUE))
+                .thenComparing(PreTranscript::getChromosome)
+                .thenComparingInt(LocusSchedule::getStart)
+                .thenComparingInt(LocusSchedule::getEnd)
+                .thenComparing(PreTranscript::getTranscriptID));
+
+        this.locusOfTranscript = new int[transcripts.size()];
+        this.locusChromosomes = new ArrayList<>();
+        this.locusRegions = new ArrayList<>();
+        this.locusFirstTranscripts = new ArrayList<>();
+        int[] region = null;
+        for (int t = 0; t < transcripts.size(); t++) {
+            PreTranscript preTr = transcripts.get(t);
+            boolean sameLocus = region != null && preTr.getChromosome().equals(locusChromosomes.getLast())
+                    && getStart(preTr) <= (long) region[1] + MAX_GAP + 1
+                    && (long) Math.max(region[1], getEnd(preTr)) - region[0] + 1 <= MAX_LOCUS_LENGTH;
+            if (sameLocus) {
+                region[1] = Math.max(region[1], getEnd(preTr));
+            } else {
+                region = new int[]{getStart(preTr), getEnd(preTr)};
+                locusChromosomes.add(preTr.getChromosome());
+                locusRegions.add(region);
+                locusFirstTranscripts.add(t);
+            }
+            locusOfTranscript[t] = locusRegions.size() - 1;
+        }
+    }
+
+    /** @return 1-based start of the first exon */
+    private static int getStart(PreTranscript preTr) {
+        return preTr.getTranscript().getExonStart(0);
+    }
+
+    /** @return 1-based, end-inclusive end of the last exon */
+    private static int getEnd(PreTranscript preTr) {
+        Transcript transcript = preTr.getTranscript();
+        return transcript.getExonEnd(transcript.getNumExons() - 1) - 1;
+    }
+
+    /**
+     * @return reference sequence of the locus of transcript t (fetched when t is the first transcript of its locus),
+     *         it starts at getLocusStart(t)
+     */
+    public String getLocusSequence(int t, ReferenceReader reference) {
+        int locus = locusOfTranscript[t];
+        if (locus != bufferedLocus) {
+            buffer = null;  // the old locus is not needed anymore
+            bufferedLocus = -1;
+            buffer = fetchLocusSequence(locus, reference);
+            bufferedLocus = locus;
+        }
+        return buffer;
+    }
+
+    /** @return reference sequence of the locus, without buffering; it starts at getLocusStart(getLocusFirst(locus)) */
+    public String fetchLocusSequence(int locus, ReferenceReader reference) {
+        int[] region = locusRegions.get(locus);
+        return reference.getSequence(locusChromosomes.get(locus), region[0], region[1]);
+    }
+
+    /** @return 1-based start of the locus of transcript t */
+    public int getLocusStart(int t) {
+        return locusRegions.get(locusOfTranscript[t])[0];
+    }
+
+
+    // Getter and Setter
+    public int size() {
+        return transcripts.size();
+    }
+
+    public PreTranscript get(int t) {
+        return transcripts.get(t);
+    }
+
+    public int getNumLoci() {
+        return locusRegions.size();
+    }
+
+    /** @return index of the first transcript of the locus; getLocusFirst(getNumLoci()) == size() */
+    public int getLocusFirst(int locus) {
+        return locus == locusFirstTranscripts.size() ? transcripts.size() : locusFirstTranscripts.get(locus);
+    }
+}
@@ -0,0 +1,413 @@
+package ReadSimulator;
+
+import org.apache.commons.cli.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * 2-bit packed reference genome (genome.2bit), converted once from the FASTA and its index and then memory-mapped,
+ * so the page cache shares it between simulation jobs and a subsequence is decoded with shifts and masks:
+ * - the bases of a chromosome are packed 4 per byte (A=0, C=1, G=2, T=3, first base in the highest bits)
+ * - runs of other characters (N, IUPAC codes) are stored as (start, length, character), the packed bases are 0 there
+ * - runs of lowercase (soft-masked) bases are stored as (start, length)
+ * The subsequences are therefore identical to the ones of the FASTA.
+ *
+ * File layout: magic, version, packed bases of every chromosome, chromosome table (name, length, offset of the packed
+ * bases, runs), offset of the table as the last 8 bytes. Chromosomes are mapped one by one (each < 512 MB).
+ *
+ * usage: PackedReference -fasta genome.fa -fidx genome.fa.fai [-o genome.2bit]
+ */
+public class PackedReference implements Closeable {
+    public static final String EXTENSION = ".2bit";
+    private static final int MAGIC = 0x32424954;  // "2BIT"
+    private static final int FORMAT_VERSION = 1;
+    private static final byte[] BASES = {'A', 'C', 'G', 'T'};
+    private static final byte[] DECODED = new byte[256 * 4];  // packed byte -> its 4 bases
+    private static final byte[] CODES = new byte[256];  // character -> 2-bit code, -1 := no base (run)
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            for (int i = 0; i < 4; i++) {
+                DECODED[4 * b + i] = BASES[(b >>> (6 - 2 * i)) & 3];
+            }
+        }
+        Arrays.fill(CODES, (byte) -1);
+        for (byte code = 0; code < 4; code++) {
+            CODES[BASES[code]] = code;
+        }
+    }
+
+    private final FileChannel channel;
+    private final HashMap<String, Chromosome> chromosomes;
+    private final ArrayList<String> chromosomeNames;  // file order
+
+    private PackedReference(FileChannel channel, HashMap<String, Chromosome> chromosomes, ArrayList<String> chromosomeNames) {
+        this.channel = channel;
+        this.chromosomes = chromosomes;
+        this.chromosomeNames = chromosomeNames;
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        options.addOption("fasta", true, "Input FASTA (.fa) file path");
+        options.addOption("fidx", true, "Input FASTA index (.fai) file path");
+        options.addOption("o", true, "Output file path (default: <fasta>.2bit)");
+        CommandLineParser parser = new BasicParser();
+
+        String fastaFilePath;
+        String fidxFilePath;
+        String outputFilePath;
+        try {
+            CommandLine cmd = parser.parse(options, args);
+            if (!cmd.hasOption("fasta") || !cmd.hasOption("fidx")) {
+                System.out.println("Please, check all input arguments!\n" +
+                        "-fasta <fasta input file path>\n" +
+                        "-fidx <fasta index input file path>\n" +
+                        "-o <output file path, optional, default <fasta>.2bit>");
+                System.exit(1);
+            }
+            fastaFilePath = cmd.getOptionValue("fasta");
+            fidxFilePath = cmd.getOptionValue("fidx");
+            outputFilePath = cmd.getOptionValue("o", fastaFilePath + EXTENSION);
+        } catch (ParseException e) {
+            System.err.println("Error parsing command line arguments!");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            convert(fastaFilePath, new FASTAIndex(fidxFilePath), outputFilePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.out.println("Packed " + fastaFilePath + " into " + outputFilePath + " (" + (System.currentTimeMillis() - start) + " ms)");
+    }
+
+    /** @return true if the path is a packed reference (by its extension) */
+    public static boolean isPacked(String path) {
+        return path.endsWith(EXTENSION);
+    }
+
+
+    // Conversion
+
+    /**
+     * Pack all chromosomes of the index; the line lengths of the index locate the bases of each chromosome in the FASTA.
+     * The file is written next to the output and renamed at the end.
+     */
+    public static void convert(String fastaFilePath, FASTAIndex index, String outputFilePath) throws IOException {
+        Path output = Path.of(outputFilePath);
+        Path temporary = Path.of(outputFilePath + ".tmp");
+        ArrayList<Chromosome> table = new ArrayList<>();
+
+        try (FileChannel fasta = FileChannel.open(Path.of(fastaFilePath), StandardOpenOption.READ);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            long offset = 8;
+
+            for (String name : index.getChromosomes()) {
+                long length = index.getChr2chrLength().get(name);
+                if (length > Integer.MAX_VALUE) throw new IOException("Chromosome " + name + " is too long: " + length);
+                Chromosome chromosome = pack(fasta, name, (int) length, index.getChr2startIndexFASTA().get(name),
+                        index.getLineLengths(name), offset);
+                out.write(chromosome.packedForWrite);
+                chromosome.packedForWrite = null;
+                offset += (length + 3) / 4;
+                table.add(chromosome);
+            }
+
+            long tableOffset = offset;
+            out.writeInt(table.size());
+            for (Chromosome chromosome : table) {
+                out.writeUTF(chromosome.name);
+                out.writeInt(chromosome.length);
+                out.writeLong(chromosome.packedOffset);
+                out.writeInt(chromosome.runStarts.length);
+                for (int r = 0; r < chromosome.runStarts.length; r++) {
+                    out.writeInt(chromosome.runStarts[r]);
+                    out.writeInt(chromosome.runEnds[r]);
+                    out.writeByte(chromosome.runBases[r]);
+                }
+                out.writeInt(chromosome.lowerStarts.length);
+                for (int r = 0; r < chromosome.lowerStarts.length; r++) {
+                    out.writeInt(chromosome.lowerStarts[r]);
+                    out.writeInt(chromosome.lowerEnds[r]);
+                }
+            }
+            out.writeLong(tableOffset);
+        }
+        Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** read the bases of one chromosome (skipping the line ends) and pack them */
+    private static Chromosome pack(FileChannel fasta, String name, int length, long fastaOffset, int[] lineLengths,
+                                   long packedOffset) throws IOException {
+        int basesPerLine = lineLengths[0];
+        int bytesPerLine = lineLengths[1];
+        long fastaBytes = (long) (length / basesPerLine) * bytesPerLine + length % basesPerLine;
+
+        byte[] packed = new byte[(int) ((length + 3L) / 4)];
+        RunBuilder runs = new RunBuilder(true);
+        RunBuilder lower = new RunBuilder(false);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        long position = fastaOffset;
+        long end = fastaOffset + fastaBytes;
+        int base = 0;
+        while (position < end && base < length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = fasta.read(buffer, position);
+            if (read < 0) break;
+            position += read;
+
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read && base < length; i++) {
+                int c = bytes[i] & 0xFF;
+                if (c == '\n' || c == '\r') continue;
+
+                boolean isLower = c >= 'a' && c <= 'z';
+                int upper = isLower ? c - 32 : c;
+                lower.add(base, isLower, (byte) 0);
+                byte code = CODES[upper];
+                if (code < 0) {
+                    runs.add(base, true, (byte) upper);
+                } else {
+                    runs.add(base, false, (byte) 0);
+                    packed[base >>> 2] |= (byte) (code << (6 - 2 * (base & 3)));
+                }
+                base++;
+            }
+        }
+        if (base != length) {
+            throw new IOException("Chromosome " + name + ": found " + base + " of " + length + " bases, does the index belong to the FASTA?");
+        }
+
+        Chromosome chromosome = new Chromosome(name, length, packedOffset, runs.starts(), runs.ends(), runs.bases(),
+                lower.starts(), lower.ends());
+        chromosome.packedForWrite = packed;
+        return chromosome;
+    }
+
+    /** collects runs of consecutive positions, e.g. of N; with bases, a run also ends where the character changes */
+    private static class RunBuilder {
+        private final boolean withBases;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private byte[] bases = new byte[16];
+        private int size;
+        private boolean open;
+
+        private RunBuilder(boolean withBases) {
+            this.withBases = withBases;
+        }
+
+        private void add(int position, boolean inRun, byte base) {
+            if (!inRun) {
+                open = false;
+                return;
+            }
+            if (open && (!withBases || bases[size - 1] == base)) {
+                ends[size - 1] = position + 1;
+                return;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * size);
+                ends = Arrays.copyOf(ends, 2 * size);
+                bases = Arrays.copyOf(bases, 2 * size);
+            }
+            starts[size] = position;
+            ends[size] = position + 1;
+            bases[size++] = base;
+            open = true;
+        }
+
+        private int[] starts() {
+            return Arrays.copyOf(starts, size);
+        }
+
+        private int[] ends() {
+            return Arrays.copyOf(ends, size);
+        }
+
+        private byte[] bases() {
+            return Arrays.copyOf(bases, size);
+        }
+    }
+
+
+    // Reading
+
+    /** map the packed reference; the chromosome table is read into memory, the bases stay in the page cache */
+    public static PackedReference open(String path) throws IOException {
+        FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < 8 || header.getInt() != MAGIC) throw new IOException(path + " is not a packed reference");
+            if (header.getInt() != FORMAT_VERSION) throw new IOException(path + " has an unsupported format version");
+
+            ByteBuffer trailer = ByteBuffer.allocate(8);
+            channel.read(trailer, channel.size() - 8);
+            trailer.flip();
+            long tableOffset = trailer.getLong();
+
+            HashMap<String, Chromosome> chromosomes = new HashMap<>();
+            ArrayList<String> chromosomeNames = new ArrayList<>();
+            ByteBuffer table = ByteBuffer.allocate((int) (channel.size() - 8 - tableOffset));
+            while (table.hasRemaining()) {
+                if (channel.read(table, tableOffset + table.position()) < 0) throw new EOFException("Truncated " + path);
+            }
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(table.array()))) {
+                int numChromosomes = in.readInt();
+                for (int c = 0; c < numChromosomes; c++) {
+                    String name = in.readUTF();
+                    int length = in.readInt();
+                    long packedOffset = in.readLong();
+
+                    int numRuns = in.readInt();
+                    int[] runStarts = new int[numRuns];
+                    int[] runEnds = new int[numRuns];
+                    byte[] runBases = new byte[numRuns];
+                    for (int r = 0; r < numRuns; r++) {
+                        runStarts[r] = in.readInt();
+                        runEnds[r] = in.readInt();
+                        runBases[r] = in.readByte();
+                    }
+                    int numLower = in.readInt();
+                    int[] lowerStarts = new int[numLower];
+                    int[] lowerEnds = new int[numLower];
+                    for (int r = 0; r < numLower; r++) {
+                        lowerStarts[r] = in.readInt();
+                        lowerEnds[r] = in.readInt();
+                    }
+
+                    Chromosome chromosome = new Chromosome(name, length, packedOffset, runStarts, runEnds, runBases, lowerStarts, lowerEnds);
+                    chromosome.packed = channel.map(FileChannel.MapMode.READ_ONLY, packedOffset, (length + 3L) / 4);
+                    chromosomes.put(name, chromosome);
+                    chromosomeNames.add(name);
+                }
+            }
+            return new PackedReference(channel, chromosomes, chromosomeNames);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Thread-safe (absolute bulk reads of the mapped bases only).
+     * @param start 1-based
+     * @param end 1-based, end-inclusive (as IndexedFastaSequenceFile.getSubsequenceAt)
+     */
+    public String getSequence(String name, long start, long end) {
+        Chromosome chromosome = chromosomes.get(name);
+        if (chromosome == null) throw new IllegalArgumentException("Unknown chromosome " + name);
+        if (start < 1 || end > chromosome.length || end < start - 1) {
+            throw new IllegalArgumentException("Region " + name + ":" + start + "-" + end + " outside of the chromosome (length " + chromosome.length + ")");
+        }
+
+        int from = (int) (start - 1);  // 0-based, end-exclusive
+        int to = (int) end;
+        byte[] sequence = new byte[to - from];
+        // bulk copy of the packed bytes, then per byte: unaligned head, whole bytes (4 bases by table lookup), tail
+        byte[] packed = new byte[to > from ? ((to - 1) >>> 2) - (from >>> 2) + 1 : 0];
+        chromosome.packed.get(from >>> 2, packed);
+
+        int position = from;
+        int i = 0;
+        while (position < to && (position & 3) != 0) {
+            sequence[i++] = BASES[(packed[0] >>> (6 - 2 * (position & 3))) & 3];
+            position++;
+        }
+        int packedIndex = (position >>> 2) - (from >>> 2);
+        while (to - position >= 4) {
+            int decoded = 4 * (packed[packedIndex++] & 0xFF);
+            sequence[i] = DECODED[decoded];
+            sequence[i + 1] = DECODED[decoded + 1];
+            sequence[i + 2] = DECODED[decoded + 2];
+            sequence[i + 3] = DECODED[decoded + 3];
+            i += 4;
+            position += 4;
+        }
+        while (position < to) {
+            sequence[i++] = BASES[(packed[packedIndex] >>> (6 - 2 * (position & 3))) & 3];
+            position++;
+        }
+
+        // other characters, then soft-masking
+        for (int r = firstRun(chromosome.runEnds, from); r < chromosome.runStarts.length && chromosome.runStarts[r] < to; r++) {
+            Arrays.fill(sequence, Math.max(from, chromosome.runStarts[r]) - from, Math.min(to, chromosome.runEnds[r]) - from,
+                    chromosome.runBases[r]);
+        }
+        for (int r = firstRun(chromosome.lowerEnds, from); r < chromosome.lowerStarts.length && chromosome.lowerStarts[r] < to; r++) {
+            for (int p = Math.max(from, chromosome.lowerStarts[r]); p < Math.min(to, chromosome.lowerEnds[r]); p++) {
+                sequence[p - from] |= 0x20;
+            }
+        }
+        return new String(sequence, StandardCharsets.ISO_8859_1);
+    }
+
+    /** @return index of the first run ending after the position (runs are sorted and do not overlap) */
+    private static int firstRun(int[] runEnds, int position) {
+        int index = Arrays.binarySearch(runEnds, position + 1);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    // Getter and Setter
+    public ArrayList<String> getChromosomes() {
+        return chromosomeNames;
+    }
+
+    /** @return length of the chromosome, -1 if it is not in the reference */
+    public long getChromosomeLength(String name) {
+        Chromosome chromosome = chromosomes.get(name);
+        return chromosome == null ? -1 : chromosome.length;
+    }
+
+
+    private static class Chromosome {
+        private final String name;
+        private final int length;
+        private final long packedOffset;
+        private final int[] runStarts;  // 0-based, end-exclusive, sorted
+        private final int[] runEnds;
+        private final byte[] runBases;
+        private final int[] lowerStarts;
+        private final int[] lowerEnds;
+        private MappedByteBuffer packed;  // set when reading
+        private byte[] packedForWrite;  // set when converting
+
+        private Chromosome(String name, int length, long packedOffset, int[] runStarts, int[] runEnds, byte[] runBases,
+                           int[] lowerStarts, int[] lowerEnds) {
+            this.name = name;
+            this.length = length;
+            this.packedOffset = packedOffset;
+            this.runStarts = runStarts;
+            this.runEnds = runEnds;
+            this.runBases = runBases;
+            this.lowerStarts = lowerStarts;
+            this.lowerEnds = lowerEnds;
+        }
+    }
+}
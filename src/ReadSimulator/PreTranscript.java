@@ -1,53 +1,87 @@
 package ReadSimulator;
 
-import BaseComponents.Exon;
-import java.util.Comparator;
-import java.util.TreeSet;
+import BaseComponents.SymbolTable;
+import BaseComponents.Transcript;
 
+/**
+ * Transcript of the simulation: chromosome and strand plus the frozen exons (1-based, end-exclusive, sorted by start).
+ * The exons are collected with PreTranscript.Builder while the GTF or the snapshot is read.
+ */
 public class PreTranscript {
-    private final String chromosome;
-    private final String strandDirection;
-    private final String transcriptID;
-    private final TreeSet<Exon> exons;
-    private int transcriptLength;
-    private boolean tooShort;
+    private final int chromosome;  // SymbolTable.CHROMOSOMES
+    private final char strand;
+    private final Transcript transcript;
 
-    public PreTranscript(String chr, String strandDirection, String geneID, String transcriptID){
-        this.chromosome = chr;
-        this.strandDirection = strandDirection;
-        this.transcriptID = transcriptID;
-        exons = new TreeSet<>(Comparator.comparingLong(Exon::getStartGenomic));
-        this.tooShort = false;
+    public PreTranscript(String chr, String strandDirection, Transcript transcript){
+        this.chromosome = SymbolTable.CHROMOSOMES.intern(chr);
+        this.strand = SymbolTable.strand(strandDirection);
+        this.transcript = transcript;
     }
 
-
-    // Getter and Setter
-    public TreeSet<Exon> getExons() {
-        return exons;
+    /** @return true if no read of the length fits into the spliced transcript */
+    public boolean isTooShort(int readLength) {
+        return transcript.getLength() < readLength;
     }
 
-    public void setTranscriptLength(int transcriptLength, int readLength) {
-        this.transcriptLength = transcriptLength;
-        if(transcriptLength < readLength) tooShort = true;
+
+    // Getter and Setter
+    public Transcript getTranscript() {
+        return transcript;
     }
 
     public long getTranscriptLength() {
-        return transcriptLength;
+        return transcript.getLength();
     }
 
     public String getStrandDirection() {
-        return strandDirection;
+        return String.valueOf(strand);
+    }
+
+    public char getStrand() {
+        return strand;
+    }
+
+    public boolean isPositiveStrand() {
+        return strand == '+';
     }
 
     public String getChromosome() {
+        return SymbolTable.CHROMOSOMES.resolve(chromosome);
+    }
+
+    public int getChromosomeSymbol() {
         return chromosome;
     }
 
     public String getTranscriptID() {
-        return transcriptID;
+        return transcript.getID();
+    }
+
+    public int getTranscriptSymbol() {
+        return transcript.getIDSymbol();
     }
 
-    public boolean getTooShort(){
-        return tooShort;
+
+    /** Collects the exons of a transcript in any order; build() freezes them */
+    public static class Builder {
+        private final String chromosome;
+        private final String strandDirection;
+        private final Transcript.Builder transcript;
+
+        public Builder(String chr, String strandDirection, String transcriptID) {
+            this.chromosome = chr;
+            this.strandDirection = strandDirection;
+            this.transcript = new Transcript.Builder(transcriptID, "");
+        }
+
+        /** @param end exclusive */
+        public Builder addExon(int start, int end) {
+            transcript.addExon(start, end);
+            return this;
+        }
+
+        public PreTranscript build() {
+            return new PreTranscript(chromosome, strandDirection, transcript.build());
+        }
     }
 }
@@ -0,0 +1,185 @@
+package ReadSimulator;
+
+import BaseComponents.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Reads the exons of the transcripts from the GTF for ReadSimulator and ReadSimulatorPlots.
+ * With snapshots enabled all transcripts are stored in a binary snapshot next to the GTF,
+ * so later runs (also with other readcounts) skip the text parsing.
+ */
+public abstract class PreTranscriptLoader {
+
+    /**
+     * @param transcriptIDs transcripts to keep (the ones in the readcounts-file)
+     * @param chromosomes chromosomes to keep (the ones in the FASTA index)
+     * @return transcript id -> PreTranscript with its exons (1-based, end-exclusive)
+     */
+    public static HashMap<String, PreTranscript> load(String gtfFilePath, Set<String> transcriptIDs, Collection<String> chromosomes, boolean useSnapshot) {
+        return load(gtfFilePath, transcriptIDs, chromosomes, useSnapshot, null);
+    }
+
+    /**
+     * @param selection only the transcripts of these genes are read, with the GTF index instead of the snapshot;
+     *                  null := all genes
+     */
+    public static HashMap<String, PreTranscript> load(String gtfFilePath, Set<String> transcriptIDs, Collection<String> chromosomes,
+                                                      boolean useSnapshot, GeneSelection selection) {
+        HashSet<String> chromosomeSet = new HashSet<>(chromosomes);
+        if (selection != null && !selection.isEmpty()) {
+            ExonCollector collector = new ExonCollector(transcriptIDs::contains, chromosomeSet);
+            try {
+                GTFIndex.read(gtfFilePath, selection, collector);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return collector.finish();
+        }
+        if (!useSnapshot) return parse(gtfFilePath, transcriptIDs::contains, chromosomeSet);
+
+        LinkedHashMap<String, PreTranscript> allPreTranscripts;
+        try {
+            AnnotationSnapshot snapshot = new AnnotationSnapshot(gtfFilePath, AnnotationSnapshot.KIND_EXON);
+            AnnotationSnapshot.Reader reader = snapshot.open();
+            if (reader != null) {
+                allPreTranscripts = read(reader);
+            } else {
+                allPreTranscripts = parse(gtfFilePath, id -> true, null);
+                write(snapshot, allPreTranscripts);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return parse(gtfFilePath, transcriptIDs::contains, chromosomeSet);
+        }
+
+        HashMap<String, PreTranscript> transcriptId2preTranscript = new HashMap<>();
+        for (PreTranscript preTranscript : allPreTranscripts.values()) {
+            if (transcriptIDs.contains(preTranscript.getTranscriptID()) && chromosomeSet.contains(preTranscript.getChromosome())) {
+                transcriptId2preTranscript.put(preTranscript.getTranscriptID(), preTranscript);
+            }
+        }
+        return transcriptId2preTranscript;
+    }
+
+    /**
+     * @param chromosomes null := all chromosomes
+     */
+    private static LinkedHashMap<String, PreTranscript> parse(String gtfFilePath, Predicate<String> keepTranscript, Set<String> chromosomes) {
+        ExonCollector collector = new ExonCollector(keepTranscript, chromosomes);
+        try {
+            MappedGTFReader.read(gtfFilePath, collector);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return collector.finish();
+    }
+
+    /**
+     * Collects the exon entries of the GTF. Only transcript_id is decoded from the attributes
+     * (lazily, via GTFAttributes), and only when the line belongs to another transcript than the line before.
+     * The exons are frozen into the PreTranscripts by finish().
+     */
+    private static class ExonCollector implements Consumer<GTFRecord> {
+        private final LinkedHashMap<String, PreTranscript.Builder> transcriptId2preTranscript = new LinkedHashMap<>();
+        private final Predicate<String> keepTranscript;
+        private final Set<String> chromosomes;
+
+        // decisions for the last chromosome and transcript, consecutive lines mostly share them
+        private String lastChromosome;
+        private boolean lastChromosomeKept;
+        private String lastTranscriptID;
+        private PreTranscript.Builder lastPreTranscript;  // null := transcript is not kept
+
+        private ExonCollector(Predicate<String> keepTranscript, Set<String> chromosomes) {
+            this.keepTranscript = keepTranscript;
+            this.chromosomes = chromosomes;
+        }
+
+        @Override
+        public void accept(GTFRecord record) {
+            if (chromosomes != null) {
+                if (lastChromosome == null || !record.columnEquals(GTFRecord.CHROMOSOME, lastChromosome)) {
+                    lastChromosome = record.getChromosome();
+                    lastChromosomeKept = chromosomes.contains(lastChromosome.trim());
+                }
+                if (!lastChromosomeKept) return;
+            }
+            if (!record.featureStartsWith("exon")) return;
+
+            GTFAttributes attributes = record.getAttributes();
+            if (lastTranscriptID == null || !attributes.valueEquals("transcript_id", lastTranscriptID)) {
+                String currentTranscriptID = attributes.get("transcript_id");
+                if (currentTranscriptID == null) return;
+
+                lastTranscriptID = currentTranscriptID;
+                lastPreTranscript = null;
+                if (keepTranscript.test(currentTranscriptID)) {
+                    lastPreTranscript = transcriptId2preTranscript.get(currentTranscriptID);
+                    if (lastPreTranscript == null) {  // if the transcript has not been defined => do it
+                        lastPreTranscript = new PreTranscript.Builder(record.getChromosome(), record.getStrand(), currentTranscriptID);
+                        transcriptId2preTranscript.put(currentTranscriptID, lastPreTranscript);
+                    }
+                }
+            }
+
+            if (lastPreTranscript != null) {
+                lastPreTranscript.addExon(record.getStart(), record.getEnd() + 1);  // 1-based, end-exclusive
+            }
+        }
+
+        /** @return transcript id -> PreTranscript, in the order of the first exon line */
+        private LinkedHashMap<String, PreTranscript> finish() {
+            LinkedHashMap<String, PreTranscript> preTranscripts = new LinkedHashMap<>();
+            for (Map.Entry<String, PreTranscript.Builder> entry : transcriptId2preTranscript.entrySet()) {
+                preTranscripts.put(entry.getKey(), entry.getValue().build());
+            }
+            return preTranscripts;
+        }
+    }
+
+    private static void write(AnnotationSnapshot snapshot, LinkedHashMap<String, PreTranscript> preTranscripts) {
+        try (AnnotationSnapshot.Writer writer = snapshot.create()) {
+            writer.writeInt(preTranscripts.size());
+            for (PreTranscript preTranscript : preTranscripts.values()) {
+                writer.writeString(preTranscript.getChromosome());
+                writer.writeString(preTranscript.getStrandDirection());
+                writer.writeString(preTranscript.getTranscriptID());
+
+                Transcript transcript = preTranscript.getTranscript();
+                writer.writeInt(transcript.getNumExons());
+                for (int e = 0; e < transcript.getNumExons(); e++) {
+                    writer.writeInt(transcript.getExonStart(e));
+                    writer.writeInt(transcript.getExonEnd(e));
+                }
+            }
+            writer.commit();
+        } catch (IOException e) {
+            System.err.println("Could not write snapshot " + snapshot.getSnapshotPath() + ": " + e.getMessage());
+        }
+    }
+
+    private static LinkedHashMap<String, PreTranscript> read(AnnotationSnapshot.Reader reader) {
+        LinkedHashMap<String, PreTranscript> transcriptId2preTranscript = new LinkedHashMap<>();
+
+        int numTranscripts = reader.readInt();
+        for (int t = 0; t < numTranscripts; t++) {
+            String chromosome = reader.readString();
+            String strand = reader.readString();
+            String transcriptID = reader.readString();
+            PreTranscript.Builder preTranscript = new PreTranscript.Builder(chromosome, strand, transcriptID);
+
+            int numExons = reader.readInt();
+            for (int e = 0; e < numExons; e++) {
+                preTranscript.addExon(reader.readInt(), reader.readInt());
+            }
+            transcriptId2preTranscript.put(transcriptID, preTranscript.build());
+        }
+
+        return transcriptId2preTranscript;
+    }
+}
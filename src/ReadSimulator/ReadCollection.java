@@ -1,34 +1,36 @@
 package ReadSimulator;
 
+import BaseComponents.SymbolTable;
+
 public class ReadCollection {
-    private String chromosome;
-    private String originGeneID;
-    private String originTranscriptID;
+    private int chromosome = SymbolTable.NONE;  // SymbolTable.CHROMOSOMES
+    private int originGeneID = SymbolTable.NONE;  // SymbolTable.GENE_IDS
+    private int originTranscriptID = SymbolTable.NONE;  // SymbolTable.TRANSCRIPT_IDS
     private int numReads;
 
     public ReadCollection(){}
 
     public ReadCollection(String gene, String originTranscript, int reads) {
-        this.originGeneID = gene;
-        this.originTranscriptID = originTranscript;
+        this.originGeneID = SymbolTable.GENE_IDS.intern(gene);
+        this.originTranscriptID = SymbolTable.TRANSCRIPT_IDS.intern(originTranscript);
         this.numReads = reads;
     }
 
     // Getter and Setter
-    public void setChromosome(String chromosome) {
+    public void setChromosome(int chromosome) {
         this.chromosome = chromosome;
     }
 
     public String getChromosome() {
-        return chromosome;
+        return SymbolTable.CHROMOSOMES.resolve(chromosome);
     }
 
     public String getOriginGeneID() {
-        return originGeneID;
+        return SymbolTable.GENE_IDS.resolve(originGeneID);
     }
 
     public String getOriginTranscriptID() {
-        return originTranscriptID;
+        return SymbolTable.TRANSCRIPT_IDS.resolve(originTranscriptID);
     }
 
     public int getNumReads() {
@@ -1,21 +1,24 @@
 package ReadSimulator;
 
-import BaseComponents.Exon;
+import BaseComponents.GeneSelection;
 import BaseComponents.Interval;
+import BaseComponents.PhaseMetrics;
 import BaseComponents.Read;
+import BaseComponents.Transcript;
 import BaseComponents.Utils;
-import htsjdk.samtools.reference.FastaSequenceIndex;
-import htsjdk.samtools.reference.IndexedFastaSequenceFile;
-import htsjdk.samtools.reference.ReferenceSequence;
 import java.io.File;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
-import org.apache.commons.math3.distribution.NormalDistribution;
-
 public class ReadSimulator {
+    private static final int LOCI_PER_THREAD = 4;  // loci simulated ahead of the writer
+
     // command line inputs
     private final String readCountsFilePath;
     private final String fastaFilePath;
@@ -29,8 +32,15 @@ public class ReadSimulator {
     private final HashMap<String, ReadCollection> transcriptID2ReadCollection;
     private final HashMap<String, PreTranscript> transcriptId2preTranscript;
 
-    private final NormalDistribution distribution;
+    private final double fragmentLengthMean;
+    private final double fragmentLengthSD;
     private final FASTAIndex FASTAIndexFile;
+    private boolean useSnapshot = true;
+    private long referenceCacheBytes = ReferenceReader.DEFAULT_CACHE_BYTES;
+    private GeneSelection selection;  // null := all genes
+    private PhaseMetrics metrics = PhaseMetrics.NONE;
+    private int threads = 1;
+    private long seed = new SplittableRandom().nextLong();  // a different simulation per run, unless setSeed
 
     private final String fwFastqPath;
     private final String rwFastqPath;
@@ -48,7 +58,8 @@ public class ReadSimulator {
 
         this.transcriptID2ReadCollection = new HashMap<>();
         this.transcriptId2preTranscript = new HashMap<>();
-        this.distribution = new NormalDistribution(frlength, SD);
+        this.fragmentLengthMean = frlength;
+        this.fragmentLengthSD = SD;
         FASTAIndexFile = new FASTAIndex(findxFilePath);
 
         this.fwFastqPath = outputPath + File.separator + "fw.fastq";
@@ -64,10 +75,44 @@ public class ReadSimulator {
         }
     }
 
+    /** false := always parse the GTF, without reading or writing its snapshot */
+    public void setUseSnapshot(boolean useSnapshot) {
+        this.useSnapshot = useSnapshot;
+    }
+
+    /** memory budget of the cached reference slices, see ReferenceReader */
+    public void setReferenceCacheBytes(long referenceCacheBytes) {
+        this.referenceCacheBytes = referenceCacheBytes;
+    }
+
+    /** number of threads simulating the loci; the output does not depend on it */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /** master seed: the same seed (and input) gives the same reads, fragments and mutations */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /** only simulate reads for the transcripts of these genes (-region/-genes), read via the GTF index */
+    public void setSelection(GeneSelection selection) {
+        this.selection = selection;
+    }
+
+    /**
+     * record the phases readcounts_load, gtf_load, rng_setup, fasta_extraction, splicing, read_generation and writing
+     * (and the counter loci); fasta_extraction, splicing and read_generation are timed per transcript, writing per locus
+     */
+    public void setMetrics(PhaseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /** create a ReadCollection object for each line in readcounts-file */
-    protected void defineReadCollections() {
+    public void defineReadCollections() {
         ReadCollection collection;
-        try (BufferedReader br = new BufferedReader(new FileReader(readCountsFilePath))) {
+        try (PhaseMetrics.Timer timer = metrics.start("readcounts_load");
+             BufferedReader br = new BufferedReader(new FileReader(readCountsFilePath))) {
             String line;
             while ((line = br.readLine()) != null){
                 String[] elements = line.split("\t");
@@ -76,171 +121,164 @@ public class ReadSimulator {
 
                 collection = new ReadCollection(elements[0], elements[1], Integer.parseInt(elements[2]));
                 transcriptID2ReadCollection.put(elements[1], collection);
+                timer.addItems(1);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    /** extract all needed information from the GTF, needed for read extraction */
-    protected void definePreTranscriptsFromGTF(){
-        try (BufferedReader br = new BufferedReader(new FileReader(gtfFilePath))) {
-            String line;
-            while ((line = br.readLine()) != null){
-                int firstTab = line.indexOf("\t");
-                if (firstTab != -1) {
-                    if(!FASTAIndexFile.getChromosomes().contains(line.substring(0, firstTab).trim())) continue;
-                    int secondTab = line.indexOf("\t", firstTab + 1);
-                    if (secondTab != -1) {
-                        String afterSecondTab = line.substring(secondTab + 1);
-
-                        if (afterSecondTab.startsWith("exon")){
-                            String[] values = line.split("\t");
-                            String[] attributes = values[8].split("; ");
-
-                            String currentTranscriptID = null;
-                            String currentGeneID = null;
-
-                            for(String attr: attributes){
-                                if(attr.startsWith("gene_id")){
-                                    currentGeneID = attr.substring(attr.indexOf(" ") + 1).replace("\"", "").replace(";", "");
-                                } else if(attr.startsWith("transcript_id")){
-                                    currentTranscriptID = attr.substring(attr.indexOf(" ") + 1).replace("\"", "").replace(";", "");
-                                }
-
-                                if(currentGeneID != null && currentTranscriptID != null) break;
-                            }
-
-                            if(!transcriptID2ReadCollection.containsKey(currentTranscriptID)) continue;
-                            if(currentGeneID == null){
-                                currentGeneID = attributes[0].split(" ")[2].replace("\"", "").replace(";", "");
-                            }
-
-                            if(!transcriptId2preTranscript.containsKey(currentTranscriptID)){ // if the transcript has not been defined => do it
-                                PreTranscript preTranscript = new PreTranscript(values[0], values[6], currentGeneID, currentTranscriptID);
-                                transcriptId2preTranscript.put(currentTranscriptID, preTranscript);
-                            }
-                            this.transcriptId2preTranscript.get(currentTranscriptID).getExons().add(new Exon(Integer.parseInt(values[3]), Integer.parseInt(values[4]) + 1));  // 1-based, end-exclusive
-                        }
-                    }
-                }
-
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    /** extract all needed information from the GTF (or its snapshot), needed for read extraction */
+    public void definePreTranscriptsFromGTF(){
+        try (PhaseMetrics.Timer timer = metrics.start("gtf_load")) {
+            transcriptId2preTranscript.putAll(PreTranscriptLoader.load(gtfFilePath, transcriptID2ReadCollection.keySet(),
+                    FASTAIndexFile.getChromosomes(), useSnapshot, selection));
+            timer.addItems(transcriptId2preTranscript.size());
         }
     }
 
     /**
-     * Iteration through all transcripts and for each one:
-     * 1. Define relative coordinated to each exon
-     * 2. extract pre-transcript sequence from FASTA file using FASTA Index file
-     * 3. modify pre-transcript sequence - remove introns
+     * Iteration through all transcripts (in the order of the LocusSchedule) and for each one:
+     * 1. skip transcripts shorter than the read length; split its random stream and number its reads
+     * 2. reference sequence of the locus (LocusSchedule: transcripts in genomic order, one fetch per locus)
+     * 3. splice: slice the exons out of the locus sequence
      * 4. get the corresponding ReadCollection object; for each read-object define the fragment and read indexes
      * 5. output
+     * Step 1 runs in schedule order, steps 2 to 4 run per locus on -threads threads and step 5 writes the loci in
+     * schedule order again, so the reads and their ids only depend on the seed, not on the number of threads.
      **/
-    protected void modifyPreTranscript() throws Exception {
-        // declare variables to avoid excessive memory allocation
-        int readCounter = 0;
-        StringBuilder outputFwFASTQ;
-        StringBuilder outputRwFASTQ;
-        StringBuilder outputReadMapping;
-        ArrayList<Interval> fwGenomicRegions;
-        ArrayList<Interval> rwGenomicRegions;
-
-        for(PreTranscript preTr: transcriptId2preTranscript.values()){
-            // 1. define relative coordinates exons
-            int transcriptLength = 0;
-            int startRelativeIndex = 0;
-
-            for(Exon sortedExon: preTr.getExons()){
-                sortedExon.setStartRelative(startRelativeIndex);
-                int endRelative = startRelativeIndex + sortedExon.getLength();
-                sortedExon.setEndRelative(endRelative);
-                startRelativeIndex = endRelative;
-                transcriptLength += sortedExon.getLength();
+    public void modifyPreTranscript() throws Exception {
+        try (ReferenceReader reference = new ReferenceReader(fastaFilePath, findxFilePath, FASTAIndexFile, referenceCacheBytes)) {
+            modifyPreTranscript(reference);
+            if (reference.getMisses() > 0) {  // not for a packed reference
+                metrics.count("reference_cache_hits", reference.getHits());
+                metrics.count("reference_cache_misses", reference.getMisses());
             }
+        }
+    }
 
-            // if the length of the transcript is smaller than the read length => not possible to extract reads
-            preTr.setTranscriptLength(transcriptLength, readLength);
-            if(preTr.getTooShort()) {
-                transcriptID2ReadCollection.remove(preTr.getTranscriptID());  // there is no need to iterate it, no reads will be created from it
-                continue;
+    private void modifyPreTranscript(ReferenceReader reference) throws Exception {
+        LocusSchedule schedule = new LocusSchedule(transcriptId2preTranscript.values(), FASTAIndexFile.getChromosomes());
+        metrics.count("loci", schedule.getNumLoci());
+
+        // 1. one random stream per transcript, split from the seed in schedule order; the read ids are numbered up front
+        SplittableRandom[] transcriptRandoms = new SplittableRandom[schedule.size()];  // null := too short
+        long[] firstReadIds = new long[schedule.size()];
+        try (PhaseMetrics.Timer timer = metrics.start("rng_setup")) {
+            SplittableRandom seedRandom = new SplittableRandom(seed);
+            long readCounter = 0;
+            for(int t = 0; t < schedule.size(); t++){
+                PreTranscript preTr = schedule.get(t);
+
+                // if the length of the transcript is smaller than the read length => not possible to extract reads
+                if(preTr.isTooShort(readLength)) {
+                    transcriptID2ReadCollection.remove(preTr.getTranscriptID());  // there is no need to iterate it, no reads will be created from it
+                    continue;
+                }
+                transcriptRandoms[t] = seedRandom.split();
+                firstReadIds[t] = readCounter;
+                ReadCollection readCollection = transcriptID2ReadCollection.get(preTr.getTranscriptID());
+                if(readCollection != null) readCounter += readCollection.getNumReads();
             }
+            timer.addItems(schedule.size());
+        }
 
-            // 2. extract pre-transcript sequence from FASTA using FASTA Index
-            long preTranscriptStartGenomic = 0;
-            long preTranscriptEndGenomic = 0;
-
-            // 1-based and end-inclusive indexes
-            preTranscriptStartGenomic = preTr.getExons().getFirst().getStartGenomic();
-            preTranscriptEndGenomic = preTr.getExons().getLast().getEndGenomic() - 1;
+        int numLoci = schedule.getNumLoci();
+        try (
+                BufferedWriter fwWriter = new BufferedWriter(new FileWriter(fwFastqPath, true));
+                BufferedWriter rwWriter = new BufferedWriter(new FileWriter(rwFastqPath, true));
+                BufferedWriter mappingsWriter = new BufferedWriter(new FileWriter(readMappingsInfoPath, true))
+        ){
+            if (threads <= 1) {
+                for (int locus = 0; locus < numLoci; locus++) {
+                    writeLocusReads(simulateLocus(locus, schedule, reference, transcriptRandoms, firstReadIds), fwWriter, rwWriter, mappingsWriter);
+                }
+                return;
+            }
 
-            String preTranscriptSequence = "";
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
             try {
-                File fastaFile = new File(fastaFilePath);
-                File faiFile = new File(findxFilePath);
-                FastaSequenceIndex FASTAIndexFile = new FastaSequenceIndex(faiFile);
-                IndexedFastaSequenceFile FASTAFile = new IndexedFastaSequenceFile(fastaFile, FASTAIndexFile);
-
-                ReferenceSequence refSeq = FASTAFile.getSubsequenceAt(preTr.getChromosome(), preTranscriptStartGenomic, preTranscriptEndGenomic);
+                ArrayDeque<Future<LocusReads>> pending = new ArrayDeque<>();
+                int nextLocus = 0;
+                while (nextLocus < numLoci || !pending.isEmpty()) {
+                    // the reads of the submitted loci are kept in memory until they are written => bounded
+                    while (nextLocus < numLoci && pending.size() < LOCI_PER_THREAD * threads) {
+                        int locus = nextLocus++;
+                        pending.add(executor.submit(() -> simulateLocus(locus, schedule, reference, transcriptRandoms, firstReadIds)));
+                    }
+                    // 5. in schedule order; finished loci further down wait until all loci before them are written
+                    writeLocusReads(pending.poll().get(), fwWriter, rwWriter, mappingsWriter);
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) throw cause;
+                throw e;
+            } finally {
+                executor.shutdownNow();
+            }
+        }catch (IOException e) {
+            System.err.println("Error writing in files: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
-                // Output the sequence
-                preTranscriptSequence = refSeq.getBaseString();
-                FASTAFile.close();
+    /** steps 2 to 4 for the transcripts of one locus, see modifyPreTranscript */
+    private LocusReads simulateLocus(int locus, LocusSchedule schedule, ReferenceReader reference, SplittableRandom[] transcriptRandoms, long[] firstReadIds) throws Exception {
+        // declare variables to avoid excessive memory allocation
+        LocusReads output = new LocusReads();
+        ArrayList<Interval> fwGenomicRegions;
+        ArrayList<Interval> rwGenomicRegions;
+        String locusSequence = null;
+
+        for(int t = schedule.getLocusFirst(locus); t < schedule.getLocusFirst(locus + 1); t++){
+            SplittableRandom random = transcriptRandoms[t];
+            if(random == null) continue;  // too short
+            PreTranscript preTr = schedule.get(t);
+            Transcript transcript = preTr.getTranscript();
+
+            // 2. reference sequence of the locus (fetched for the first simulated transcript of the locus only)
+            try (PhaseMetrics.Timer ignored = metrics.start("fasta_extraction")) {
+                if(locusSequence == null) locusSequence = schedule.fetchLocusSequence(locus, reference);
+                ignored.addItems(preTr.getTranscriptLength());
             } catch (Exception e) {
                 e.printStackTrace();
             }
-
-            // 3. modify pre-transcript sequence - remove introns
-            StringBuilder preTranscriptStrBuilder = new StringBuilder(preTranscriptSequence);
-
-            Exon end5 = null;
-            int startPos = 0;
-            int endPos;
-            for(Exon end3: preTr.getExons()){
-                if(end5 == null){
-                    end5 = end3;
-                    startPos = end3.getLength();
-                    continue;
-                }
-
-                endPos = startPos + Math.abs(end3.getStartGenomic() - end5.getEndGenomic());
-                preTranscriptStrBuilder.replace(startPos, endPos, "-".repeat(endPos-startPos));
-                startPos = endPos + end3.getLength();
-                end5 = end3;
+            if(locusSequence == null) throw new Exception("No reference sequence for " + preTr.getTranscriptID());
+
+            // 3. splice: the exons (1-based, end-exclusive) out of the locus sequence
+            PhaseMetrics.Timer splicing = metrics.start("splicing");
+            int locusStart = schedule.getLocusStart(t);
+            StringBuilder preTranscriptStrBuilder = new StringBuilder((int) preTr.getTranscriptLength());
+            for(int e = 0; e < transcript.getNumExons(); e++){
+                preTranscriptStrBuilder.append(locusSequence, transcript.getExonStart(e) - locusStart, transcript.getExonEnd(e) - locusStart);
             }
 
-            preTranscriptSequence = preTranscriptStrBuilder.toString().replaceAll("-", "");
+            String preTranscriptSequence = preTranscriptStrBuilder.toString();
             if(preTranscriptSequence.length() != preTr.getTranscriptLength()) throw new Exception("Error while removing introns!");
+            splicing.stop(1);
 
             // 4. get the corresponding ReadCollection object; for each read-object define the fragment and read indexes
             ReadCollection readColCurTranscript = transcriptID2ReadCollection.get(preTr.getTranscriptID());
             Utils.checkIfNull(readColCurTranscript, new ReadCollection());
             if(readColCurTranscript == null) continue;
 
-            readColCurTranscript.setChromosome(preTr.getChromosome());
-
-            Read r;
-            // Add
-            outputFwFASTQ = new StringBuilder();
-            outputRwFASTQ = new StringBuilder();
-            outputReadMapping = new StringBuilder();
+            readColCurTranscript.setChromosome(preTr.getChromosomeSymbol());
+            PhaseMetrics.Timer generation = metrics.start("read_generation");
 
+            Read r = new Read(readLength, random);  // reused for all reads of the transcript
+            long readCounter = firstReadIds[t];
             for(int i = 0; i < readColCurTranscript.getNumReads(); i++){
-                r = new Read(readLength);
 
-                // determine fragment length
-                long fragmentLength = Math.round(distribution.sample());
+                // determine fragment length (normal distribution with mean frlength and SD)
+                long fragmentLength = Math.round(fragmentLengthMean + fragmentLengthSD * random.nextGaussian());
                 while(fragmentLength < readLength || fragmentLength > preTr.getTranscriptLength()) {
-                    fragmentLength = Math.round(distribution.sample());
+                    fragmentLength = Math.round(fragmentLengthMean + fragmentLengthSD * random.nextGaussian());
                 }
 
                 // determine fragment start
                 if(fragmentLength == preTr.getTranscriptLength()) {
-                    r.setFragmentStartRelative(0, (int)fragmentLength, (int)preTr.getTranscriptLength(), preTr.getStrandDirection());
+                    r.setFragmentStartRelative(0, (int)fragmentLength, (int)preTr.getTranscriptLength(), preTr.isPositiveStrand());
                 } else {
-                    r.setFragmentStartRelative(Math.max(0, new Random().nextInt((int)(preTr.getTranscriptLength() - fragmentLength))), (int)fragmentLength, (int)preTr.getTranscriptLength(), preTr.getStrandDirection());
+                    r.setFragmentStartRelative(Math.max(0, random.nextInt((int)(preTr.getTranscriptLength() - fragmentLength))), (int)fragmentLength, (int)preTr.getTranscriptLength(), preTr.isPositiveStrand());
                 }
 
                 // get genomic region vectors
@@ -251,7 +289,7 @@ public class ReadSimulator {
                 String leftEnd = preTranscriptSequence.substring(r.getFwStartRelative(), r.getFwEndRelative());
                 String rightEnd = Utils.getReverseComplement(new StringBuilder(preTranscriptSequence.substring(r.getRwStartRelative(), r.getRwEndRelative())));
 
-                if(preTr.getStrandDirection().equals("+")){
+                if(preTr.isPositiveStrand()){
                     r.setFw(leftEnd, mutationRate);
                     r.setRw(rightEnd, mutationRate);
                 } else {
@@ -259,75 +297,75 @@ public class ReadSimulator {
                     r.setRw(leftEnd, mutationRate);
                 }
 
-                if(preTr.getStrandDirection().equals("-")){
-                    outputFwFASTQ.append("@" + readCounter + "\n" + r.getFw() + "\n" + "+" + readCounter + "\n" + "I".repeat(r.getReadLength()) + "\n");
-                    outputRwFASTQ.append("@" + readCounter + "\n" + r.getRw() + "\n" + "+" + readCounter + "\n" + "I".repeat(r.getReadLength()) + "\n");
-                    outputReadMapping.append(readCounter + "\t" + readColCurTranscript.getChromosome() + "\t" + readColCurTranscript.getOriginGeneID() + "\t" + readColCurTranscript.getOriginTranscriptID() +
+                if(preTr.getStrand() == '-'){
+                    output.fwFASTQ.append("@" + readCounter + "\n" + r.getFw() + "\n" + "+" + readCounter + "\n" + "I".repeat(r.getReadLength()) + "\n");
+                    output.rwFASTQ.append("@" + readCounter + "\n" + r.getRw() + "\n" + "+" + readCounter + "\n" + "I".repeat(r.getReadLength()) + "\n");
+                    output.readMapping.append(readCounter + "\t" + readColCurTranscript.getChromosome() + "\t" + readColCurTranscript.getOriginGeneID() + "\t" + readColCurTranscript.getOriginTranscriptID() +
                             "\t" + rwGenomicRegions.stream().map(Interval::toString).collect(Collectors.joining("|")) + "\t" + fwGenomicRegions.stream().map(Interval::toString).collect(Collectors.joining("|")) + "\t" + r.getRwTrStartRelative() + "-" + r.getRwTrEndRelative() + "\t" + r.getFwTrStartRelative() + "-" + r.getFwTrEndRelative() + "\t" +
-                            r.getMutationsfw().stream().map(String::valueOf).collect(Collectors.joining(", ")) + "\t" +
-                            r.getMutationsrw().stream().map(String::valueOf).collect(Collectors.joining(", ")) + "\n");
+                            r.getMutationsfwString() + "\t" +
+                            r.getMutationsrwString() + "\n");
                 } else {
-                    outputFwFASTQ.append("@" + readCounter + "\n" + r.getFw() + "\n" + "+" + readCounter + "\n" + "I".repeat(r.getReadLength()) + "\n");
-                    outputRwFASTQ.append("@" + readCounter + "\n" + r.getRw() + "\n" + "+" + readCounter + "\n" + "I".repeat(r.getReadLength()) + "\n");
-                    outputReadMapping.append(readCounter + "\t" + readColCurTranscript.getChromosome() + "\t" + readColCurTranscript.getOriginGeneID() + "\t" + readColCurTranscript.getOriginTranscriptID() +
+                    output.fwFASTQ.append("@" + readCounter + "\n" + r.getFw() + "\n" + "+" + readCounter + "\n" + "I".repeat(r.getReadLength()) + "\n");
+                    output.rwFASTQ.append("@" + readCounter + "\n" + r.getRw() + "\n" + "+" + readCounter + "\n" + "I".repeat(r.getReadLength()) + "\n");
+                    output.readMapping.append(readCounter + "\t" + readColCurTranscript.getChromosome() + "\t" + readColCurTranscript.getOriginGeneID() + "\t" + readColCurTranscript.getOriginTranscriptID() +
                             "\t" + fwGenomicRegions.stream().map(Interval::toString).collect(Collectors.joining("|")) + "\t" + rwGenomicRegions.stream().map(Interval::toString).collect(Collectors.joining("|")) + "\t" + r.getFwTrStartRelative() + "-" + r.getFwTrEndRelative() + "\t" + r.getRwTrStartRelative() + "-" + r.getRwTrEndRelative() + "\t" +
-                            r.getMutationsfw().stream().map(String::valueOf).collect(Collectors.joining(", ")) + "\t" +
-                            r.getMutationsrw().stream().map(String::valueOf).collect(Collectors.joining(", ")) + "\n");
+                            r.getMutationsfwString() + "\t" +
+                            r.getMutationsrwString() + "\n");
                 }
                 readCounter++;
             }
 
-            // 5. output format
-            addStringBuilders(outputFwFASTQ, outputRwFASTQ, outputReadMapping);
+            generation.stop(readColCurTranscript.getNumReads());
+            output.numReads += readColCurTranscript.getNumReads();
         }
+        return output;
     }
 
-    /** append output string */
-    private void addStringBuilders(StringBuilder fwQ, StringBuilder rwQ, StringBuilder readM){
-        try (
-                BufferedWriter fwWriter = new BufferedWriter(new FileWriter(fwFastqPath, true));
-                BufferedWriter rwWriter = new BufferedWriter(new FileWriter(rwFastqPath, true));
-                BufferedWriter mappingsWriter = new BufferedWriter(new FileWriter(readMappingsInfoPath, true))
-        ){
-            fwWriter.write(fwQ.toString());
-            rwWriter.write(rwQ.toString());
-            mappingsWriter.write(readM.toString());
-        }catch (IOException e) {
-            System.err.println("Error writing in files: " + e.getMessage());
-            e.printStackTrace();
+    /** 5. append the output of a locus */
+    private void writeLocusReads(LocusReads locusReads, BufferedWriter fwWriter, BufferedWriter rwWriter, BufferedWriter mappingsWriter) throws IOException {
+        try (PhaseMetrics.Timer writing = metrics.start("writing")) {
+            fwWriter.append(locusReads.fwFASTQ);
+            rwWriter.append(locusReads.rwFASTQ);
+            mappingsWriter.append(locusReads.readMapping);
+            writing.addItems(locusReads.numReads);
         }
     }
 
-    /** get genomic regions for reads*/
-    private ArrayList<Interval> regionVectors(int readStart, int readEnd, PreTranscript preTr){
+    /** get genomic regions for reads; the exon of the read start is found by binary search over the exon offsets */
+    public ArrayList<Interval> regionVectors(int readStart, int readEnd, PreTranscript preTr){
         ArrayList<Interval> fwGenomicRegions = new ArrayList<>();
+        Transcript transcript = preTr.getTranscript();
 
-        // for(Exon ad: preTr.getExons()) System.out.println(Utils.GREEN + ad + Utils.RESET);
+        // to locate the start (in which exon)
+        int e = transcript.findExonAt(readStart);
+        if(e < 0) return fwGenomicRegions;
 
-        for(Exon e: preTr.getExons()){
-            // to locate the start (in which exon)
-            if(readStart < e.getEndRelative()){ // special cases, 1. read == exon; 2. whole read is in one exon
-                if(readEnd <= e.getEndRelative()){  // read completely in Exon
-                    fwGenomicRegions.add(new Interval(e.getStartGenomic() + (readStart - e.getStartRelative()), e.getStartGenomic() + (readStart - e.getStartRelative()) + readLength));
-                    break;
-                }
+        int startRelative = transcript.getExonOffset(e);
+        if(readEnd <= transcript.getExonOffset(e + 1)){  // read completely in Exon
+            fwGenomicRegions.add(new Interval(transcript.getExonStart(e) + (readStart - startRelative), transcript.getExonStart(e) + (readStart - startRelative) + readLength));
+            return fwGenomicRegions;
+        }
 
-                // otherwise read continues in the next exon
-                fwGenomicRegions.add(new Interval(e.getStartGenomic() + (readStart-e.getStartRelative()), e.getEndGenomic()));
+        // otherwise read continues in the next exon
+        fwGenomicRegions.add(new Interval(transcript.getExonStart(e) + (readStart - startRelative), transcript.getExonEnd(e)));
 
-                e = preTr.getExons().higher(e);
-                if(e != null){
-                    while(readEnd > e.getEndRelative()){
-                        fwGenomicRegions.add(new Interval(e.getStartGenomic(), e.getEndGenomic()));
-                        e = preTr.getExons().higher(e);
-                        if (e == null) System.err.println("End of read not found!");
-                    }
-                    fwGenomicRegions.add(new Interval(e.getStartGenomic(), e.getStartGenomic() + (readEnd-e.getStartRelative())));
-                    break;
-                } else System.err.println("End of read not found!");
+        for(e++; e < transcript.getNumExons(); e++){
+            if(readEnd <= transcript.getExonOffset(e + 1)){
+                fwGenomicRegions.add(new Interval(transcript.getExonStart(e), transcript.getExonStart(e) + (readEnd - transcript.getExonOffset(e))));
+                return fwGenomicRegions;
             }
+            fwGenomicRegions.add(new Interval(transcript.getExonStart(e), transcript.getExonEnd(e)));
         }
+        System.err.println("End of read not found!");
         return fwGenomicRegions;
     }
-}
 
+
+    /** output of one locus, see simulateLocus */
+    private static class LocusReads {
+        private final StringBuilder fwFASTQ = new StringBuilder();
+        private final StringBuilder rwFASTQ = new StringBuilder();
+        private final StringBuilder readMapping = new StringBuilder();
+        private long numReads;
+    }
+}
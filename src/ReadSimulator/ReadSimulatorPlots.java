@@ -1,12 +1,10 @@
 package ReadSimulator;
 
-import BaseComponents.Exon;
+import BaseComponents.Histogram;
 import BaseComponents.Interval;
 import BaseComponents.Read;
+import BaseComponents.Transcript;
 import BaseComponents.Utils;
-import htsjdk.samtools.reference.FastaSequenceIndex;
-import htsjdk.samtools.reference.IndexedFastaSequenceFile;
-import htsjdk.samtools.reference.ReferenceSequence;
 import java.io.File;
 
 import java.io.*;
@@ -30,11 +28,13 @@ public class ReadSimulatorPlots {
 
     private final NormalDistribution distribution;
     private final FASTAIndex FASTAIndexFile;
+    private boolean useSnapshot = true;
+    private long referenceCacheBytes = ReferenceReader.DEFAULT_CACHE_BYTES;
 
-    // Save data for plots
-    ArrayList<Long> fragmentLengths;
-    ArrayList<Integer> numberOfMutations;
-    ArrayList<Integer> mutationPosition;
+    // Save data for plots: streaming histograms (one bin per value), the memory does not grow with the number of reads
+    Histogram fragmentLengths;
+    Histogram numberOfMutations;
+    Histogram mutationPosition;
     long numAllReads;
     long numNONSplit;
     long numNONSplitNOMm;
@@ -58,10 +58,21 @@ public class ReadSimulatorPlots {
         FASTAIndexFile = new FASTAIndex(findxFilePath);
 
         // plot attributes
-        this.fragmentLengths = new ArrayList<>();
-        this.numberOfMutations = new ArrayList<>();
+        // fragment lengths beyond mean + 6 SD are counted in the overflow bin
+        this.fragmentLengths = Histogram.fixed(0, 1, (int) Math.max(1, frlength + 6 * SD) + 1);
+        this.numberOfMutations = Histogram.fixed(0, 1, 2 * length + 1);
         this.numAllReads = 0;
-        this.mutationPosition = new ArrayList<>();
+        this.mutationPosition = Histogram.fixed(0, 1, Math.max(1, length));
+    }
+
+    /** false := always parse the GTF, without reading or writing its snapshot */
+    public void setUseSnapshot(boolean useSnapshot) {
+        this.useSnapshot = useSnapshot;
+    }
+
+    /** memory budget of the cached reference slices, see ReferenceReader */
+    public void setReferenceCacheBytes(long referenceCacheBytes) {
+        this.referenceCacheBytes = referenceCacheBytes;
     }
 
     /** create a ReadCollection object for each line in readcounts-file */
@@ -81,133 +92,61 @@ public class ReadSimulatorPlots {
         }
     }
 
-    /** extract all needed information from the GTF, needed for read extraction */
+    /** extract all needed information from the GTF (or its snapshot), needed for read extraction */
     protected void definePreTranscriptsFromGTF(){
-        try (BufferedReader br = new BufferedReader(new FileReader(gtfFilePath))) {
-            String line;
-            while ((line = br.readLine()) != null){
-                int firstTab = line.indexOf("\t");
-                if (firstTab != -1) {
-                    if(!FASTAIndexFile.getChromosomes().contains(line.substring(0, firstTab).trim())) continue;
-                    int secondTab = line.indexOf("\t", firstTab + 1);
-                    if (secondTab != -1) {
-                        String afterSecondTab = line.substring(secondTab + 1);
-
-                        if (afterSecondTab.startsWith("exon")){
-                            String[] values = line.split("\t");
-                            String[] attributes = values[8].split("; ");
-
-                            String currentTranscriptID = null;
-                            String currentGeneID = null;
-
-                            for(String attr: attributes){
-                                if(attr.startsWith("gene_id")){
-                                    currentGeneID = attr.substring(attr.indexOf(" ") + 1).replace("\"", "").replace(";", "");
-                                } else if(attr.startsWith("transcript_id")){
-                                    currentTranscriptID = attr.substring(attr.indexOf(" ") + 1).replace("\"", "").replace(";", "");
-                                }
-
-                                if(currentGeneID != null && currentTranscriptID != null) break;
-                            }
-
-                            if(!transcriptID2ReadCollection.containsKey(currentTranscriptID)) continue;
-                            if(currentGeneID == null){
-                                currentGeneID = attributes[0].split(" ")[2].replace("\"", "").replace(";", "");
-                            }
-
-                            if(!transcriptId2preTranscript.containsKey(currentTranscriptID)){ // if the transcript has not been defined => do it
-                                PreTranscript preTranscript = new PreTranscript(values[0], values[6], currentGeneID, currentTranscriptID);
-                                transcriptId2preTranscript.put(currentTranscriptID, preTranscript);
-                            }
-                            this.transcriptId2preTranscript.get(currentTranscriptID).getExons().add(new Exon(Integer.parseInt(values[3]), Integer.parseInt(values[4]) + 1));  // 1-based, end-exclusive
-                        }
-                    }
-                }
-
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        transcriptId2preTranscript.putAll(PreTranscriptLoader.load(gtfFilePath, transcriptID2ReadCollection.keySet(),
+                FASTAIndexFile.getChromosomes(), useSnapshot));
     }
 
     /**
      * Iteration through all transcripts and for each one:
-     * 1. Define relative coordinated to each exon
-     * 2. extract pre-transcript sequence from FASTA file using FASTA Index file
-     * 3. modify pre-transcript sequence - remove introns
+     * 1. skip transcripts shorter than the read length
+     * 2. reference sequence of the locus (LocusSchedule: transcripts in genomic order, one fetch per locus)
+     * 3. splice: slice the exons out of the locus sequence
      * 4. get the corresponding ReadCollection object; for each read-object define the fragment and read indexes
      * 5. output
      **/
     protected void modifyPreTranscript() throws Exception {
+        try (ReferenceReader reference = new ReferenceReader(fastaFilePath, findxFilePath, FASTAIndexFile, referenceCacheBytes)) {
+            modifyPreTranscript(reference);
+        }
+    }
+
+    private void modifyPreTranscript(ReferenceReader reference) throws Exception {
         // Declare variables to avoid excessive memory allocation
         ArrayList<Interval> fwGenomicRegions;
         ArrayList<Interval> rwGenomicRegions;
 
-        for(PreTranscript preTr: transcriptId2preTranscript.values()){
-            // 1. Define relative coordinates exons
-            int transcriptLength = 0;
-            int startRelativeIndex = 0;
-
-            for(Exon sortedExon: preTr.getExons()){
-                sortedExon.setStartRelative(startRelativeIndex);
-                int endRelative = startRelativeIndex + sortedExon.getLength();
-                sortedExon.setEndRelative(endRelative);
-                startRelativeIndex = endRelative;
-                transcriptLength += sortedExon.getLength();
-            }
+        LocusSchedule schedule = new LocusSchedule(transcriptId2preTranscript.values(), FASTAIndexFile.getChromosomes());
+
+        for(int t = 0; t < schedule.size(); t++){
+            PreTranscript preTr = schedule.get(t);
+            // 1. The transcript length is the sum of the exon lengths (exon offsets of the frozen transcript)
+            Transcript transcript = preTr.getTranscript();
 
             // If the length of the transcript is smaller than the read length => not possible to extract reads
-            preTr.setTranscriptLength(transcriptLength, readLength);
-            if(preTr.getTooShort()) {
+            if(preTr.isTooShort(readLength)) {
                 transcriptID2ReadCollection.remove(preTr.getTranscriptID());  // there is no need to iterate it, no reads will be created from it
                 continue;
             }
 
-            // 2. Extract pre-transcript sequence from FASTA using FASTA Index
-            long preTranscriptStartGenomic = 0;
-            long preTranscriptEndGenomic = 0;
-
-            // 1-based and end-inclusive indexes
-            preTranscriptStartGenomic = preTr.getExons().getFirst().getStartGenomic();
-            preTranscriptEndGenomic = preTr.getExons().getLast().getEndGenomic() - 1;
-            long preTranscriptLength = preTranscriptEndGenomic - preTranscriptStartGenomic + 1;
-
-            String preTranscriptSequence = "";
+            // 2. Reference sequence of the locus (fetched for the first transcript of a locus only)
+            String locusSequence = null;
             try {
-                File fastaFile = new File(fastaFilePath);
-                File faiFile = new File(findxFilePath);
-                FastaSequenceIndex FASTAIndexFile = new FastaSequenceIndex(faiFile);
-                IndexedFastaSequenceFile FASTAFile = new IndexedFastaSequenceFile(fastaFile, FASTAIndexFile);
-
-                ReferenceSequence refSeq = FASTAFile.getSubsequenceAt(preTr.getChromosome(), preTranscriptStartGenomic, preTranscriptEndGenomic);
-
-                // Output the sequence
-                preTranscriptSequence = refSeq.getBaseString();
-                FASTAFile.close();
+                locusSequence = schedule.getLocusSequence(t, reference);
             } catch (Exception e) {
                 e.printStackTrace();
             }
+            if(locusSequence == null) throw new Exception("No reference sequence for " + preTr.getTranscriptID());
 
-            // 3. Modify pre-transcript sequence - remove introns
-            StringBuilder preTranscriptStrBuilder = new StringBuilder(preTranscriptSequence);
-
-            Exon end5 = null;
-            int startPos = 0;
-            int endPos;
-            for(Exon end3: preTr.getExons()){
-                if(end5 == null){
-                    end5 = end3;
-                    startPos = end3.getLength();
-                    continue;
-                }
-
-                endPos = startPos + Math.abs(end3.getStartGenomic() - end5.getEndGenomic());
-                preTranscriptStrBuilder.replace(startPos, endPos, "-".repeat(endPos-startPos));
-                startPos = endPos + end3.getLength();
-                end5 = end3;
+            // 3. Splice: the exons (1-based, end-exclusive) out of the locus sequence
+            int locusStart = schedule.getLocusStart(t);
+            StringBuilder preTranscriptStrBuilder = new StringBuilder((int) preTr.getTranscriptLength());
+            for(int e = 0; e < transcript.getNumExons(); e++){
+                preTranscriptStrBuilder.append(locusSequence, transcript.getExonStart(e) - locusStart, transcript.getExonEnd(e) - locusStart);
             }
 
-            preTranscriptSequence = preTranscriptStrBuilder.toString().replaceAll("-", "");
+            String preTranscriptSequence = preTranscriptStrBuilder.toString();
             if(preTranscriptSequence.length() != preTr.getTranscriptLength()) throw new Exception("Error while removing introns!");
 
             // 4. Get the corresponding ReadCollection object; for each read-object define the fragment and read indexes
@@ -215,7 +154,7 @@ public class ReadSimulatorPlots {
             Utils.checkIfNull(readColCurTranscript, new ReadCollection());
             if(readColCurTranscript == null) continue;
 
-            readColCurTranscript.setChromosome(preTr.getChromosome());
+            readColCurTranscript.setChromosome(preTr.getChromosomeSymbol());
 
             Read r;
             for(int i = 0; i < readColCurTranscript.getNumReads(); i++){
@@ -230,9 +169,9 @@ public class ReadSimulatorPlots {
 
                 // Determine fragment start
                 if(fragmentLength == preTr.getTranscriptLength()) {
-                    r.setFragmentStartRelative(0, (int)fragmentLength, (int)preTr.getTranscriptLength(), preTr.getStrandDirection());
+                    r.setFragmentStartRelative(0, (int)fragmentLength, (int)preTr.getTranscriptLength(), preTr.isPositiveStrand());
                 } else {
-                    r.setFragmentStartRelative(Math.max(0, new Random().nextInt((int)(preTr.getTranscriptLength() - fragmentLength))), (int)fragmentLength, (int)preTr.getTranscriptLength(), preTr.getStrandDirection());
+                    r.setFragmentStartRelative(Math.max(0, new Random().nextInt((int)(preTr.getTranscriptLength() - fragmentLength))), (int)fragmentLength, (int)preTr.getTranscriptLength(), preTr.isPositiveStrand());
                 }
 
                 // Get genomic region vectors
@@ -243,7 +182,7 @@ public class ReadSimulatorPlots {
                 String leftEnd = preTranscriptSequence.substring(r.getFwStartRelative(), r.getFwEndRelative());
                 String rightEnd = Utils.getReverseComplement(new StringBuilder(preTranscriptSequence.substring(r.getRwStartRelative(), r.getRwEndRelative())));
 
-                if(preTr.getStrandDirection().equals("+")){
+                if(preTr.isPositiveStrand()){
                     r.setFw(leftEnd, mutationRate);
                     r.setRw(rightEnd, mutationRate);
                 } else {
@@ -252,7 +191,7 @@ public class ReadSimulatorPlots {
                 }
 
                 // plot 2:
-                numberOfMutations.add(r.getMutationsfw().size() + r.getMutationsrw().size());
+                numberOfMutations.add(r.getNumMutationsfw() + r.getNumMutationsrw());
 
                 // Plot 3:
                 numAllReads += 2;
@@ -260,10 +199,10 @@ public class ReadSimulatorPlots {
                 // fw
                 if(fwGenomicRegions.size() == 1){ // read is NOT split
                     numNONSplit++;
-                    if(r.getMutationsfw().isEmpty()) numNONSplitNOMm++;
+                    if(r.getNumMutationsfw() == 0) numNONSplitNOMm++;
                 } else {
                     numSplit++;
-                    if(r.getMutationsfw().isEmpty()) {
+                    if(r.getNumMutationsfw() == 0) {
                         numSplitNOMm++;
                         // check fw regions; rw regions
                         for(Interval interval: fwGenomicRegions){
@@ -277,10 +216,10 @@ public class ReadSimulatorPlots {
                 // rw
                 if(rwGenomicRegions.size() == 1){
                     numNONSplit++;
-                    if(r.getMutationsrw().isEmpty()) numNONSplitNOMm++;
+                    if(r.getNumMutationsrw() == 0) numNONSplitNOMm++;
                 } else {
                     numSplit++;
-                    if(r.getMutationsrw().isEmpty()) {
+                    if(r.getNumMutationsrw() == 0) {
                         numSplitNOMm++;
                         for(Interval interval: rwGenomicRegions){
                             if(interval.getLength() < 5) break;
@@ -290,62 +229,45 @@ public class ReadSimulatorPlots {
                 }
 
                 // New mutations distribution
-                this.mutationPosition.addAll(r.getMutationsfw());
-                this.mutationPosition.addAll(r.getMutationsrw());
+                for (int m = 0; m < r.getNumMutationsfw(); m++) this.mutationPosition.add(r.getMutationfw(m));
+                for (int m = 0; m < r.getNumMutationsrw(); m++) this.mutationPosition.add(r.getMutationrw(m));
             }
         }
     }
 
-    /** get genomic regions for reads*/
+    /** get genomic regions for reads; the exon of the read start is found by binary search over the exon offsets */
     private ArrayList<Interval> regionVectors(int readStart, int readEnd, PreTranscript preTr){
         ArrayList<Interval> fwGenomicRegions = new ArrayList<>();
+        Transcript transcript = preTr.getTranscript();
 
-        // for(Exon ad: preTr.getExons()) System.out.println(Utils.GREEN + ad + Utils.RESET);
+        // to locate the start (in which exon)
+        int e = transcript.findExonAt(readStart);
+        if(e < 0) return fwGenomicRegions;
 
-        for(Exon e: preTr.getExons()){
-            // to locate the start (in which exon)
-            if(readStart < e.getEndRelative()){ // special cases, 1. read == exon; 2. whole read is in one exon
-                if(readEnd <= e.getEndRelative()){  // read completely in Exon
-                    fwGenomicRegions.add(new Interval(e.getStartGenomic() + (readStart - e.getStartRelative()), e.getStartGenomic() + (readStart - e.getStartRelative()) + readLength));
-                    break;
-                }
+        int startRelative = transcript.getExonOffset(e);
+        if(readEnd <= transcript.getExonOffset(e + 1)){  // read completely in Exon
+            fwGenomicRegions.add(new Interval(transcript.getExonStart(e) + (readStart - startRelative), transcript.getExonStart(e) + (readStart - startRelative) + readLength));
+            return fwGenomicRegions;
+        }
 
-                // otherwise read continues in the next exon
-                fwGenomicRegions.add(new Interval(e.getStartGenomic() + (readStart-e.getStartRelative()), e.getEndGenomic()));
+        // otherwise read continues in the next exon
+        fwGenomicRegions.add(new Interval(transcript.getExonStart(e) + (readStart - startRelative), transcript.getExonEnd(e)));
 
-                e = preTr.getExons().higher(e);
-                if(e != null){
-                    while(readEnd > e.getEndRelative()){
-                        fwGenomicRegions.add(new Interval(e.getStartGenomic(), e.getEndGenomic()));
-                        e = preTr.getExons().higher(e);
-                        if (e == null) System.err.println("End of read not found!");
-                    }
-                    fwGenomicRegions.add(new Interval(e.getStartGenomic(), e.getStartGenomic() + (readEnd-e.getStartRelative())));
-                    break;
-                } else System.err.println("End of read not found!");
+        for(e++; e < transcript.getNumExons(); e++){
+            if(readEnd <= transcript.getExonOffset(e + 1)){
+                fwGenomicRegions.add(new Interval(transcript.getExonStart(e), transcript.getExonStart(e) + (readEnd - transcript.getExonOffset(e))));
+                return fwGenomicRegions;
             }
+            fwGenomicRegions.add(new Interval(transcript.getExonStart(e), transcript.getExonEnd(e)));
         }
+        System.err.println("End of read not found!");
         return fwGenomicRegions;
     }
 
 
     protected void createPlotsFrLength(){
-        // Convert ArrayList to a comma-separated string
-        StringBuilder data = new StringBuilder();
-        for (long value : this.fragmentLengths) {
-            data.append(value).append(",");
-        }
-        // Remove the last comma
-        if (!data.isEmpty()) {
-            data.setLength(data.length() - 1);
-        }
-
-        // Save data in a file
-        try (FileWriter writer = new FileWriter("src/ReadSimulator/output/frLengths.csv")) {
-            writer.write(data + "");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // Save the bins in a file
+        writeHistogram(this.fragmentLengths, "src/ReadSimulator/output/frLengths_histogram.csv");
 
         try {
             // Call the Python script and pass the data
@@ -364,22 +286,8 @@ public class ReadSimulatorPlots {
     }
 
     protected void createPlotsMutations(){
-        // Convert ArrayList to a comma-separated string
-        StringBuilder data = new StringBuilder();
-        for (int value : this.numberOfMutations) {
-            data.append(value).append(",");
-        }
-        // Remove the last comma
-        if (!data.isEmpty()) {
-            data.setLength(data.length() - 1);
-        }
-
-        // Save data in a file
-        try (FileWriter writer = new FileWriter("src/ReadSimulator/output/mutations.csv")) {
-            writer.write(data + "");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // Save the bins in a file
+        writeHistogram(this.numberOfMutations, "src/ReadSimulator/output/mutations_histogram.csv");
 
         try {
             // Call the Python script and pass the data
@@ -441,22 +349,8 @@ public class ReadSimulatorPlots {
     }
 
     protected void createPlotsMutationPosition(){
-        // Convert ArrayList to a comma-separated string
-        StringBuilder data = new StringBuilder();
-        for (long value : this.mutationPosition) {
-            data.append(value).append(",");
-        }
-        // Remove the last comma
-        if (!data.isEmpty()) {
-            data.setLength(data.length() - 1);
-        }
-
-        // Save data in a file
-        try (FileWriter writer = new FileWriter("src/ReadSimulator/output/mutationPosition.csv")) {
-            writer.write(data + "");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // Save the bins in a file
+        writeHistogram(this.mutationPosition, "src/ReadSimulator/output/mutationPosition_histogram.csv");
 
         try {
             // Call the Python script and pass the data
@@ -474,6 +368,13 @@ public class ReadSimulatorPlots {
         }
     }
 
+    /** rows: bin_start,bin_end,count (bin_end exclusive, only non-empty bins) */
+    private static void writeHistogram(Histogram histogram, String path) {
+        try (FileWriter writer = new FileWriter(path)) {
+            writer.write("bin_start,bin_end,count\n");
+            histogram.writeTable(writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 }
-
-
@@ -15,6 +15,8 @@ public class ReadSimulatorPlotsRunner {
         options.addOption("fidx", true, "Input FASTA index (.fai) file path");
         options.addOption("gtf", true, "Input GTF (.gtf) file path");
         options.addOption("od", true, "Input output file path");
+        options.addOption("nosnapshot", false, "Do not use/write the binary snapshot of the parsed GTF");
+        options.addOption("refcache", true, "Memory budget in MB for the cached reference slices (default 256)");
         CommandLineParser parser = new BasicParser();
 
         int readLength = 0;
@@ -26,6 +28,8 @@ public class ReadSimulatorPlotsRunner {
         String fidxFilePath = "";
         String gtfFilePath = "";
         String outputFilePath = "";
+        boolean useSnapshot = true;
+        long referenceCacheBytes = ReferenceReader.DEFAULT_CACHE_BYTES;
 
         try {
             CommandLine cmd = parser.parse(options, args);
@@ -90,6 +94,20 @@ public class ReadSimulatorPlotsRunner {
                 outputFilePath = cmd.getOptionValue("od");
             }
 
+            if(cmd.hasOption("nosnapshot")){
+                useSnapshot = false;
+            }
+
+            if(cmd.hasOption("refcache")) {
+                String refcacheInput = cmd.getOptionValue("refcache");
+                try {
+                    referenceCacheBytes = Long.parseLong(refcacheInput) << 20;
+                } catch (NumberFormatException e) {
+                    System.err.println("The option -refcache requires an integer (MB). Invalid input: " + refcacheInput);
+                    System.exit(1);
+                }
+            }
+
             if(!(cmd.hasOption("length") || cmd.hasOption("frlength") || cmd.hasOption("SD")
                     || cmd.hasOption("readcounts") || cmd.hasOption("mutationsrate") || cmd.hasOption("fasta")
                     || cmd.hasOption("fidx") || cmd.hasOption("gtf") || cmd.hasOption("od"))){
@@ -103,7 +121,9 @@ public class ReadSimulatorPlotsRunner {
                         "-fasta <fasta input file path>\n" +
                         "-fidx <fasta input file path>\n" +
                         "-gtf <give GTF-file path>\n" +
-                        "-o <output-file path>");
+                        "-o <output-file path>\n" +
+                        "-nosnapshot <optional, always parse the GTF>\n" +
+                        "-refcache <integer, optional, MB of cached reference slices, default 256>");
                 System.exit(1);
             }
         } catch (ParseException e) {
@@ -114,6 +134,8 @@ public class ReadSimulatorPlotsRunner {
 
         ReadSimulatorPlots readSimulator = new ReadSimulatorPlots(readLength, meanReadLength, SDReadLength, readCountsFilePath,
                 mutationsrate, fastaFilePath, fidxFilePath, gtfFilePath, outputFilePath);
+        readSimulator.setUseSnapshot(useSnapshot);
+        readSimulator.setReferenceCacheBytes(referenceCacheBytes);
 
 
         readSimulator.defineReadCollections();
@@ -1,7 +1,11 @@
 package ReadSimulator;
 
+import BaseComponents.GeneSelection;
+import BaseComponents.PhaseMetrics;
 import org.apache.commons.cli.*;
 
+import java.io.IOException;
+
 public class ReadSimulatorRunner {
     // read input
     public static void main(String[] args) throws Exception {
@@ -15,6 +19,13 @@ public class ReadSimulatorRunner {
         options.addOption("fidx", true, "Input FASTA index (.fai) file path");
         options.addOption("gtf", true, "Input GTF (.gtf) file path");
         options.addOption("od", true, "Input output file path");
+        options.addOption("nosnapshot", false, "Do not use/write the binary snapshot of the parsed GTF");
+        options.addOption("refcache", true, "Memory budget in MB for the cached reference slices (default 256)");
+        options.addOption("threads", true, "Number of threads simulating the reads (default: 1), the reads do not depend on it");
+        options.addOption("seed", true, "Master seed of the random numbers; the same seed gives the same reads (default: random)");
+        options.addOption("region", true, "Only genes overlapping the region chr:start-end (uses the GTF index)");
+        options.addOption("genes", true, "Only the genes listed in the file, one gene id per line (uses the GTF index)");
+        options.addOption("metrics", true, "Write wall/CPU time, allocation and items per phase, and the counters (loci, reference cache hits/misses) to the file (.json, or .prom for Prometheus text)");
         CommandLineParser parser = new BasicParser();
 
         int readLength = 0;
@@ -26,6 +37,12 @@ public class ReadSimulatorRunner {
         String fidxFilePath = "";
         String gtfFilePath = "";
         String outputFilePath = "";
+        boolean useSnapshot = true;
+        long referenceCacheBytes = ReferenceReader.DEFAULT_CACHE_BYTES;
+        int threads = 1;
+        Long seed = null;  // null := random
+        GeneSelection selection = new GeneSelection();  // empty := whole GTF
+        String metricsFilePath = null;
 
         try {
             CommandLine cmd = parser.parse(options, args);
@@ -90,6 +107,52 @@ public class ReadSimulatorRunner {
                 outputFilePath = cmd.getOptionValue("od");
             }
 
+            if(cmd.hasOption("nosnapshot")){
+                useSnapshot = false;
+            }
+
+            if(cmd.hasOption("refcache")) {
+                String refcacheInput = cmd.getOptionValue("refcache");
+                try {
+                    referenceCacheBytes = Long.parseLong(refcacheInput) << 20;
+                } catch (NumberFormatException e) {
+                    System.err.println("The option -refcache requires an integer (MB). Invalid input: " + refcacheInput);
+                    System.exit(1);
+                }
+            }
+
+            if(cmd.hasOption("threads")){
+                String threadsInput = cmd.getOptionValue("threads");
+                try {
+                    threads = Integer.parseInt(threadsInput);
+                } catch (NumberFormatException e) {
+                    System.err.println("The option -threads requires an integer. Invalid input: " + threadsInput);
+                    System.exit(1);
+                }
+            }
+
+            if(cmd.hasOption("seed")){
+                String seedInput = cmd.getOptionValue("seed");
+                try {
+                    seed = Long.parseLong(seedInput);
+                } catch (NumberFormatException e) {
+                    System.err.println("The option -seed requires an integer. Invalid input: " + seedInput);
+                    System.exit(1);
+                }
+            }
+
+            if(cmd.hasOption("metrics")){
+                metricsFilePath = cmd.getOptionValue("metrics");
+            }
+
+            try {
+                if(cmd.hasOption("region")) selection.setRegion(cmd.getOptionValue("region"));
+                if(cmd.hasOption("genes")) selection.addGeneFile(cmd.getOptionValue("genes"));
+            } catch (IllegalArgumentException | IOException e) {
+                System.err.println("Invalid -region/-genes: " + e.getMessage());
+                System.exit(1);
+            }
+
             if(!(cmd.hasOption("length") || cmd.hasOption("frlength") || cmd.hasOption("SD")
                     || cmd.hasOption("readcounts") || cmd.hasOption("mutationsrate") || cmd.hasOption("fasta")
                     || cmd.hasOption("fidx") || cmd.hasOption("gtf") || cmd.hasOption("od"))){
@@ -103,7 +166,14 @@ public class ReadSimulatorRunner {
                         "-fasta <fasta input file path>\n" +
                         "-fidx <fasta input file path>\n" +
                         "-gtf <give GTF-file path>\n" +
-                        "-o <output-file path>");
+                        "-o <output-file path>\n" +
+                        "-nosnapshot <optional, always parse the GTF>\n" +
+                        "-refcache <integer, optional, MB of cached reference slices, default 256>\n" +
+                        "-threads <integer, optional, number of threads, default 1>\n" +
+                        "-seed <integer, optional, master seed for reproducible reads>\n" +
+                        "-region <chr:start-end, optional, only genes overlapping the region>\n" +
+                        "-genes <file with one gene id per line, optional>\n" +
+                        "-metrics <file, optional, per phase metrics and counters as .json or .prom>");
                 System.exit(1);
             }
         } catch (ParseException e) {
@@ -114,10 +184,26 @@ public class ReadSimulatorRunner {
 
         ReadSimulator readSimulator = new ReadSimulator(readLength, meanReadLength, SDReadLength, readCountsFilePath,
                 mutationsrate, fastaFilePath, fidxFilePath, gtfFilePath, outputFilePath);
+        readSimulator.setUseSnapshot(useSnapshot);
+        readSimulator.setReferenceCacheBytes(referenceCacheBytes);
+        readSimulator.setThreads(threads);
+        if (seed != null) readSimulator.setSeed(seed);
+        readSimulator.setSelection(selection);
+        PhaseMetrics metrics = metricsFilePath != null ? new PhaseMetrics("ReadSimulator") : PhaseMetrics.NONE;
+        readSimulator.setMetrics(metrics);
 
         readSimulator.defineReadCollections();
         readSimulator.definePreTranscriptsFromGTF();
         readSimulator.modifyPreTranscript();
 
+        if (metricsFilePath != null) {
+            System.out.print(metrics.summary());
+            try {
+                metrics.write(metricsFilePath);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
     }
 }
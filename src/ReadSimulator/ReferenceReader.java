@@ -0,0 +1,132 @@
+package ReadSimulator;
+
+import BaseComponents.SymbolTable;
+import htsjdk.samtools.reference.FastaSequenceIndex;
+import htsjdk.samtools.reference.IndexedFastaSequenceFile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reference access for ReadSimulator and ReadSimulatorPlots: the FASTA and its index are opened once per run,
+ * instead of once per transcript. Chromosomes are read in slices of 1 Mb (aligned to the chromosome start),
+ * which are kept decoded in an LRU cache bounded by a memory budget, so the sequence of a transcript is copied
+ * from memory when its slices were read before (neighbouring transcripts, overlapping isoforms).
+ * A packed reference (PackedReference, *.2bit) is memory-mapped instead and decoded directly, without the cache.
+ * Thread-safe.
+ */
+public class ReferenceReader implements Closeable {
+    public static final long DEFAULT_CACHE_BYTES = 256L << 20;
+    private static final int SLICE_SHIFT = 20;  // 1 Mb slices
+
+    private final IndexedFastaSequenceFile fastaFile;  // null := packed
+    private final PackedReference packed;  // null := FASTA
+    private final HashMap<String, Long> chr2chrLength;
+    private final long cacheBytes;
+    private final LinkedHashMap<Long, byte[]> slices;  // chromosome symbol << 32 | slice -> bases, in access order
+    private long cachedBytes;
+
+    // statistics
+    private long hits;
+    private long misses;
+    private long basesRead;
+
+    /**
+     * @param fastaFilePath FASTA or packed reference (*.2bit)
+     * @param cacheBytes memory budget of the slice cache (the last read slice is always kept)
+     */
+    public ReferenceReader(String fastaFilePath, String findxFilePath, FASTAIndex index, long cacheBytes) throws IOException {
+        if (PackedReference.isPacked(fastaFilePath)) {
+            this.packed = PackedReference.open(fastaFilePath);
+            this.fastaFile = null;
+        } else {
+            this.packed = null;
+            this.fastaFile = new IndexedFastaSequenceFile(new File(fastaFilePath), new FastaSequenceIndex(new File(findxFilePath)));
+        }
+        this.chr2chrLength = index.getChr2chrLength();
+        this.cacheBytes = cacheBytes;
+        this.slices = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @param start 1-based
+     * @param end 1-based, end-inclusive (as IndexedFastaSequenceFile.getSubsequenceAt)
+     * @return bases of the region, as in the FASTA file
+     */
+    public String getSequence(String chromosome, long start, long end) {
+        if (packed != null) return packed.getSequence(chromosome, start, end);
+        synchronized (this) {
+            return getCachedSequence(chromosome, start, end);
+        }
+    }
+
+    private String getCachedSequence(String chromosome, long start, long end) {
+        Long chromosomeLength = chr2chrLength.get(chromosome);
+        if (chromosomeLength == null) throw new IllegalArgumentException("Unknown chromosome " + chromosome);
+        if (start < 1 || end > chromosomeLength || end < start - 1) {
+            throw new IllegalArgumentException("Region " + chromosome + ":" + start + "-" + end + " outside of the chromosome (length " + chromosomeLength + ")");
+        }
+
+        int chromosomeSymbol = SymbolTable.CHROMOSOMES.intern(chromosome);
+        byte[] sequence = new byte[(int) (end - start + 1)];
+        long position = start - 1;  // 0-based
+        while (position < end) {
+            int slice = (int) (position >>> SLICE_SHIFT);
+            byte[] bases = getSlice(chromosome, chromosomeSymbol, slice, chromosomeLength);
+            int from = (int) (position - ((long) slice << SLICE_SHIFT));
+            int length = (int) Math.min(bases.length - from, end - position);
+            System.arraycopy(bases, from, sequence, (int) (position - start + 1), length);
+            position += length;
+        }
+        return new String(sequence, StandardCharsets.ISO_8859_1);
+    }
+
+    private byte[] getSlice(String chromosome, int chromosomeSymbol, int slice, long chromosomeLength) {
+        long key = ((long) chromosomeSymbol << 32) | slice;
+        byte[] bases = slices.get(key);
+        if (bases != null) {
+            hits++;
+            return bases;
+        }
+
+        misses++;
+        long sliceStart = (long) slice << SLICE_SHIFT;
+        long sliceEnd = Math.min(sliceStart + (1L << SLICE_SHIFT), chromosomeLength);
+        bases = fastaFile.getSubsequenceAt(chromosome, sliceStart + 1, sliceEnd).getBases();
+        basesRead += bases.length;
+
+        slices.put(key, bases);
+        cachedBytes += bases.length;
+        // evict the least recently used slices, but keep the new one
+        Iterator<Map.Entry<Long, byte[]>> eldest = slices.entrySet().iterator();
+        while (cachedBytes > cacheBytes && slices.size() > 1) {
+            cachedBytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+        return bases;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        slices.clear();
+        cachedBytes = 0;
+        if (packed != null) packed.close();
+        else fastaFile.close();
+    }
+
+
+    // Getter and Setter
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -1,13 +1,15 @@
 import matplotlib.pyplot as plt
+import pandas as pd
 
 
 def main():
-    with open("src/ReadSimulator/output/frLengths.csv", "r") as file:
-        data = list(map(int, file.read().strip().split(",")))
+    # non-empty bins written by ReadSimulatorPlots: bin_start,bin_end (exclusive),count
+    histogram = pd.read_csv("src/ReadSimulator/output/frLengths_histogram.csv")
 
 
     # Histogram
-    plt.hist(data, bins= len(data), edgecolor='black', alpha=0.7)
+    plt.bar(histogram["bin_start"], histogram["count"], width=histogram["bin_end"] - histogram["bin_start"],
+            align='edge', edgecolor='black', alpha=0.7)
     plt.title('Fragment Lengths Distribution')
     plt.xlabel('Fragment lengths')
     plt.ylabel('Frequency')
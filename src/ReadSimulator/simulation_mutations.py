@@ -1,19 +1,20 @@
 import matplotlib.pyplot as plt
+import pandas as pd
 
 
 def main():
-    with open("src/ReadSimulator/output/mutations.csv", "r") as file:
-        data = list(map(int, file.read().strip().split(",")))
+    # non-empty bins written by ReadSimulatorPlots: bin_start,bin_end (exclusive),count
+    histogram = pd.read_csv("src/ReadSimulator/output/mutations_histogram.csv")
 
 
     plt.figure(figsize=(12, 6))
-    plt.hist(data, bins= len(data), edgecolor='black', alpha=0.7)
+    plt.bar(histogram["bin_start"], histogram["count"], width=histogram["bin_end"] - histogram["bin_start"],
+            align='edge', edgecolor='black', alpha=0.7)
     plt.title('Number of mutations per read pair')
     plt.xlabel('Number of mutations')
     plt.ylabel('Frequency')
 
     plt.savefig('src/ReadSimulator/plots/mutation_distribution_plot_new.png')
 
-
 if __name__ == "__main__":
     main()
\ No newline at end of file